@@ -43,3 +43,37 @@ ON CONFLICT DO NOTHING;
 
 
 
+
+-- Index cho danh sách sản phẩm sắp hết hàng (ứng dụng tự tạo khi khởi động - DatabaseIndexInitializer)
+-- UPDATE products SET min_stock_level = 10 WHERE min_stock_level IS NULL;
+-- CREATE INDEX IF NOT EXISTS idx_products_low_stock ON products (stock_quantity)
+--     WHERE stock_quantity <= min_stock_level AND is_deleted = false;
+-- Index cho job đối soát thanh toán PENDING (ứng dụng tự tạo khi khởi động - DatabaseIndexInitializer)
+-- CREATE INDEX IF NOT EXISTS idx_payments_pending ON payments (id) WHERE payment_status = 'PENDING';
+-- Bảng bucket giới hạn tần suất dùng chung giữa các node (ứng dụng tự tạo khi khởi động - DatabaseIndexInitializer)
+-- CREATE TABLE IF NOT EXISTS rate_limit_buckets (bucket_key VARCHAR(255) PRIMARY KEY,
+--     tokens DOUBLE PRECISION NOT NULL, updated_at TIMESTAMPTZ NOT NULL);
+-- Index cho danh sách sản phẩm đánh giá cao (ứng dụng tự tạo khi khởi động - DatabaseIndexInitializer)
+-- CREATE INDEX IF NOT EXISTS idx_products_top_rated ON products (rating_avg DESC, rating_count DESC, id DESC)
+--     WHERE is_active = true AND is_deleted = false;
+-- Index cho danh sách đánh giá đã duyệt của sản phẩm (ứng dụng tự tạo khi khởi động - DatabaseIndexInitializer)
+-- CREATE INDEX IF NOT EXISTS idx_reviews_product_feed ON reviews (product_id, created_at DESC, id DESC)
+--     WHERE is_approved = true AND is_deleted = false;
+-- Index cho hàng đợi duyệt đánh giá (ứng dụng tự tạo khi khởi động - DatabaseIndexInitializer)
+-- CREATE INDEX IF NOT EXISTS idx_reviews_pending ON reviews (id) WHERE is_approved = false AND is_deleted = false;
+-- Index cho việc tìm người yêu thích 1 sản phẩm (ứng dụng tự tạo khi khởi động - DatabaseIndexInitializer)
+-- CREATE INDEX IF NOT EXISTS idx_wishlists_product ON wishlists (product_id, user_id) WHERE is_deleted = false;
+-- Bảng chống gửi trùng thông báo giảm giá / hàng về trong ngày (ứng dụng tự tạo khi khởi động - DatabaseIndexInitializer)
+-- CREATE TABLE IF NOT EXISTS wishlist_notifications (user_id BIGINT NOT NULL, product_id BIGINT NOT NULL,
+--     notify_date DATE NOT NULL, PRIMARY KEY (user_id, product_id, notify_date));
+-- Bảng blob upload lưu theo nội dung + số tham chiếu (ứng dụng tự tạo khi khởi động - DatabaseIndexInitializer)
+-- CREATE TABLE IF NOT EXISTS stored_blobs (sha256 CHAR(64) PRIMARY KEY, extension VARCHAR(10) NOT NULL,
+--     size_bytes BIGINT NOT NULL, ref_count INTEGER NOT NULL DEFAULT 0,
+--     created_at TIMESTAMPTZ NOT NULL DEFAULT now(), updated_at TIMESTAMPTZ NOT NULL DEFAULT now());
+-- CREATE INDEX IF NOT EXISTS idx_stored_blobs_orphans ON stored_blobs (updated_at) WHERE ref_count = 0;
+-- Index cho worker hàng đợi email và danh sách email lỗi (ứng dụng tự tạo khi khởi động - DatabaseIndexInitializer)
+-- CREATE INDEX IF NOT EXISTS idx_mail_queue_due ON mail_queue (next_attempt_at) WHERE status = 'PENDING';
+-- CREATE INDEX IF NOT EXISTS idx_mail_queue_dead ON mail_queue (updated_at DESC) WHERE status = 'DEAD';
+-- Trạng thái DEAD cho IPN MoMo hết số lần thử (ứng dụng tự chạy khi khởi động - DatabaseIndexInitializer)
+-- ALTER TABLE payment_callbacks DROP CONSTRAINT IF EXISTS payment_callbacks_status_check;
+-- UPDATE payment_callbacks SET status = 'DEAD' WHERE status = 'FAILED' AND attempts >= 5;
@@ -103,7 +103,7 @@ const Cart = () => {
                           <img
                             // ĐÃ SỬA: Thay bằng placehold.co
                             src={item.product.images && item.product.images.length > 0
-                              ? item.product.images[0].imageUrl
+                              ? (item.product.images[0].thumbUrl || item.product.images[0].imageUrl)
                               : 'https://placehold.co/100?text=No+Image'}
                             className="img-fluid rounded"
                             alt={item.product.name}
@@ -135,6 +135,11 @@ const ProductDetail = () => {
     ))
   }
 
+  // Ảnh upload lưu đường dẫn tương đối (/uploads/...), ảnh ngoài giữ nguyên URL
+  const resolveImageUrl = (url) => {
+    return url.startsWith('http') ? url : `http://localhost:8082${url}`
+  }
+
   if (loading) {
     return (
       <div className="min-vh-100 bg-light">
@@ -324,11 +329,20 @@ const ProductDetail = () => {
                                             <div key={review.id} className="list-group-item py-3">
                                                 <div className="d-flex justify-content-between align-items-center mb-2">
                                                     <div className="d-flex align-items-center">
-                                                        <div className="bg-secondary text-white rounded-circle d-flex align-items-center justify-content-center me-3" style={{width: '40px', height: '40px'}}>
-                                                            {review.user?.fullName?.charAt(0).toUpperCase() || 'U'}
-                                                        </div>
+                                                        {review.reviewerAvatar ? (
+                                                            <img
+                                                                src={resolveImageUrl(review.reviewerAvatar)}
+                                                                alt={review.reviewerName || 'Khách hàng'}
+                                                                className="rounded-circle me-3"
+                                                                style={{width: '40px', height: '40px', objectFit: 'cover'}}
+                                                            />
+                                                        ) : (
+                                                            <div className="bg-secondary text-white rounded-circle d-flex align-items-center justify-content-center me-3" style={{width: '40px', height: '40px'}}>
+                                                                {review.reviewerName?.charAt(0).toUpperCase() || 'U'}
+                                                            </div>
+                                                        )}
                                                         <div>
-                                                            <h6 className="mb-0 fw-bold">{review.user?.fullName || review.user?.username || 'Khách hàng'}</h6>
+                                                            <h6 className="mb-0 fw-bold">{review.reviewerName || 'Khách hàng'}</h6>
                                                             <div className="small text-warning">
                                                                 {renderStars(review.rating)}
                                                             </div>
@@ -342,20 +356,19 @@ const ProductDetail = () => {
                                                     {review.comment}
                                                 </p>
                                                 
-                                                {/* --- HIỂN THỊ HÌNH ẢNH ĐÁNH GIÁ (Đã Fix) --- */}
-                                                {review.reviewImages && (
-                                                    <div className="ms-5 ps-2 mt-2">
-                                                        <img 
-                                                            src={review.reviewImages.startsWith('http') 
-                                                                ? review.reviewImages 
-                                                                : `http://localhost:8082${review.reviewImages}`} 
-                                                            alt="Review" 
-                                                            className="img-thumbnail" 
-                                                            style={{maxHeight: '150px', cursor: 'pointer'}}
-                                                            onClick={() => window.open(review.reviewImages.startsWith('http') 
-                                                                ? review.reviewImages 
-                                                                : `http://localhost:8082${review.reviewImages}`, '_blank')}
-                                                        />
+                                                {/* --- HIỂN THỊ HÌNH ẢNH ĐÁNH GIÁ (API trả về mảng images) --- */}
+                                                {review.images?.length > 0 && (
+                                                    <div className="ms-5 ps-2 mt-2 d-flex flex-wrap gap-2">
+                                                        {review.images.map((image, index) => (
+                                                            <img
+                                                                key={index}
+                                                                src={resolveImageUrl(image)}
+                                                                alt="Review"
+                                                                className="img-thumbnail"
+                                                                style={{maxHeight: '150px', cursor: 'pointer'}}
+                                                                onClick={() => window.open(resolveImageUrl(image), '_blank')}
+                                                            />
+                                                        ))}
                                                     </div>
                                                 )}
                                             </div>
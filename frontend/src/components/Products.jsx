@@ -263,7 +263,7 @@ const Products = () => {
                             <Link to={`/products/${product.slug || product.id}`}>
                             <img
                                 src={product.images && product.images.length > 0 
-                                ? product.images[0].imageUrl 
+                                ? (product.images[0].cardUrl || product.images[0].imageUrl) 
                                 : 'https://placehold.co/300x200?text=No+Image'}
                                 className="card-img-top product-img"
                                 alt={product.name}
@@ -58,7 +58,7 @@ const Wishlist = () => {
                         <div className="card h-100 shadow-sm">
                             <Link to={`/products/${product.slug || product.id}`}>
                                 <img 
-                                    src={product.images?.[0]?.imageUrl || 'https://placehold.co/300x200'} 
+                                    src={product.images?.[0]?.cardUrl || product.images?.[0]?.imageUrl || 'https://placehold.co/300x200'} 
                                     className="card-img-top" 
                                     alt={product.name}
                                     style={{height: '200px', objectFit: 'cover'}} 
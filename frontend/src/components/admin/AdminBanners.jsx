@@ -69,7 +69,7 @@ const AdminBanners = () => {
                   {banners.length > 0 ? banners.map(banner => (
                     <tr key={banner.id}>
                       <td style={{width: '120px'}}>
-                        <img src={banner.imageUrl} alt="" className="img-thumbnail" style={{height: '60px', objectFit: 'cover'}} />
+                        <img src={banner.thumbUrl || banner.imageUrl} alt="" className="img-thumbnail" style={{height: '60px', objectFit: 'cover'}} />
                       </td>
                       <td className="fw-bold">{banner.title}</td>
                       <td><span className="badge bg-info text-dark">{banner.position}</span></td>
@@ -25,6 +25,36 @@ const AdminDashboard = () => {
     loadDashboardData()
   }, [])
 
+  // Nhận thay đổi realtime qua SSE và cộng dồn vào số liệu đang hiển thị
+  useEffect(() => {
+    const unsubscribe = adminService.subscribeDashboardStream(
+      (name, data) => {
+        if (!data.deltas) return
+        const deltas = data.deltas
+        setOverview((prev) => {
+          if (!prev) return prev
+          const next = { ...prev }
+          ;['totalOrders', 'monthlyOrders', 'totalRevenue'].forEach((key) => {
+            if (deltas[key] !== undefined) next[key] = Number(next[key] || 0) + Number(deltas[key])
+          })
+          return next
+        })
+        setOrdersByStatus((prev) => {
+          const next = { ...prev }
+          Object.entries(deltas).forEach(([key, value]) => {
+            if (key.startsWith('orders.')) {
+              const status = key.substring('orders.'.length)
+              next[status] = Number(next[status] || 0) + Number(value)
+            }
+          })
+          return next
+        })
+      },
+      () => loadDashboardData()
+    )
+    return unsubscribe
+  }, [])
+
   const loadDashboardData = async (useFilter = false) => {
     setLoading(true)
     try {
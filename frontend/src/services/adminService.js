@@ -111,6 +111,53 @@ export const adminService = {
     }
   },
 
+  // 8. Luồng SSE cập nhật dashboard realtime
+  // EventSource không gửi được header Authorization -> xin stream token (60s) rồi truyền qua ?token=
+  // Mất kết nối: đóng, xin token mới và mở lại; onReconnect để tải lại số liệu bị lỡ
+  subscribeDashboardStream: (onEvent, onReconnect) => {
+    let source = null
+    let retryTimer = null
+    let closed = false
+
+    const connect = async () => {
+      try {
+        const { data } = await apiClient.post('/analytics/stream-token')
+        if (closed) return
+        source = new EventSource(
+          `${API_BASE_URL}/analytics/stream?token=${encodeURIComponent(data.token)}`
+        )
+        ;['order-created', 'order-status-changed', 'payment-succeeded', 'low-stock'].forEach((name) => {
+          source.addEventListener(name, (e) => onEvent(name, JSON.parse(e.data)))
+        })
+        source.onerror = () => {
+          // Token chỉ dùng lúc mở kết nối, EventSource tự reconnect với token cũ sẽ bị 401
+          source.close()
+          scheduleReconnect()
+        }
+      } catch (error) {
+        console.error('Error opening dashboard stream:', error)
+        scheduleReconnect()
+      }
+    }
+
+    const scheduleReconnect = () => {
+      if (closed || retryTimer) return
+      retryTimer = setTimeout(() => {
+        retryTimer = null
+        if (onReconnect) onReconnect()
+        connect()
+      }, 5000)
+    }
+
+    connect()
+
+    return () => {
+      closed = true
+      clearTimeout(retryTimer)
+      if (source) source.close()
+    }
+  },
+
   // =================================================================
   // QUẢN LÝ SẢN PHẨM (PRODUCT)
   // =================================================================
@@ -0,0 +1,77 @@
+package com.tmdt.shop_noithat_vp.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tạo các index đặc biệt (partial / expression) mà ddl-auto=update của Hibernate không tạo được,
+ * cùng các bảng phụ không có entity.
+ * Các câu lệnh đều idempotent nên chạy lại mỗi lần khởi động không sao.
+ */
+@Component
+@Order(0)
+public class DatabaseIndexInitializer implements CommandLineRunner {
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    private static final String[] STATEMENTS = {
+        // Sản phẩm cũ chưa có ngưỡng tồn kho -> dùng mặc định 10 để khớp predicate của index
+        "UPDATE products SET min_stock_level = 10 WHERE min_stock_level IS NULL",
+        // Ví cũ có balance NULL -> 0 để UPDATE nguyên tử của WalletService áp dụng được
+        "UPDATE users SET balance = 0 WHERE balance IS NULL",
+        // Danh sách sắp hết hàng: chỉ index các dòng đang dưới ngưỡng nên rất nhỏ
+        "CREATE INDEX IF NOT EXISTS idx_products_low_stock ON products (stock_quantity) " +
+            "WHERE stock_quantity <= min_stock_level AND is_deleted = false",
+        // Đối soát thanh toán: chỉ quét các payment còn PENDING theo id (keyset)
+        "CREATE INDEX IF NOT EXISTS idx_payments_pending ON payments (id) " +
+            "WHERE payment_status = 'PENDING'",
+        // Sản phẩm đánh giá cao (ProductRepository.findTopRatedProducts)
+        "CREATE INDEX IF NOT EXISTS idx_products_top_rated ON products (rating_avg DESC, rating_count DESC, id DESC) " +
+            "WHERE is_active = true AND is_deleted = false",
+        // Danh sách đánh giá đã duyệt của sản phẩm, phân trang keyset (created_at, id)
+        "CREATE INDEX IF NOT EXISTS idx_reviews_product_feed ON reviews (product_id, created_at DESC, id DESC) " +
+            "WHERE is_approved = true AND is_deleted = false",
+        // Hàng đợi duyệt đánh giá: chỉ các review chờ duyệt
+        "CREATE INDEX IF NOT EXISTS idx_reviews_pending ON reviews (id) " +
+            "WHERE is_approved = false AND is_deleted = false",
+        // Bucket giới hạn tần suất dùng chung giữa các node (RateLimitFilter, rate-limit.shared=true)
+        "CREATE TABLE IF NOT EXISTS rate_limit_buckets (" +
+            "bucket_key VARCHAR(255) PRIMARY KEY, tokens DOUBLE PRECISION NOT NULL, updated_at TIMESTAMPTZ NOT NULL)",
+        // Người đang yêu thích 1 sản phẩm (WishlistNotificationService), keyset theo user_id
+        "CREATE INDEX IF NOT EXISTS idx_wishlists_product ON wishlists (product_id, user_id) " +
+            "WHERE is_deleted = false",
+        // Đã báo giảm giá / hàng về cho user trong ngày chưa
+        "CREATE TABLE IF NOT EXISTS wishlist_notifications (" +
+            "user_id BIGINT NOT NULL, product_id BIGINT NOT NULL, notify_date DATE NOT NULL, " +
+            "PRIMARY KEY (user_id, product_id, notify_date))",
+        // File upload lưu theo SHA-256 nội dung kèm số tham chiếu (FileStorageService)
+        "CREATE TABLE IF NOT EXISTS stored_blobs (" +
+            "sha256 CHAR(64) PRIMARY KEY, extension VARCHAR(10) NOT NULL, size_bytes BIGINT NOT NULL, " +
+            "ref_count INTEGER NOT NULL DEFAULT 0, created_at TIMESTAMPTZ NOT NULL DEFAULT now(), " +
+            "updated_at TIMESTAMPTZ NOT NULL DEFAULT now())",
+        // GC chỉ quét các blob không còn tham chiếu
+        "CREATE INDEX IF NOT EXISTS idx_stored_blobs_orphans ON stored_blobs (updated_at) WHERE ref_count = 0",
+        // Worker hàng đợi email chỉ quét dòng PENDING đã tới hạn; màn hình email lỗi chỉ đọc dòng DEAD
+        "CREATE INDEX IF NOT EXISTS idx_mail_queue_due ON mail_queue (next_attempt_at) WHERE status = 'PENDING'",
+        "CREATE INDEX IF NOT EXISTS idx_mail_queue_dead ON mail_queue (updated_at DESC) WHERE status = 'DEAD'",
+        // Hibernate tạo CHECK theo danh sách enum lúc tạo bảng, ddl-auto=update không cập nhật khi thêm DEAD
+        "ALTER TABLE payment_callbacks DROP CONSTRAINT IF EXISTS payment_callbacks_status_check",
+        // Callback cũ đã hết số lần thử nhưng còn FAILED -> DEAD để admin thấy
+        "UPDATE payment_callbacks SET status = 'DEAD' WHERE status = 'FAILED' AND attempts >= 5"
+    };
+    
+    @Override
+    public void run(String... args) {
+        for (String sql : STATEMENTS) {
+            try {
+                jdbcTemplate.execute(sql);
+            } catch (Exception e) {
+                System.err.println("Cannot apply database index statement: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.tmdt.shop_noithat_vp.config;
 
 import com.tmdt.shop_noithat_vp.security.JwtAuthenticationFilter;
+import com.tmdt.shop_noithat_vp.security.RateLimitFilter;
 import com.tmdt.shop_noithat_vp.service.CustomUserDetailsService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpStatus; 
@@ -31,16 +33,20 @@ public class SecurityConfig {
     
     private final CustomUserDetailsService userDetailsService;
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
+    private final RateLimitFilter rateLimitFilter;
     
     public SecurityConfig(CustomUserDetailsService userDetailsService, 
-                         JwtAuthenticationFilter jwtAuthenticationFilter) {
+                         JwtAuthenticationFilter jwtAuthenticationFilter,
+                         RateLimitFilter rateLimitFilter) {
         this.userDetailsService = userDetailsService;
         this.jwtAuthenticationFilter = jwtAuthenticationFilter;
+        this.rateLimitFilter = rateLimitFilter;
     }
     
+    // Cost BCrypt chỉnh theo phần cứng: xem POST /api/admin/dashboard/password-hashing/benchmark
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${security.password.bcrypt-strength:10}") int strength) {
+        return new BCryptPasswordEncoder(strength);
     }
     
     @Bean
@@ -62,7 +68,7 @@ public class SecurityConfig {
                     "/api/upload/**",
                     "/product/**", "/categories/**", "/blog/**",
                     "/payment/callback", "/api/payment/**",
-                    "/css/**", "/js/**", "/images/**", "/uploads/**", 
+                    "/css/**", "/js/**", "/images/**", "/uploads/**", "/img/**", 
                     "/error"
                 ).permitAll()
                 .requestMatchers("/admin/**", "/api/admin/**").hasAnyRole("ADMIN", "SALES", "WAREHOUSE", "MARKETING")
@@ -72,7 +78,9 @@ public class SecurityConfig {
             .exceptionHandling(e -> e
                 .authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED))
             )
-            .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+            .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+            // Sau filter JWT để giới hạn tạo đơn theo user đã đăng nhập
+            .addFilterAfter(rateLimitFilter, JwtAuthenticationFilter.class);
             
             // === ĐÃ XÓA ĐOẠN NÀY ĐỂ FIX LỖI ===
             /*
@@ -3,13 +3,24 @@ package com.tmdt.shop_noithat_vp.controller;
 import com.tmdt.shop_noithat_vp.dto.request.CreateProductRequest;
 import com.tmdt.shop_noithat_vp.dto.request.UpdateProductRequest;
 import com.tmdt.shop_noithat_vp.model.Category;
+import com.tmdt.shop_noithat_vp.model.MailMessage;
 import com.tmdt.shop_noithat_vp.model.Order;
+import com.tmdt.shop_noithat_vp.model.PaymentCallback;
 import com.tmdt.shop_noithat_vp.model.Product;
+import com.tmdt.shop_noithat_vp.model.Review;
 import com.tmdt.shop_noithat_vp.model.User;
 import com.tmdt.shop_noithat_vp.repository.CategoryRepository;
+import com.tmdt.shop_noithat_vp.service.BannerService;
+import com.tmdt.shop_noithat_vp.service.FileStorageService;
+import com.tmdt.shop_noithat_vp.service.ImageDerivativeService;
+import com.tmdt.shop_noithat_vp.service.MailQueueService;
 import com.tmdt.shop_noithat_vp.service.OrderService;
+import com.tmdt.shop_noithat_vp.service.PaymentCallbackService;
 import com.tmdt.shop_noithat_vp.service.ProductService;
+import com.tmdt.shop_noithat_vp.service.RatingAggregateService;
+import com.tmdt.shop_noithat_vp.service.ReviewService;
 import com.tmdt.shop_noithat_vp.service.UserService;
+import com.tmdt.shop_noithat_vp.service.WalletService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -40,11 +51,36 @@ public class AdminController {
     @Autowired
     private UserService userService;
     
+    @Autowired
+    private WalletService walletService;
+    
+    @Autowired
+    private ReviewService reviewService;
+    
+    @Autowired
+    private RatingAggregateService ratingAggregateService;
+    
+    @Autowired
+    private ImageDerivativeService imageDerivativeService;
+    
+    @Autowired
+    private FileStorageService fileStorageService;
+    
+    @Autowired
+    private MailQueueService mailQueueService;
+    
+    @Autowired
+    private PaymentCallbackService paymentCallbackService;
+    
+    @Autowired
+    private BannerService bannerService;
+    
     @Autowired
     private CategoryRepository categoryRepository;
     
     @Autowired
     private com.tmdt.shop_noithat_vp.repository.BannerRepository bannerRepository;
+    
     @Autowired
     private com.tmdt.shop_noithat_vp.repository.VoucherRepository voucherRepository;
     
@@ -179,6 +215,56 @@ public class AdminController {
         return ResponseEntity.ok(order);
     }
     
+    // ==========================================
+    // ĐỐI SOÁT VÍ (WALLET)
+    // ==========================================
+    @GetMapping("/wallets/{userId}/audit")
+    public ResponseEntity<Map<String, Object>> auditWallet(@PathVariable Long userId) {
+        return ResponseEntity.ok(walletService.auditBalance(userId));
+    }
+    
+    @PostMapping("/wallets/snapshots")
+    public ResponseEntity<Map<String, Object>> snapshotWallets() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("snapshots", walletService.snapshotBalances());
+        return ResponseEntity.ok(response);
+    }
+    
+    // ==========================================
+    // ĐÁNH GIÁ (REVIEW)
+    // ==========================================
+    @PutMapping("/reviews/{reviewId}/approval")
+    public ResponseEntity<Review> setReviewApproval(@PathVariable Long reviewId, @RequestParam boolean approved) {
+        return ResponseEntity.ok(reviewService.setApproval(reviewId, approved));
+    }
+    
+    // Hàng đợi duyệt đánh giá (cũ nhất trước), trang sau: afterId = nextAfterId của trang trước
+    @GetMapping("/reviews/moderation")
+    public ResponseEntity<Map<String, Object>> getReviewModerationQueue(
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(reviewService.getModerationQueue(afterId, size));
+    }
+    
+    // Body: {"ids": [1, 2, 3]}
+    @PostMapping("/reviews/bulk-approve")
+    public ResponseEntity<Map<String, Object>> bulkApproveReviews(@RequestBody Map<String, List<Long>> request) {
+        return ResponseEntity.ok(reviewService.moderateReviews(request.get("ids"), true));
+    }
+    
+    @PostMapping("/reviews/bulk-reject")
+    public ResponseEntity<Map<String, Object>> bulkRejectReviews(@RequestBody Map<String, List<Long>> request) {
+        return ResponseEntity.ok(reviewService.moderateReviews(request.get("ids"), false));
+    }
+    
+    // Tính lại điểm tổng hợp của mọi sản phẩm từ bảng reviews
+    @PostMapping("/products/ratings/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildRatings() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("fixedProducts", ratingAggregateService.rebuildAll());
+        return ResponseEntity.ok(response);
+    }
+    
     // ==========================================
     // QUẢN LÝ NGƯỜI DÙNG (USER)
     // ==========================================
@@ -222,39 +308,89 @@ public class AdminController {
 
     @PostMapping("/banners")
     public ResponseEntity<com.tmdt.shop_noithat_vp.model.Banner> createBanner(@RequestBody com.tmdt.shop_noithat_vp.model.Banner banner) {
-        // Set giá trị mặc định nếu null
-        if (banner.getIsActive() == null) banner.setIsActive(true);
-        if (banner.getDisplayOrder() == null) banner.setDisplayOrder(0);
-        banner.setIsDeleted(false);
-        
-        return ResponseEntity.ok(bannerRepository.save(banner));
+        banner = bannerService.createBanner(banner);
+        // Sinh biến thể sau commit, luồng nền mới thấy dòng banner
+        imageDerivativeService.request(banner.getImageUrl());
+        return ResponseEntity.ok(banner);
     }
 
     @PutMapping("/banners/{id}")
     public ResponseEntity<com.tmdt.shop_noithat_vp.model.Banner> updateBanner(@PathVariable Long id, @RequestBody com.tmdt.shop_noithat_vp.model.Banner bannerDetails) {
-        com.tmdt.shop_noithat_vp.model.Banner banner = bannerRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Banner not found"));
-        
-        banner.setTitle(bannerDetails.getTitle());
-        banner.setImageUrl(bannerDetails.getImageUrl());
-        banner.setLink(bannerDetails.getLink());
-        banner.setPosition(bannerDetails.getPosition());
-        banner.setDisplayOrder(bannerDetails.getDisplayOrder());
-        banner.setStartDate(bannerDetails.getStartDate());
-        banner.setEndDate(bannerDetails.getEndDate());
-        banner.setIsActive(bannerDetails.getIsActive());
-        
-        return ResponseEntity.ok(bannerRepository.save(banner));
+        com.tmdt.shop_noithat_vp.model.Banner banner = bannerService.updateBanner(id, bannerDetails);
+        if (banner.getThumbUrl() == null) {
+            imageDerivativeService.request(banner.getImageUrl());
+        }
+        return ResponseEntity.ok(banner);
     }
 
     @DeleteMapping("/banners/{id}")
     public ResponseEntity<?> deleteBanner(@PathVariable Long id) {
-        com.tmdt.shop_noithat_vp.model.Banner banner = bannerRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Banner not found"));
-        // Xóa cứng hoặc xóa mềm tùy nhu cầu, ở đây dùng xóa cứng cho gọn
-        bannerRepository.delete(banner); 
+        bannerService.deleteBanner(id);
         return ResponseEntity.ok().build();
     }
+    // ==========================================
+    // LƯU TRỮ FILE UPLOAD
+    // ==========================================
+    
+    @GetMapping("/storage/stats")
+    public ResponseEntity<Map<String, Object>> getStorageStats() {
+        return ResponseEntity.ok(fileStorageService.getStats());
+    }
+    
+    // Chạy GC blob không còn tham chiếu ngay (bình thường chạy theo storage.gc.cron)
+    @PostMapping("/storage/gc")
+    public ResponseEntity<Map<String, Object>> collectOrphanBlobs() {
+        int deleted = fileStorageService.collectOrphans();
+        Map<String, Object> response = new HashMap<>();
+        response.put("deleted", deleted);
+        return ResponseEntity.ok(response);
+    }
+    
+    // ==========================================
+    // IPN MOMO XỬ LÝ LỖI
+    // ==========================================
+    
+    // Callback đã hết số lần thử, mới nhất trước
+    @GetMapping("/payment-callbacks/dead")
+    public ResponseEntity<Page<PaymentCallback>> getDeadPaymentCallbacks(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(paymentCallbackService.getDeadCallbacks(PageRequest.of(page, size)));
+    }
+    
+    @PostMapping("/payment-callbacks/{id}/replay")
+    public ResponseEntity<Map<String, Object>> replayPaymentCallback(@PathVariable Long id) {
+        paymentCallbackService.replay(id);
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", "Đã đưa callback vào hàng đợi xử lý lại");
+        return ResponseEntity.ok(response);
+    }
+    
+    // ==========================================
+    // HÀNG ĐỢI EMAIL
+    // ==========================================
+    
+    @GetMapping("/mail/stats")
+    public ResponseEntity<Map<String, Object>> getMailQueueStats() {
+        return ResponseEntity.ok(mailQueueService.getStats());
+    }
+    
+    // Email gửi lỗi vĩnh viễn / quá số lần thử, mới nhất trước
+    @GetMapping("/mail/dead-letters")
+    public ResponseEntity<Page<MailMessage>> getDeadLetters(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(mailQueueService.getDeadLetters(PageRequest.of(page, size)));
+    }
+    
+    @PostMapping("/mail/{id}/retry")
+    public ResponseEntity<Map<String, Object>> retryDeadLetter(@PathVariable Long id) {
+        mailQueueService.retryDeadLetter(id);
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", "Đã đưa email vào hàng đợi gửi lại");
+        return ResponseEntity.ok(response);
+    }
+    
     // ==========================================
     // QUẢN LÝ VOUCHER
     // ==========================================
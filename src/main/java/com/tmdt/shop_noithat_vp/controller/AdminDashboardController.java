@@ -1,13 +1,29 @@
 package com.tmdt.shop_noithat_vp.controller;
 
 import com.tmdt.shop_noithat_vp.model.enums.OrderStatus;
+import com.tmdt.shop_noithat_vp.security.UserAuthStateCache;
 import com.tmdt.shop_noithat_vp.service.AnalyticsService;
+import com.tmdt.shop_noithat_vp.service.DashboardStreamService;
+import com.tmdt.shop_noithat_vp.service.MoMoGatewayClient;
+import com.tmdt.shop_noithat_vp.service.PasswordService;
+import com.tmdt.shop_noithat_vp.service.WishlistNotificationService;
+import com.tmdt.shop_noithat_vp.service.ReportJobService;
+import com.tmdt.shop_noithat_vp.util.JwtUtil;
+import com.tmdt.shop_noithat_vp.util.ReportWriter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
@@ -20,6 +36,27 @@ public class AdminDashboardController {
     @Autowired
     private AnalyticsService analyticsService;
     
+    @Autowired
+    private ReportJobService reportJobService;
+    
+    @Autowired
+    private DashboardStreamService dashboardStreamService;
+    
+    @Autowired
+    private MoMoGatewayClient moMoGatewayClient;
+    
+    @Autowired
+    private PasswordService passwordService;
+    
+    @Autowired
+    private WishlistNotificationService wishlistNotificationService;
+    
+    @Autowired
+    private UserAuthStateCache userAuthStateCache;
+    
+    @Autowired
+    private JwtUtil jwtUtil;
+    
     /**
      * Dashboard overview - Tổng quan
      */
@@ -62,6 +99,29 @@ public class AdminDashboardController {
         return ResponseEntity.ok(overview);
     }
     
+    /**
+     * Cấp stream token 60 giây cho EventSource (trình duyệt không gửi được header Authorization).
+     * Client gọi lại mỗi lần mở / mở lại kết nối tới /stream?token=...
+     */
+    @PostMapping("/stream-token")
+    public ResponseEntity<?> issueStreamToken(Authentication authentication) {
+        UserAuthStateCache.UserAuthState state = userAuthStateCache.get(authentication.getName());
+        if (state == null || !state.active()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "Unauthorized"));
+        }
+        String token = jwtUtil.generateStreamToken(authentication.getName(), state.role(), state.tokenVersion());
+        return ResponseEntity.ok(Map.of("token", token));
+    }
+    
+    /**
+     * Luồng SSE cập nhật số liệu dashboard theo thời gian thực (thay cho polling).
+     * Xác thực bằng Bearer header hoặc ?token= lấy từ /stream-token (cho EventSource)
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamDashboard() {
+        return dashboardStreamService.subscribe();
+    }
+    
     /**
      * Doanh thu theo thời gian
      */
@@ -138,6 +198,26 @@ public class AdminDashboardController {
         return ResponseEntity.ok(conversionData);
     }
     
+    /**
+     * Số người xem duy nhất của sản phẩm trong ngày (HyperLogLog, sai số ~2%)
+     */
+    @GetMapping("/unique-viewers/{productId}")
+    public ResponseEntity<Map<String, Object>> getUniqueViewers(
+            @PathVariable Long productId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return ResponseEntity.ok(analyticsService.getUniqueViewers(productId, date));
+    }
+    
+    /**
+     * Sản phẩm đang được xem nhiều trong khoảng thời gian gần đây
+     */
+    @GetMapping("/trending-products")
+    public ResponseEntity<List<Map<String, Object>>> getTrendingProducts(
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(defaultValue = "60") int windowMinutes) {
+        return ResponseEntity.ok(analyticsService.getTrendingProducts(limit, windowMinutes));
+    }
+    
     /**
      * Sản phẩm tồn kho thấp
      */
@@ -148,19 +228,93 @@ public class AdminDashboardController {
     }
     
     /**
-     * Export báo cáo Excel
+     * Tình trạng kết nối cổng MoMo: circuit breaker, pool, độ trễ
+     */
+    @GetMapping("/payment-gateway/stats")
+    public ResponseEntity<Map<String, Object>> getPaymentGatewayStats() {
+        return ResponseEntity.ok(moMoGatewayClient.getStats());
+    }
+    
+    /**
+     * Pool băm mật khẩu: hàng đợi, thời gian chờ / thời gian băm, số lần từ chối
+     */
+    @GetMapping("/password-hashing/stats")
+    public ResponseEntity<Map<String, Object>> getPasswordHashingStats() {
+        return ResponseEntity.ok(passwordService.getStats());
+    }
+    
+    /**
+     * Thông báo giảm giá / hàng về cho người yêu thích: số sản phẩm, lô email đang chờ, đã gửi / lỗi
+     */
+    @GetMapping("/wishlist-notifications/stats")
+    public ResponseEntity<Map<String, Object>> getWishlistNotificationStats() {
+        return ResponseEntity.ok(wishlistNotificationService.getStats());
+    }
+    
+    /**
+     * Đo thời gian BCrypt theo từng cost trên máy hiện tại để chọn security.password.bcrypt-strength
+     */
+    @PostMapping("/password-hashing/benchmark")
+    public ResponseEntity<Map<String, Object>> benchmarkPasswordHashing(
+            @RequestParam(defaultValue = "8") int minStrength,
+            @RequestParam(defaultValue = "14") int maxStrength,
+            @RequestParam(defaultValue = "50") long targetMillis) {
+        return ResponseEntity.ok(passwordService.benchmark(minStrength, maxStrength, targetMillis));
+    }
+    
+    /**
+     * Export báo cáo Excel/CSV - ghi thẳng ra response, không build file trong RAM
      */
     @GetMapping("/export-report")
-    public ResponseEntity<byte[]> exportReport(
+    public ResponseEntity<StreamingResponseBody> exportReport(
             @RequestParam String reportType,
+            @RequestParam(defaultValue = "xlsx") String format,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
         
-        byte[] excelData = analyticsService.exportReport(reportType, startDate, endDate);
+        StreamingResponseBody body = out -> analyticsService.exportReport(reportType, format, startDate, endDate, out, null);
+        
+        return ResponseEntity.ok()
+                .header("Content-Disposition", "attachment; filename=report_" + reportType + "." + ReportWriter.extension(format))
+                .header("Content-Type", ReportWriter.contentType(format))
+                .body(body);
+    }
+    
+    /**
+     * Tạo job export chạy nền - trả về jobId ngay
+     */
+    @PostMapping("/export-jobs")
+    public ResponseEntity<Map<String, Object>> submitExportJob(
+            @RequestParam String reportType,
+            @RequestParam(defaultValue = "xlsx") String format,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
+        
+        ReportJobService.ReportJob job = reportJobService.submit(reportType, format, startDate, endDate);
+        return ResponseEntity.accepted().body(job.toMap());
+    }
+    
+    /**
+     * Trạng thái / tiến độ của job export
+     */
+    @GetMapping("/export-jobs/{jobId}")
+    public ResponseEntity<Map<String, Object>> getExportJob(@PathVariable String jobId) {
+        return ResponseEntity.ok(reportJobService.getJob(jobId).toMap());
+    }
+    
+    /**
+     * Tải file báo cáo đã tạo xong (hỗ trợ header Range)
+     */
+    @GetMapping("/export-jobs/{jobId}/download")
+    public ResponseEntity<Resource> downloadExportJob(@PathVariable String jobId) {
+        ReportJobService.ReportJob job = reportJobService.getJob(jobId);
+        if (job.getStatus() != ReportJobService.JobStatus.DONE) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
         
         return ResponseEntity.ok()
-                .header("Content-Disposition", "attachment; filename=report_" + reportType + ".xlsx")
-                .header("Content-Type", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
-                .body(excelData);
+                .header("Content-Disposition", "attachment; filename=" + job.getFile().getFileName())
+                .header("Content-Type", ReportWriter.contentType(job.getFormat()))
+                .body(new FileSystemResource(job.getFile()));
     }
-}
\ No newline at end of file
+}
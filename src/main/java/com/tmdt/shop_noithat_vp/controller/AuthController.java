@@ -8,7 +8,9 @@ import com.tmdt.shop_noithat_vp.dto.response.AuthResponse;
 import com.tmdt.shop_noithat_vp.service.AuthService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
@@ -84,4 +86,20 @@ public class AuthController {
         response.put("success", "true");
         return ResponseEntity.ok(response);
     }
-}
\ No newline at end of file
+    
+    /**
+     * Đăng xuất khỏi mọi thiết bị (thu hồi tất cả token đã cấp)
+     */
+    @PostMapping("/logout-all")
+    public ResponseEntity<Map<String, String>> logoutAll(Authentication authentication) {
+        Map<String, String> response = new HashMap<>();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            response.put("message", "Chưa đăng nhập");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
+        }
+        authService.logoutAllDevices(authentication.getName());
+        response.put("message", "Đã đăng xuất khỏi tất cả thiết bị");
+        response.put("success", "true");
+        return ResponseEntity.ok(response);
+    }
+}
@@ -1,13 +1,10 @@
 package com.tmdt.shop_noithat_vp.controller;
 
 import com.tmdt.shop_noithat_vp.model.Order;
-import com.tmdt.shop_noithat_vp.model.User; // Import User
-import com.tmdt.shop_noithat_vp.model.enums.OrderStatus;
-import com.tmdt.shop_noithat_vp.model.enums.PaymentStatus;
 import com.tmdt.shop_noithat_vp.repository.OrderRepository;
-import com.tmdt.shop_noithat_vp.repository.UserRepository; // Import UserRepository
 import com.tmdt.shop_noithat_vp.service.MoMoService;
-import com.tmdt.shop_noithat_vp.service.WalletService; // Import WalletService
+import com.tmdt.shop_noithat_vp.service.PaymentCallbackService;
+import com.tmdt.shop_noithat_vp.service.PaymentService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -26,13 +23,11 @@ public class PaymentController {
     @Autowired
     private OrderRepository orderRepository;
 
-    // === THÊM 2 CÁI NÀY ĐỂ SỬA LỖI ===
     @Autowired
-    private WalletService walletService;
+    private PaymentCallbackService paymentCallbackService;
 
     @Autowired
-    private UserRepository userRepository;
-    // ================================
+    private PaymentService paymentService;
 
     // API tạo link thanh toán ĐƠN HÀNG
     @PostMapping("/create-momo/{orderId}")
@@ -45,6 +40,9 @@ public class PaymentController {
             
             String resultCode = String.valueOf(momoResponse.get("resultCode"));
             if ("0".equals(resultCode)) {
+                // Lưu PENDING để job đối soát xử lý nếu IPN bị mất
+                paymentService.recordPendingPayment(order, momoResponse);
+                
                 Map<String, Object> response = new HashMap<>();
                 response.put("payUrl", momoResponse.get("payUrl"));
                 response.put("orderId", order.getOrderCode());
@@ -79,38 +77,15 @@ public class PaymentController {
         }
     }
 
-    // Webhook IPN
+    // Webhook IPN: chỉ kiểm tra chữ ký + lưu lại rồi trả lời ngay, xử lý chạy nền (không trùng lặp)
     @PostMapping("/momo-ipn")
     public ResponseEntity<?> momoIPN(@RequestBody Map<String, Object> requestBody) {
         try {
-            String resultCode = String.valueOf(requestBody.get("resultCode"));
-            String orderIdStr = (String) requestBody.get("orderId");
-            long amountLong = Long.parseLong(String.valueOf(requestBody.get("amount")));
-            BigDecimal amount = BigDecimal.valueOf(amountLong);
-
-            if ("0".equals(resultCode)) {
-                if (orderIdStr.startsWith("TOPUP-")) {
-                    // XỬ LÝ NẠP VÍ
-                    String[] parts = orderIdStr.split("-");
-                    Long userId = Long.parseLong(parts[1]);
-                    User user = userRepository.findById(userId).orElseThrow();
-                    
-                    // Gọi WalletService để cộng tiền
-                    walletService.deposit(user, amount, "Nạp tiền qua MoMo");
-                } else {
-                    // XỬ LÝ ĐƠN HÀNG
-                    Order order = orderRepository.findByOrderCode(orderIdStr).orElseThrow();
-                    if (order.getPaymentStatus() != PaymentStatus.SUCCESS) {
-                        order.setPaymentStatus(PaymentStatus.SUCCESS);
-                        order.setOrderStatus(OrderStatus.CONFIRMED);
-                        orderRepository.save(order);
-                    }
-                }
-            }
+            paymentCallbackService.receive(requestBody);
             return ResponseEntity.noContent().build();
         } catch (Exception e) {
-            e.printStackTrace();
+            System.err.println("Rejected MoMo IPN: " + e.getMessage());
             return ResponseEntity.badRequest().build();
         }
     }
-}
\ No newline at end of file
+}
@@ -2,12 +2,17 @@ package com.tmdt.shop_noithat_vp.controller;
 
 import com.tmdt.shop_noithat_vp.model.Product;
 import com.tmdt.shop_noithat_vp.service.ProductService;
+import com.tmdt.shop_noithat_vp.service.ProductViewAnalyticsService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
@@ -20,14 +25,20 @@ public class ProductController {
     @Autowired
     private ProductService productService;
     
+    @Autowired
+    private ProductViewAnalyticsService productViewAnalyticsService;
+    
+    // Chỉ bật khi chạy sau reverse proxy tự ghi đè X-Forwarded-For, nếu không client đổi header là tăng được lượt xem unique
+    @Value("${product.views.trust-forwarded-for:${rate-limit.trust-forwarded-for:false}}")
+    private boolean trustForwardedFor;
+    
     @GetMapping
     public ResponseEntity<Page<Product>> getAllProducts(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "12") int size,
             @RequestParam(defaultValue = "createdAt") String sortBy,
             @RequestParam(defaultValue = "DESC") String sortDir) {
-        Sort sort = sortDir.equalsIgnoreCase("ASC") ? Sort.by(sortBy).ascending() : Sort.by(sortBy).descending();
-        Pageable pageable = PageRequest.of(page, size, sort);
+        Pageable pageable = PageRequest.of(page, size, buildSort(sortBy, sortDir));
         return ResponseEntity.ok(productService.getAllProducts(pageable));
     }
     
@@ -69,27 +80,63 @@ public class ProductController {
             @RequestParam(defaultValue = "DESC") String sortDir) {   // Nhận chiều sắp xếp
         
         // Tạo đối tượng Sort
-        Sort sort = sortDir.equalsIgnoreCase("ASC") ? Sort.by(sortBy).ascending() : Sort.by(sortBy).descending();
-        Pageable pageable = PageRequest.of(page, size, sort);
+        Pageable pageable = PageRequest.of(page, size, buildSort(sortBy, sortDir));
         
         Page<Product> products = productService.searchProducts(categoryId, minPrice, maxPrice, brand, keyword, pageable);
         return ResponseEntity.ok(products);
     }
     
+    @GetMapping("/top-rated")
+    public ResponseEntity<Page<Product>> getTopRatedProducts(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "12") int size,
+            @RequestParam(defaultValue = "1") long minReviews) {
+        Pageable pageable = PageRequest.of(page, size);
+        return ResponseEntity.ok(productService.getTopRatedProducts(minReviews, pageable));
+    }
+    
     @GetMapping("/{id:[0-9]+}")
-    public ResponseEntity<Product> getProductById(@PathVariable Long id) {
+    public ResponseEntity<Product> getProductById(@PathVariable Long id, HttpServletRequest request,
+                                                  Authentication authentication) {
         Optional<Product> product = productService.getProductById(id);
+        product.ifPresent(p -> productViewAnalyticsService.recordView(p.getId(), visitorKey(request, authentication)));
         return product.map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
     
     @GetMapping("/slug/{slug}")
-    public ResponseEntity<Product> getProductBySlug(@PathVariable String slug) {
+    public ResponseEntity<Product> getProductBySlug(@PathVariable String slug, HttpServletRequest request,
+                                                    Authentication authentication) {
         Optional<Product> product = productService.getProductBySlug(slug);
         if (product.isPresent()) {
             productService.incrementViewCount(product.get().getId());
+            productViewAnalyticsService.recordView(product.get().getId(), visitorKey(request, authentication));
         }
         return product.map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
-}
\ No newline at end of file
+    
+    // sortBy=topRated: điểm trung bình rồi tới số lượt đánh giá (cột tổng hợp trên products)
+    private Sort buildSort(String sortBy, String sortDir) {
+        Sort.Direction direction = sortDir.equalsIgnoreCase("ASC") ? Sort.Direction.ASC : Sort.Direction.DESC;
+        if ("topRated".equals(sortBy)) {
+            return Sort.by(direction, "ratingAvg").and(Sort.by(direction, "ratingCount"));
+        }
+        return Sort.by(direction, sortBy);
+    }
+    
+    // Định danh người xem: username nếu đã đăng nhập, ngược lại dùng IP (X-Forwarded-For chỉ khi proxy đáng tin)
+    private String visitorKey(HttpServletRequest request, Authentication authentication) {
+        if (authentication != null && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken)) {
+            return "u:" + authentication.getName();
+        }
+        if (trustForwardedFor) {
+            String forwarded = request.getHeader("X-Forwarded-For");
+            if (forwarded != null && !forwarded.isBlank()) {
+                return "ip:" + forwarded.split(",")[0].trim();
+            }
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+}
@@ -1,6 +1,7 @@
 package com.tmdt.shop_noithat_vp.controller;
 
 import com.tmdt.shop_noithat_vp.dto.request.ReviewRequest;
+import com.tmdt.shop_noithat_vp.dto.response.ReviewView;
 import com.tmdt.shop_noithat_vp.model.Review;
 import com.tmdt.shop_noithat_vp.service.ReviewService;
 import com.tmdt.shop_noithat_vp.service.UserService;
@@ -14,6 +15,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/reviews")
 public class ReviewController {
@@ -34,13 +37,34 @@ public class ReviewController {
 
     // Lấy danh sách đánh giá của sản phẩm
     @GetMapping("/product/{productId}")
-    public ResponseEntity<Page<Review>> getProductReviews(
+    public ResponseEntity<Page<ReviewView>> getProductReviews(
             @PathVariable Long productId,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
         return ResponseEntity.ok(reviewService.getProductReviews(productId, pageable));
     }
+    
+    // Đánh giá của sản phẩm theo cursor (cuộn vô hạn), trang đầu được cache
+    @GetMapping("/product/{productId}/feed")
+    public ResponseEntity<Map<String, Object>> getProductReviewFeed(
+            @PathVariable Long productId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        try {
+            return ResponseEntity.ok(reviewService.getProductReviewFeed(productId, cursor, size));
+        } catch (IllegalArgumentException e) {
+            // Cursor sai định dạng / bị sửa tay
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+    
+    // Điểm trung bình + phân bố sao
+    @GetMapping("/product/{productId}/summary")
+    public ResponseEntity<Map<String, Object>> getRatingSummary(@PathVariable Long productId) {
+        return ResponseEntity.ok(reviewService.getRatingSummary(productId));
+    }
+    
     @PutMapping("/{reviewId}")
     public ResponseEntity<?> updateReview(
             @PathVariable Long reviewId,
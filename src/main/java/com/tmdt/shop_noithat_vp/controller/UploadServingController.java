@@ -0,0 +1,272 @@
+package com.tmdt.shop_noithat_vp.controller;
+
+import com.tmdt.shop_noithat_vp.service.ImageResizeService;
+import com.tmdt.shop_noithat_vp.util.ByteRange;
+import com.tmdt.shop_noithat_vp.util.QualityValues;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Phục vụ file trong thư mục upload (thay resource handler mặc định).
+ * - URL theo hash nội dung (/uploads/blobs/...): Cache-Control immutable 1 năm, ETag = hash
+ * - File cũ đặt tên tùy ý: cache ngắn + ETag theo kích thước / thời gian sửa để revalidate (304)
+ * - Hỗ trợ Range 1 đoạn (206 / 416), HEAD, bản nén sẵn .br / .gz cho file văn bản (ETag thêm -br / -gzip)
+ * - Body gửi bằng sendfile của Tomcat (zero-copy) khi connector hỗ trợ, ngược lại FileChannel.transferTo
+ * - /img/{w}x{h}/... : ảnh thu nhỏ theo yêu cầu (ImageResizeService), phục vụ như file tĩnh ở trên,
+ *   WebP chỉ khi Accept có image/webp (Vary: Accept)
+ */
+@Controller
+public class UploadServingController {
+
+    private static final String PREFIX = "/uploads/";
+    // blobs/ab/cd/<sha256>.<ext>, biến thể blobs/ab/cd/<sha256>_thumb.<ext>
+    // và bản resize cache/img/{w}x{h}/blobs/ab/cd/<sha256>.<ext>.<định dạng ra>
+    private static final Pattern HASHED_PATH = Pattern.compile(
+            "^(?:cache/img/(\\d+x\\d+)/)?blobs/[0-9a-f]{2}/[0-9a-f]{2}/([0-9a-f]{64})(_[a-z]+)?\\.[a-z0-9]+(?:\\.([a-z0-9]+))?$");
+    private static final Pattern SIZE = Pattern.compile("^(\\d{1,4})x(\\d{1,4})$");
+
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE = "public, max-age=3600";
+
+    // Ảnh đã nén sẵn, chỉ file văn bản mới có bản .br / .gz
+    private static final Set<String> COMPRESSIBLE = Set.of("svg", "json", "txt", "css", "js", "csv");
+    private static final List<String> PRECOMPRESSED_CODINGS = List.of("br", "gzip");
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Autowired
+    private ImageResizeService imageResizeService;
+
+    @Value("${file.upload-dir}")
+    private String uploadDir;
+
+    // File nhỏ ghi thẳng nhanh hơn chuyển cho luồng sendfile (ngưỡng giống DefaultServlet của Tomcat)
+    @Value("${uploads.sendfile-min-bytes:49152}")
+    private long sendfileMinBytes;
+
+    @RequestMapping(value = "/uploads/**", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void serve(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String relative = relativePath(request, PREFIX);
+        Path file = resolve(relative);
+        if (file == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        sendFile(request, response, relative, file);
+    }
+
+    /**
+     * Ảnh upload cũ thu nhỏ theo yêu cầu: /img/{w}x{h}/{đường dẫn trong uploads}, h = 0 nghĩa là tự theo tỉ lệ.
+     * Lần đầu resize trên pool của ImageResizeService, sau đó phục vụ thẳng file trong cache như file tĩnh.
+     */
+    @RequestMapping(value = "/img/{size}/**", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void serveResized(@PathVariable String size, HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+        Matcher m = SIZE.matcher(size);
+        if (!m.matches()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        int width = Integer.parseInt(m.group(1));
+        int height = Integer.parseInt(m.group(2));
+        if (!imageResizeService.isAllowedSize(width, height)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Image size not allowed");
+            return;
+        }
+
+        // Cùng URL trả WebP hoặc JPEG/PNG tùy Accept -> cache trung gian phải tách theo Accept
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        Float webp = QualityValues.parse(request.getHeader(HttpHeaders.ACCEPT)).explicit("image/webp");
+        boolean acceptsWebp = webp != null && webp > 0;
+
+        Path cached;
+        try {
+            cached = imageResizeService.getResized(width, height, relativePath(request, "/img/" + size + "/"), acceptsWebp);
+        } catch (RejectedExecutionException e) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+        if (cached == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        Path root = Paths.get(uploadDir).toAbsolutePath().normalize();
+        sendFile(request, response, root.relativize(cached).toString().replace('\\', '/'), cached);
+    }
+
+    private void sendFile(HttpServletRequest request, HttpServletResponse response,
+                          String relative, Path file) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        long lastModified = attrs.lastModifiedTime().toMillis() / 1000 * 1000;
+
+        Matcher hashed = HASHED_PATH.matcher(relative);
+        String tag = hashed.matches()
+                ? hashed.group(2) + (hashed.group(3) != null ? hashed.group(3) : "")
+                        + (hashed.group(1) != null ? "-" + hashed.group(1) : "")
+                        + (hashed.group(1) != null && hashed.group(4) != null ? "-" + hashed.group(4) : "")
+                : Long.toHexString(attrs.size()) + "-" + Long.toHexString(lastModified);
+
+        // Bản nén sẵn chọn trước 304: mỗi Content-Encoding là 1 biểu diễn riêng nên có ETag riêng
+        String name = file.getFileName().toString();
+        boolean compressible = COMPRESSIBLE.contains(name.substring(name.lastIndexOf('.') + 1).toLowerCase());
+        Precompressed encoded = compressible ? precompressed(request, file) : null;
+        String etag = "\"" + tag + (encoded != null ? "-" + encoded.coding() : "") + "\"";
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, hashed.matches() ? IMMUTABLE : REVALIDATE);
+        response.setHeader(HttpHeaders.ETAG, etag);
+        if (compressible) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader("X-Content-Type-Options", "nosniff");
+
+        if (notModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        String contentType = request.getServletContext().getMimeType(file.getFileName().toString());
+        response.setContentType(contentType != null ? contentType : "application/octet-stream");
+
+        // Bản nén sẵn: không áp dụng Range cho gọn
+        if (encoded != null) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, encoded.coding());
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "none");
+            send(request, response, encoded.file(), 0, Files.size(encoded.file()));
+            return;
+        }
+
+        long length = attrs.size();
+        ByteRange range = rangeFor(request, etag, length);
+        if (range == ByteRange.UNSATISFIABLE) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+        if (range != null) {
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + range.start() + "-" + range.end() + "/" + length);
+            send(request, response, file, range.start(), range.length());
+        } else {
+            send(request, response, file, 0, length);
+        }
+    }
+
+    private void send(HttpServletRequest request, HttpServletResponse response,
+                      Path file, long start, long count) throws IOException {
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod()) || count == 0) return;
+
+        if (count >= sendfileMinBytes && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat tự gửi file từ kernel sau khi handler trả về
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            OutputStream out = response.getOutputStream();
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long written = channel.transferTo(position, remaining, target);
+                if (written <= 0) break;
+                position += written;
+                remaining -= written;
+            }
+            out.flush();
+        }
+    }
+
+    // If-None-Match ưu tiên hơn If-Modified-Since (RFC 9110)
+    private static boolean notModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            if (ifNoneMatch.trim().equals("*")) return true;
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) tag = tag.substring(2);
+                if (tag.equals(etag)) return true;
+            }
+            return false;
+        }
+        try {
+            long since = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+            return since != -1 && lastModified <= since;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // If-Range khác ETag hiện tại -> file đã đổi, trả cả file
+    private static ByteRange rangeFor(HttpServletRequest request, String etag, long length) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null) return null;
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.trim().equals(etag)) return null;
+        return ByteRange.parse(header, length);
+    }
+
+    // Theo q của Accept-Encoding ("br;q=0" là từ chối br), bằng nhau thì ưu tiên br
+    private static Precompressed precompressed(HttpServletRequest request, Path file) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (accept == null) return null;
+        String name = file.getFileName().toString();
+        for (String coding : QualityValues.parse(accept).preferred(PRECOMPRESSED_CODINGS)) {
+            Path candidate = file.resolveSibling(name + (coding.equals("br") ? ".br" : ".gz"));
+            if (Files.isRegularFile(candidate)) {
+                return new Precompressed(candidate, coding);
+            }
+        }
+        return null;
+    }
+
+    private record Precompressed(Path file, String coding) {
+    }
+
+    private static String relativePath(HttpServletRequest request, String prefix) {
+        String uri = request.getRequestURI().substring(request.getContextPath().length());
+        return UriUtils.decode(uri.substring(prefix.length()), StandardCharsets.UTF_8);
+    }
+
+    // Chặn "../" và file tạm đang upload dở
+    private Path resolve(String relative) {
+        if (relative.isEmpty() || relative.startsWith("blobs/tmp/")) return null;
+        Path root = Paths.get(uploadDir).toAbsolutePath().normalize();
+        Path file = root.resolve(relative).normalize();
+        if (!file.startsWith(root) || !Files.isRegularFile(file)) return null;
+        return file;
+    }
+}
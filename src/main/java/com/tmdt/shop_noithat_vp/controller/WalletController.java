@@ -1,5 +1,6 @@
 package com.tmdt.shop_noithat_vp.controller;
 
+import com.tmdt.shop_noithat_vp.model.WalletMonthlyStatement;
 import com.tmdt.shop_noithat_vp.model.WalletTransaction;
 import com.tmdt.shop_noithat_vp.service.UserService;
 import com.tmdt.shop_noithat_vp.service.WalletService;
@@ -11,6 +12,11 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/wallet")
 public class WalletController {
@@ -33,4 +39,46 @@ public class WalletController {
         
         return ResponseEntity.ok(transactions);
     }
-}
\ No newline at end of file
+
+    // Lịch sử giao dịch dạng cursor (không dùng OFFSET) - truyền nextCursor của trang trước
+    @GetMapping("/transactions/cursor")
+    public ResponseEntity<Map<String, Object>> getTransactionsByCursor(
+            Authentication authentication,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        
+        Long userId = userService.getCurrentUserId(authentication);
+        try {
+            return ResponseEntity.ok(walletService.getUserTransactionsAfterCursor(userId, cursor, size));
+        } catch (IllegalArgumentException e) {
+            // Cursor sai định dạng / bị sửa tay
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    // Sao kê các tháng gần nhất
+    @GetMapping("/statements")
+    public ResponseEntity<List<WalletMonthlyStatement>> getStatements(
+            Authentication authentication,
+            @RequestParam(defaultValue = "12") int months) {
+        
+        Long userId = userService.getCurrentUserId(authentication);
+        return ResponseEntity.ok(walletService.getMonthlyStatements(userId, months));
+    }
+
+    // Sao kê 1 tháng, định dạng yyyy-MM
+    @GetMapping("/statements/{month}")
+    public ResponseEntity<?> getStatement(
+            Authentication authentication,
+            @PathVariable String month) {
+        
+        YearMonth yearMonth;
+        try {
+            yearMonth = YearMonth.parse(month);
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Invalid month, expected yyyy-MM"));
+        }
+        Long userId = userService.getCurrentUserId(authentication);
+        return ResponseEntity.ok(walletService.getMonthlyStatement(userId, yearMonth));
+    }
+}
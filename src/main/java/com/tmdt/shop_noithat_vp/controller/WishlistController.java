@@ -12,6 +12,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -47,6 +48,15 @@ public class WishlistController {
         return ResponseEntity.ok(response);
     }
 
+    // Trạng thái yêu thích của nhiều sản phẩm cùng lúc: /api/wishlist/contains?productIds=1,2,3
+    @GetMapping("/contains")
+    public ResponseEntity<Map<Long, Boolean>> containsProducts(
+            Authentication authentication,
+            @RequestParam List<Long> productIds) {
+        Long userId = userService.getCurrentUserId(authentication);
+        return ResponseEntity.ok(wishlistService.containsProducts(userId, productIds));
+    }
+
     @GetMapping("/check/{productId}")
     public ResponseEntity<Boolean> checkWishlist(
             Authentication authentication,
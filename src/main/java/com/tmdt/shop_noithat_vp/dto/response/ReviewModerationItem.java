@@ -0,0 +1,38 @@
+package com.tmdt.shop_noithat_vp.dto.response;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 1 dòng trong hàng đợi duyệt đánh giá của admin
+ */
+@Data
+@NoArgsConstructor
+public class ReviewModerationItem {
+    private Long id;
+    private Long productId;
+    private String productName;
+    private Long userId;
+    private String reviewerName;
+    private Integer rating;
+    private String comment;
+    private List<String> images;
+    private LocalDateTime createdAt;
+
+    // Dùng trong JPQL "SELECT new ..." của ReviewRepository
+    public ReviewModerationItem(Long id, Long productId, String productName, Long userId, String reviewerName,
+                                Integer rating, String comment, String reviewImages, LocalDateTime createdAt) {
+        this.id = id;
+        this.productId = productId;
+        this.productName = productName;
+        this.userId = userId;
+        this.reviewerName = reviewerName;
+        this.rating = rating;
+        this.comment = comment;
+        this.images = ReviewView.parseImages(reviewImages);
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,64 @@
+package com.tmdt.shop_noithat_vp.dto.response;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Dữ liệu hiển thị 1 đánh giá: chỉ các cột cần thiết, không kéo theo entity User
+ */
+@Data
+@NoArgsConstructor
+public class ReviewView {
+    private Long id;
+    private String reviewerName;
+    private String reviewerAvatar;
+    private Integer rating;
+    private String comment;
+    private List<String> images;
+    private LocalDateTime createdAt;
+
+    // Dùng trong JPQL "SELECT new ..." của ReviewRepository
+    public ReviewView(Long id, String reviewerName, String reviewerAvatar, Integer rating,
+                      String comment, String reviewImages, LocalDateTime createdAt) {
+        this.id = id;
+        this.reviewerName = reviewerName;
+        this.reviewerAvatar = reviewerAvatar;
+        this.rating = rating;
+        this.comment = comment;
+        this.images = parseImages(reviewImages);
+        this.createdAt = createdAt;
+    }
+
+    // review_images lưu dạng JSON array hoặc danh sách URL cách nhau bởi dấu phẩy
+    public static List<String> parseImages(String raw) {
+        if (raw == null || raw.isBlank()) {
+            return Collections.emptyList();
+        }
+        String trimmed = raw.trim();
+        List<String> images = new ArrayList<>();
+        if (trimmed.startsWith("[")) {
+            try {
+                JSONArray array = new JSONArray(trimmed);
+                for (int i = 0; i < array.length(); i++) {
+                    String url = array.optString(i, "").trim();
+                    if (!url.isEmpty()) images.add(url);
+                }
+                return images;
+            } catch (JSONException e) {
+                // Không phải JSON hợp lệ -> xử lý như chuỗi phân cách bằng dấu phẩy
+            }
+        }
+        for (String part : trimmed.split(",")) {
+            String url = part.trim();
+            if (!url.isEmpty()) images.add(url);
+        }
+        return images;
+    }
+}
@@ -0,0 +1,7 @@
+package com.tmdt.shop_noithat_vp.event;
+
+/**
+ * Phát ra khi tồn kho của sản phẩm chạm ngưỡng minStockLevel
+ */
+public record LowStockEvent(Long productId, String productName, Integer stockQuantity, Integer minStockLevel) {
+}
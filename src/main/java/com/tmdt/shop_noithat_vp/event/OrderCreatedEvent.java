@@ -0,0 +1,11 @@
+package com.tmdt.shop_noithat_vp.event;
+
+import com.tmdt.shop_noithat_vp.model.enums.OrderStatus;
+
+import java.math.BigDecimal;
+
+/**
+ * Phát ra khi khách đặt đơn thành công
+ */
+public record OrderCreatedEvent(Long orderId, String orderCode, OrderStatus status, BigDecimal totalAmount) {
+}
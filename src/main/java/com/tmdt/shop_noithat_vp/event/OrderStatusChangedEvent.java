@@ -0,0 +1,12 @@
+package com.tmdt.shop_noithat_vp.event;
+
+import com.tmdt.shop_noithat_vp.model.enums.OrderStatus;
+
+import java.math.BigDecimal;
+
+/**
+ * Phát ra khi đơn hàng chuyển trạng thái (from -> to)
+ */
+public record OrderStatusChangedEvent(Long orderId, String orderCode, OrderStatus from, OrderStatus to,
+                                      BigDecimal totalAmount) {
+}
@@ -0,0 +1,9 @@
+package com.tmdt.shop_noithat_vp.event;
+
+import java.math.BigDecimal;
+
+/**
+ * Phát ra khi một đơn được thanh toán thành công (MoMo hoặc ví)
+ */
+public record PaymentSucceededEvent(String orderCode, String paymentMethod, BigDecimal amount) {
+}
@@ -0,0 +1,11 @@
+package com.tmdt.shop_noithat_vp.event;
+
+import java.math.BigDecimal;
+
+/**
+ * Phát ra khi admin cập nhật sản phẩm làm giá bán thực tế giảm hoặc hàng về lại (tồn kho 0 -> > 0).
+ * Giá là giá bán thực tế: salePrice nếu có, ngược lại price.
+ */
+public record ProductOfferChangedEvent(Long productId, String productName, String productSlug, BigDecimal oldPrice,
+                                       BigDecimal newPrice, boolean priceDropped, boolean restocked) {
+}
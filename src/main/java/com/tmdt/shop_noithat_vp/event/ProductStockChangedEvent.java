@@ -0,0 +1,8 @@
+package com.tmdt.shop_noithat_vp.event;
+
+/**
+ * Phát ra mỗi khi tồn kho / ngưỡng tồn kho / trạng thái xóa của sản phẩm thay đổi
+ */
+public record ProductStockChangedEvent(Long productId, String productName, Integer stockQuantity,
+                                       Integer minStockLevel, boolean deleted) {
+}
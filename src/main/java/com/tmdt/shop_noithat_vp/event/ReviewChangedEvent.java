@@ -0,0 +1,7 @@
+package com.tmdt.shop_noithat_vp.event;
+
+/**
+ * Phát ra khi đánh giá của sản phẩm được tạo / sửa / duyệt / ẩn
+ */
+public record ReviewChangedEvent(Long productId) {
+}
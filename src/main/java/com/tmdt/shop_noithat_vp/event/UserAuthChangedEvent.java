@@ -0,0 +1,8 @@
+package com.tmdt.shop_noithat_vp.event;
+
+/**
+ * Phát ra khi thông tin ảnh hưởng tới xác thực của user thay đổi
+ * (mật khẩu, trạng thái kích hoạt, quyền, đăng xuất mọi thiết bị)
+ */
+public record UserAuthChangedEvent(String username) {
+}
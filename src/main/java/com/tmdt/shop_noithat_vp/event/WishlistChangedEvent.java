@@ -0,0 +1,7 @@
+package com.tmdt.shop_noithat_vp.event;
+
+/**
+ * Phát ra khi user thêm / bỏ 1 sản phẩm khỏi danh sách yêu thích
+ */
+public record WishlistChangedEvent(Long userId, Long productId, boolean added) {
+}
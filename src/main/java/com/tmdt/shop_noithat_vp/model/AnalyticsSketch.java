@@ -0,0 +1,44 @@
+package com.tmdt.shop_noithat_vp.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Sketch thống kê (HyperLogLog / Space-Saving) đã serialize.
+ * Mỗi node ghi bản của riêng nó, khi đọc thì gộp tất cả các node lại.
+ */
+@Entity
+@Table(name = "analytics_sketches", uniqueConstraints = {
+    @UniqueConstraint(columnNames = {"sketch_type", "sketch_key", "period_start", "node_id"})
+}, indexes = {
+    @Index(name = "idx_sketch_type_period", columnList = "sketch_type, period_start")
+})
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalyticsSketch extends BaseEntity {
+    
+    public static final String TYPE_PRODUCT_VIEWERS = "PRODUCT_VIEWERS_HLL";
+    public static final String TYPE_PRODUCT_VIEWS_TOPK = "PRODUCT_VIEWS_TOPK";
+    
+    @Column(name = "sketch_type", nullable = false, length = 50)
+    private String sketchType;
+    
+    @Column(name = "sketch_key", nullable = false, length = 100)
+    private String sketchKey; // VD: productId, "" nếu sketch toàn cục
+    
+    @Column(name = "period_start", nullable = false)
+    private LocalDateTime periodStart; // Đầu ngày (HLL) hoặc đầu bucket 5 phút (top-K)
+    
+    @Column(name = "node_id", nullable = false, length = 64)
+    private String nodeId;
+    
+    @Column(name = "data", nullable = false, columnDefinition = "bytea")
+    private byte[] data;
+}
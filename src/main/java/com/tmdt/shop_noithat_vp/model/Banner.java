@@ -22,6 +22,16 @@ public class Banner extends BaseEntity {
     @Column(name = "image_url", nullable = false)
     private String imageUrl;
     
+    // Biến thể do ImageDerivativeService sinh và ghi bằng SQL (entity không ghi đè)
+    @Column(name = "thumb_url", insertable = false, updatable = false)
+    private String thumbUrl;
+    
+    @Column(name = "card_url", insertable = false, updatable = false)
+    private String cardUrl;
+    
+    @Column(name = "detail_url", insertable = false, updatable = false)
+    private String detailUrl;
+    
     @Column(name = "link")
     private String link;
     
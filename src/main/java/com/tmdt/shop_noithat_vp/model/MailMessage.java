@@ -0,0 +1,55 @@
+package com.tmdt.shop_noithat_vp.model;
+
+import com.tmdt.shop_noithat_vp.model.enums.MailStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Email trong hàng đợi gửi (outbox). Dòng được ghi cùng transaction với nghiệp vụ sinh ra email,
+ * MailQueueService gửi nền theo lô và thử lại với backoff; lỗi quá số lần thì chuyển DEAD.
+ */
+@Entity
+@Table(name = "mail_queue")
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class MailMessage extends BaseEntity {
+    
+    @Column(name = "recipient", nullable = false, length = 320)
+    private String recipient;
+    
+    // Phần sau @ (chữ thường), dùng để giới hạn tốc độ theo nhà cung cấp mail người nhận
+    @Column(name = "recipient_domain", nullable = false)
+    private String recipientDomain;
+    
+    @Column(name = "subject", nullable = false, length = 500)
+    private String subject;
+    
+    @Column(name = "body", nullable = false, columnDefinition = "TEXT")
+    private String body;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private MailStatus status = MailStatus.PENDING;
+    
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0;
+    
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+    
+    @Column(name = "locked_at")
+    private LocalDateTime lockedAt;
+    
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+    
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+}
@@ -0,0 +1,59 @@
+package com.tmdt.shop_noithat_vp.model;
+
+import com.tmdt.shop_noithat_vp.model.enums.CallbackStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * IPN thô nhận từ MoMo. Unique (request_id, trans_id) nên MoMo gửi lại bao nhiêu lần
+ * cũng chỉ có 1 bản ghi và chỉ được xử lý 1 lần.
+ */
+@Entity
+@Table(name = "payment_callbacks", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_payment_callbacks_request_trans", columnNames = {"request_id", "trans_id"})
+}, indexes = {
+    @Index(name = "idx_payment_callbacks_status", columnList = "status, created_at")
+})
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentCallback extends BaseEntity {
+    
+    @Column(name = "request_id", nullable = false, length = 100)
+    private String requestId;
+    
+    @Column(name = "trans_id", nullable = false, length = 100)
+    private String transId;
+    
+    @Column(name = "gateway_order_id", nullable = false, length = 100)
+    private String gatewayOrderId; // orderCode của đơn hàng hoặc TOPUP-{userId}-{time}
+    
+    @Column(name = "result_code")
+    private Integer resultCode;
+    
+    @Column(name = "amount", precision = 19, scale = 2)
+    private BigDecimal amount;
+    
+    @Column(name = "raw_data", nullable = false, columnDefinition = "TEXT")
+    private String rawData;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private CallbackStatus status = CallbackStatus.RECEIVED;
+    
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0;
+    
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+    
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+}
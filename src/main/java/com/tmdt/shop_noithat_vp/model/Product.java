@@ -85,6 +85,33 @@ public class Product extends BaseEntity {
     @Column(name = "sold_count")
     private Long soldCount = 0L;
     
+    // === TỔNG HỢP ĐÁNH GIÁ (chỉ tính review đã duyệt, chưa xóa) ===
+    // Do RatingAggregateService cập nhật bằng delta trong SQL -> JPA không insert/update để không ghi đè số cũ
+    @Column(name = "rating_count", insertable = false, updatable = false, columnDefinition = "BIGINT default 0")
+    private Long ratingCount = 0L;
+    
+    @Column(name = "rating_sum", insertable = false, updatable = false, columnDefinition = "BIGINT default 0")
+    private Long ratingSum = 0L;
+    
+    @Column(name = "rating_avg", insertable = false, updatable = false, columnDefinition = "NUMERIC(3, 2) default 0")
+    private BigDecimal ratingAvg = BigDecimal.ZERO;
+    
+    // Phân bố số review theo 1..5 sao
+    @Column(name = "rating_1", insertable = false, updatable = false, columnDefinition = "BIGINT default 0")
+    private Long rating1 = 0L;
+    
+    @Column(name = "rating_2", insertable = false, updatable = false, columnDefinition = "BIGINT default 0")
+    private Long rating2 = 0L;
+    
+    @Column(name = "rating_3", insertable = false, updatable = false, columnDefinition = "BIGINT default 0")
+    private Long rating3 = 0L;
+    
+    @Column(name = "rating_4", insertable = false, updatable = false, columnDefinition = "BIGINT default 0")
+    private Long rating4 = 0L;
+    
+    @Column(name = "rating_5", insertable = false, updatable = false, columnDefinition = "BIGINT default 0")
+    private Long rating5 = 0L;
+    
     @OneToMany(mappedBy = "product", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<ProductImage> images = new ArrayList<>();
     
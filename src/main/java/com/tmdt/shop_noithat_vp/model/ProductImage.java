@@ -23,6 +23,16 @@ public class ProductImage extends BaseEntity {
     @Column(name = "image_url", nullable = false)
     private String imageUrl;
     
+    // Biến thể do ImageDerivativeService sinh và ghi bằng SQL (entity không ghi đè)
+    @Column(name = "thumb_url", insertable = false, updatable = false)
+    private String thumbUrl;
+    
+    @Column(name = "card_url", insertable = false, updatable = false)
+    private String cardUrl;
+    
+    @Column(name = "detail_url", insertable = false, updatable = false)
+    private String detailUrl;
+    
     @Column(name = "display_order")
     private Integer displayOrder = 0;
     
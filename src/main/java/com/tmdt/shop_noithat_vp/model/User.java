@@ -44,6 +44,11 @@ public class User extends BaseEntity {
     @Column(name = "is_active")
     private Boolean isActive = true;
     
+    // Tăng lên để thu hồi mọi JWT đã cấp trước đó (đổi mật khẩu, đăng xuất mọi thiết bị).
+    // Chỉ đổi qua UserRepository.incrementTokenVersion, giống balance
+    @Column(name = "token_version", nullable = false, updatable = false, columnDefinition = "INTEGER default 0")
+    private Integer tokenVersion = 0;
+    
     @Column(name = "is_email_verified")
     private Boolean isEmailVerified = false;
     
@@ -64,7 +69,9 @@ public class User extends BaseEntity {
     
     // --- ĐÃ SỬA ĐOẠN NÀY ---
     // Thêm columnDefinition để DB tự gán số 0, tránh bị NULL
-    @Column(name = "balance", precision = 19, scale = 2, columnDefinition = "NUMERIC(19, 2) default 0")
+    // updatable = false: số dư chỉ được đổi bằng UPDATE nguyên tử trong WalletService,
+    // lưu User (đổi profile, mật khẩu...) không bao giờ ghi đè số dư cũ
+    @Column(name = "balance", precision = 19, scale = 2, updatable = false, columnDefinition = "NUMERIC(19, 2) default 0")
     private BigDecimal balance = BigDecimal.ZERO;
     // -----------------------
 
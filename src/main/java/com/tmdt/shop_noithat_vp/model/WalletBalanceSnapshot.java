@@ -0,0 +1,38 @@
+package com.tmdt.shop_noithat_vp.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Ảnh chụp số dư ví định kỳ: balance = số dư sau giao dịch lastTransactionId.
+ * Số dư hiện tại = balance + tổng amount các giao dịch có id > lastTransactionId.
+ */
+@Entity
+@Table(name = "wallet_balance_snapshots", indexes = {
+    @Index(name = "idx_wallet_snapshot_user", columnList = "user_id, id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WalletBalanceSnapshot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "balance", precision = 19, scale = 2, nullable = false)
+    private BigDecimal balance;
+
+    @Column(name = "last_transaction_id", nullable = false)
+    private Long lastTransactionId;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt = LocalDateTime.now();
+}
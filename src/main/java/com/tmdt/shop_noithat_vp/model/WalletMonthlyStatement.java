@@ -0,0 +1,50 @@
+package com.tmdt.shop_noithat_vp.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Sao kê ví theo tháng, được cộng dồn ngay khi ghi giao dịch (WalletService)
+ * nên xem sao kê không phải quét lịch sử giao dịch.
+ */
+@Entity
+@Table(name = "wallet_monthly_statements", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_wallet_statement_user_month", columnNames = {"user_id", "statement_month"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WalletMonthlyStatement {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "statement_month", nullable = false)
+    private LocalDate statementMonth; // Ngày đầu tháng
+
+    @Column(name = "opening_balance", precision = 19, scale = 2, nullable = false)
+    private BigDecimal openingBalance;
+
+    @Column(name = "deposit_total", precision = 19, scale = 2, nullable = false)
+    private BigDecimal depositTotal = BigDecimal.ZERO;
+
+    @Column(name = "payment_total", precision = 19, scale = 2, nullable = false)
+    private BigDecimal paymentTotal = BigDecimal.ZERO; // Số âm
+
+    @Column(name = "refund_total", precision = 19, scale = 2, nullable = false)
+    private BigDecimal refundTotal = BigDecimal.ZERO;
+
+    @Column(name = "closing_balance", precision = 19, scale = 2, nullable = false)
+    private BigDecimal closingBalance;
+
+    @Column(name = "transaction_count", nullable = false)
+    private Integer transactionCount = 0;
+}
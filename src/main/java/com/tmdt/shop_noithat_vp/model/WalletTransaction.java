@@ -9,7 +9,10 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "wallet_transactions")
+@Table(name = "wallet_transactions", indexes = {
+    @Index(name = "idx_wallet_tx_user_id", columnList = "user_id, id"),
+    @Index(name = "idx_wallet_tx_user_created", columnList = "user_id, created_at, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -40,4 +43,7 @@ public class WalletTransaction {
     
     @Column(name = "transaction_status")
     private String status; // SUCCESS, FAILED
+    
+    @Column(name = "balance_after", precision = 19, scale = 2)
+    private BigDecimal balanceAfter; // Số dư ngay sau giao dịch (null với giao dịch cũ)
 }
\ No newline at end of file
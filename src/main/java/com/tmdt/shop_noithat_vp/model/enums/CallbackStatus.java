@@ -0,0 +1,8 @@
+package com.tmdt.shop_noithat_vp.model.enums;
+
+public enum CallbackStatus {
+    RECEIVED,          // Đã lưu, chờ xử lý
+    PROCESSED,         // Đã xử lý xong (chỉ 1 lần)
+    FAILED,            // Xử lý lỗi, sẽ thử lại
+    DEAD               // Hết số lần thử, chờ admin xem lại / chạy lại
+}
@@ -0,0 +1,8 @@
+package com.tmdt.shop_noithat_vp.model.enums;
+
+public enum MailStatus {
+    PENDING,           // Chờ gửi (mới hoặc chờ tới lượt thử lại)
+    SENDING,           // Worker đang gửi
+    SENT,              // Đã gửi
+    DEAD               // Lỗi vĩnh viễn / quá số lần thử, chờ admin xem lại
+}
@@ -0,0 +1,32 @@
+package com.tmdt.shop_noithat_vp.repository;
+
+import com.tmdt.shop_noithat_vp.model.AnalyticsSketch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AnalyticsSketchRepository extends JpaRepository<AnalyticsSketch, Long> {
+    
+    Optional<AnalyticsSketch> findBySketchTypeAndSketchKeyAndPeriodStartAndNodeId(
+            String sketchType, String sketchKey, LocalDateTime periodStart, String nodeId);
+    
+    List<AnalyticsSketch> findBySketchTypeAndSketchKeyAndPeriodStart(
+            String sketchType, String sketchKey, LocalDateTime periodStart);
+    
+    // Bản của các node khác (bản của node hiện tại đã có trong RAM)
+    List<AnalyticsSketch> findBySketchTypeAndPeriodStartGreaterThanEqualAndNodeIdNot(
+            String sketchType, LocalDateTime periodStart, String nodeId);
+    
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM AnalyticsSketch s WHERE s.sketchType = :type AND s.periodStart < :before")
+    int deleteOlderThan(@Param("type") String sketchType, @Param("before") LocalDateTime before);
+}
@@ -3,8 +3,10 @@ package com.tmdt.shop_noithat_vp.repository;
 
 import com.tmdt.shop_noithat_vp.model.Banner;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -18,4 +20,10 @@ public interface BannerRepository extends JpaRepository<Banner, Long> {
            "AND (b.endDate IS NULL OR b.endDate >= :now) " +
            "ORDER BY b.displayOrder ASC")
     List<Banner> findActiveBannersByPosition(String position, LocalDateTime now);
-}
\ No newline at end of file
+    
+    // Đổi ảnh thì bỏ biến thể của ảnh cũ, ImageDerivativeService sẽ ghi biến thể của ảnh mới
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE banners SET thumb_url = NULL, card_url = NULL, detail_url = NULL WHERE id = :id", nativeQuery = true)
+    int clearImageVariants(Long id);
+}
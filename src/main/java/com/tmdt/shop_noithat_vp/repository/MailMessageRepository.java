@@ -0,0 +1,29 @@
+package com.tmdt.shop_noithat_vp.repository;
+
+import com.tmdt.shop_noithat_vp.model.MailMessage;
+import com.tmdt.shop_noithat_vp.model.enums.MailStatus;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface MailMessageRepository extends JpaRepository<MailMessage, Long> {
+    
+    // Danh sách email lỗi cho admin (idx_mail_queue_dead)
+    Page<MailMessage> findByStatusOrderByUpdatedAtDesc(MailStatus status, Pageable pageable);
+    
+    // Đưa email DEAD về hàng đợi, đếm lại số lần thử từ đầu
+    @Modifying
+    @Transactional
+    @Query("UPDATE MailMessage m SET m.status = :pending, m.attempts = 0, m.nextAttemptAt = :now, " +
+           "m.lastError = null, m.updatedAt = :now WHERE m.id = :id AND m.status = :dead")
+    int requeue(@Param("id") Long id, @Param("pending") MailStatus pending,
+                @Param("dead") MailStatus dead, @Param("now") LocalDateTime now);
+}
@@ -6,13 +6,17 @@ import org.springframework.data.domain.Page; // Import Page
 import org.springframework.data.domain.Pageable; // Import Pageable
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
@@ -74,4 +78,31 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
            "GROUP BY p.category " +
            "ORDER BY SUM(oi.totalPrice) DESC")
     List<Object[]> findRevenueByCategory(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
-}
\ No newline at end of file
+
+    // ========================================================================
+    // STREAMING CHO EXPORT BÁO CÁO (phải gọi trong transaction, nhớ đóng Stream)
+    // ========================================================================
+
+    // 4. Ngày + tiền của đơn ĐÃ GIAO, sắp theo thời gian để gộp theo ngày khi đọc
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT o.createdAt, o.totalAmount FROM Order o " +
+           "WHERE o.orderStatus = 'DELIVERED' " +
+           "AND o.isDeleted = false " +
+           "AND o.createdAt >= :start AND o.createdAt <= :end " +
+           "ORDER BY o.createdAt")
+    Stream<Object[]> streamDeliveredOrderAmounts(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    // 5. Doanh số theo sản phẩm (Chỉ tính đơn DELIVERED)
+    // Trả về: [Tên sản phẩm, Tổng số lượng, Tổng tiền]
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT p.name, SUM(oi.quantity), SUM(oi.totalPrice) " +
+           "FROM OrderItem oi " +
+           "JOIN oi.order o " +
+           "JOIN oi.product p " +
+           "WHERE o.orderStatus = 'DELIVERED' " +
+           "AND o.isDeleted = false " +
+           "AND o.createdAt >= :start AND o.createdAt <= :end " +
+           "GROUP BY p.id, p.name " +
+           "ORDER BY SUM(oi.quantity) DESC")
+    Stream<Object[]> streamProductSales(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+}
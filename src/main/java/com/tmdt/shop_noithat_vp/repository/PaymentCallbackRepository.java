@@ -0,0 +1,58 @@
+package com.tmdt.shop_noithat_vp.repository;
+
+import com.tmdt.shop_noithat_vp.model.PaymentCallback;
+import com.tmdt.shop_noithat_vp.model.enums.CallbackStatus;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface PaymentCallbackRepository extends JpaRepository<PaymentCallback, Long> {
+    
+    /**
+     * Giành quyền xử lý: chỉ 1 transaction cập nhật được (các transaction khác chờ khóa dòng rồi thấy 0 dòng).
+     * Phải gọi trong cùng transaction với việc áp dụng kết quả để rollback thì trạng thái cũng rollback.
+     */
+    @Modifying
+    @Query("UPDATE PaymentCallback c SET c.status = :processed, c.processedAt = :now, c.attempts = c.attempts + 1 " +
+           "WHERE c.id = :id AND c.status <> :processed")
+    int claim(@Param("id") Long id, @Param("processed") CallbackStatus processed, @Param("now") LocalDateTime now);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE PaymentCallback c SET c.status = :failed, c.attempts = c.attempts + 1, c.lastError = :error " +
+           "WHERE c.id = :id AND c.status <> :processed")
+    int markFailed(@Param("id") Long id, @Param("failed") CallbackStatus failed,
+                   @Param("processed") CallbackStatus processed, @Param("error") String error);
+    
+    // Lỗi lần cuối mà đã hết số lần thử -> DEAD để job retry không quét nữa và admin thấy được
+    @Modifying
+    @Transactional
+    @Query("UPDATE PaymentCallback c SET c.status = :dead WHERE c.id = :id AND c.status = :failed " +
+           "AND c.attempts >= :maxAttempts")
+    int markDeadIfExhausted(@Param("id") Long id, @Param("failed") CallbackStatus failed,
+                            @Param("dead") CallbackStatus dead, @Param("maxAttempts") int maxAttempts);
+    
+    // Admin chạy lại callback DEAD: đếm lại số lần thử từ đầu
+    @Modifying
+    @Transactional
+    @Query("UPDATE PaymentCallback c SET c.status = :received, c.attempts = 0, c.lastError = null " +
+           "WHERE c.id = :id AND c.status = :dead")
+    int requeue(@Param("id") Long id, @Param("received") CallbackStatus received, @Param("dead") CallbackStatus dead);
+    
+    Page<PaymentCallback> findByStatusOrderByUpdatedAtDesc(CallbackStatus status, Pageable pageable);
+    
+    // Callback chưa xử lý xong (mất khi restart / lỗi tạm thời) để chạy lại
+    @Query("SELECT c.id FROM PaymentCallback c WHERE c.status IN :statuses AND c.attempts < :maxAttempts " +
+           "AND c.createdAt < :before ORDER BY c.id")
+    List<Long> findIdsToRetry(@Param("statuses") List<CallbackStatus> statuses, @Param("maxAttempts") int maxAttempts,
+                              @Param("before") LocalDateTime before, Pageable pageable);
+}
@@ -2,9 +2,14 @@ package com.tmdt.shop_noithat_vp.repository;
 
 import com.tmdt.shop_noithat_vp.model.Payment;
 import com.tmdt.shop_noithat_vp.model.enums.PaymentStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -12,6 +17,19 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
     Optional<Payment> findByTransactionId(String transactionId);
     Optional<Payment> findByOrderId(Long orderId);
     Optional<Payment> findByRequestId(String requestId);
+    
+    /**
+     * Payment MoMo còn PENDING trong khoảng thời gian, phân trang keyset theo id.
+     * Trả về [id, requestId, orderCode] để không phải load Order.
+     */
+    @Query("SELECT p.id, p.requestId, o.orderCode FROM Payment p JOIN p.order o " +
+           "WHERE p.paymentStatus = :status AND p.paymentMethod = 'MOMO' " +
+           "AND p.createdAt >= :from AND p.createdAt < :to AND p.id > :lastId ORDER BY p.id")
+    List<Object[]> findPendingForReconcile(@Param("status") PaymentStatus status,
+                                           @Param("from") LocalDateTime from,
+                                           @Param("to") LocalDateTime to,
+                                           @Param("lastId") Long lastId,
+                                           Pageable pageable);
 }
 
 
@@ -6,6 +6,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor; // Import này phải có
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
@@ -32,7 +33,17 @@ public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpec
            "ORDER BY (p.price - p.salePrice) DESC")
     Page<Product> findDiscountedProducts(Pageable pageable);
     
+    // Đánh giá cao nhất: đọc cột tổng hợp, khớp index idx_products_top_rated
+    @Query("SELECT p FROM Product p WHERE p.isActive = true AND p.isDeleted = false " +
+           "AND p.ratingCount >= :minReviews " +
+           "ORDER BY p.ratingAvg DESC, p.ratingCount DESC, p.id DESC")
+    Page<Product> findTopRatedProducts(@Param("minReviews") long minReviews, Pageable pageable);
+    
     List<Product> findByStockQuantityLessThanEqualAndIsDeletedFalse(Integer minStockLevel);
+    
+    // Sản phẩm dưới ngưỡng tồn kho riêng của từng sản phẩm (khớp partial index idx_products_low_stock)
+    @Query("SELECT p FROM Product p WHERE p.stockQuantity <= p.minStockLevel AND p.isDeleted = false")
+    List<Product> findLowStockProducts();
     long countByIsDeletedFalse();
     Page<Product> findByIsDeletedFalse(Pageable pageable);
 }
\ No newline at end of file
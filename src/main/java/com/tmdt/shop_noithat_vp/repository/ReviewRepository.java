@@ -1,22 +1,61 @@
 package com.tmdt.shop_noithat_vp.repository;
 
+import com.tmdt.shop_noithat_vp.dto.response.ReviewModerationItem;
+import com.tmdt.shop_noithat_vp.dto.response.ReviewView;
 import com.tmdt.shop_noithat_vp.model.Review;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ReviewRepository extends JpaRepository<Review, Long> {
+    
+    // Cột cho constructor ReviewView
+    String REVIEW_VIEW_COLUMNS = "r.id, COALESCE(u.fullName, u.username), u.avatarUrl, r.rating, r.comment, r.reviewImages, r.createdAt";
+    
     Page<Review> findByProductIdAndIsApprovedTrueAndIsDeletedFalse(Long productId, Pageable pageable);
     Optional<Review> findByUserIdAndProductIdAndOrderId(Long userId, Long productId, Long orderId);
-    List<Review> findByIsApprovedFalseAndIsDeletedFalse();
+    long countByIsApprovedFalseAndIsDeletedFalse();
     long countByProductIdAndIsApprovedTrueAndIsDeletedFalse(Long productId);
+    
+    // ===== Read model: chỉ lấy cột cần hiển thị, không load entity User =====
+    
+    @Query(value = "SELECT new com.tmdt.shop_noithat_vp.dto.response.ReviewView(" + REVIEW_VIEW_COLUMNS + ") " +
+                   "FROM Review r JOIN r.user u " +
+                   "WHERE r.product.id = :productId AND r.isApproved = true AND r.isDeleted = false",
+           countQuery = "SELECT COUNT(r) FROM Review r " +
+                   "WHERE r.product.id = :productId AND r.isApproved = true AND r.isDeleted = false")
+    Page<ReviewView> findViewsByProductId(@Param("productId") Long productId, Pageable pageable);
+    
+    // Phân trang keyset theo (createdAt, id) giảm dần, dùng index idx_reviews_product_feed
+    @Query("SELECT new com.tmdt.shop_noithat_vp.dto.response.ReviewView(" + REVIEW_VIEW_COLUMNS + ") " +
+           "FROM Review r JOIN r.user u " +
+           "WHERE r.product.id = :productId AND r.isApproved = true AND r.isDeleted = false " +
+           "ORDER BY r.createdAt DESC, r.id DESC")
+    List<ReviewView> findLatestViews(@Param("productId") Long productId, Pageable limit);
+    
+    @Query("SELECT new com.tmdt.shop_noithat_vp.dto.response.ReviewView(" + REVIEW_VIEW_COLUMNS + ") " +
+           "FROM Review r JOIN r.user u " +
+           "WHERE r.product.id = :productId AND r.isApproved = true AND r.isDeleted = false " +
+           "AND (r.createdAt < :createdAt OR (r.createdAt = :createdAt AND r.id < :id)) " +
+           "ORDER BY r.createdAt DESC, r.id DESC")
+    List<ReviewView> findViewsBefore(@Param("productId") Long productId,
+                                     @Param("createdAt") LocalDateTime createdAt,
+                                     @Param("id") Long id,
+                                     Pageable limit);
+    
+    // Hàng đợi duyệt: cũ nhất trước, phân trang keyset theo id (index idx_reviews_pending)
+    @Query("SELECT new com.tmdt.shop_noithat_vp.dto.response.ReviewModerationItem(" +
+           "r.id, p.id, p.name, u.id, COALESCE(u.fullName, u.username), r.rating, r.comment, r.reviewImages, r.createdAt) " +
+           "FROM Review r JOIN r.product p JOIN r.user u " +
+           "WHERE r.isApproved = false AND r.isDeleted = false AND r.id > :afterId " +
+           "ORDER BY r.id")
+    List<ReviewModerationItem> findModerationQueue(@Param("afterId") Long afterId, Pageable limit);
 }
-
-
-
-
@@ -5,8 +5,13 @@ import com.tmdt.shop_noithat_vp.model.enums.Role;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -21,5 +26,19 @@ public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByEmail(String email);
     
     Page<User> findByIsDeletedFalse(Pageable pageable);
+    
+    // Chỉ lấy các cột cần cho xác thực: [id, isActive, isDeleted, tokenVersion, role]
+    @Query("SELECT u.id, u.isActive, u.isDeleted, u.tokenVersion, u.role FROM User u WHERE u.username = :username")
+    List<Object[]> findAuthStateByUsername(@Param("username") String username);
+    
+    // Chỉ ghi khi hash chưa bị đổi (vd. reset mật khẩu chạy song song)
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.password = :newHash WHERE u.id = :id AND u.password = :oldHash")
+    int replacePasswordHash(@Param("id") Long id, @Param("oldHash") String oldHash, @Param("newHash") String newHash);
+    
+    @Modifying
+    @Query("UPDATE User u SET u.tokenVersion = u.tokenVersion + 1 WHERE u.username = :username")
+    int incrementTokenVersion(@Param("username") String username);
 }
 
@@ -0,0 +1,22 @@
+package com.tmdt.shop_noithat_vp.repository;
+
+import com.tmdt.shop_noithat_vp.model.WalletMonthlyStatement;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface WalletMonthlyStatementRepository extends JpaRepository<WalletMonthlyStatement, Long> {
+    
+    List<WalletMonthlyStatement> findByUserIdOrderByStatementMonthDesc(Long userId, Pageable pageable);
+    
+    Optional<WalletMonthlyStatement> findByUserIdAndStatementMonth(Long userId, LocalDate statementMonth);
+    
+    // Tháng gần nhất trước đó có giao dịch (tháng không có giao dịch: đầu kỳ = cuối kỳ = số dư này)
+    Optional<WalletMonthlyStatement> findFirstByUserIdAndStatementMonthLessThanOrderByStatementMonthDesc(
+            Long userId, LocalDate statementMonth);
+}
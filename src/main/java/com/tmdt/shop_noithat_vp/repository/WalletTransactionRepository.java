@@ -4,8 +4,11 @@ import com.tmdt.shop_noithat_vp.model.WalletTransaction;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -17,6 +20,19 @@ public interface WalletTransactionRepository extends JpaRepository<WalletTransac
     // Tìm lịch sử giao dịch của 1 user có phân trang
     Page<WalletTransaction> findByUserIdOrderByCreatedAtDesc(Long userId, Pageable pageable);
     
+    // Phân trang keyset theo (created_at, id) giảm dần, dùng index idx_wallet_tx_user_created
+    @Query(value = "SELECT * FROM wallet_transactions WHERE user_id = :userId " +
+                   "ORDER BY created_at DESC, id DESC LIMIT :limit", nativeQuery = true)
+    List<WalletTransaction> findLatest(@Param("userId") Long userId, @Param("limit") int limit);
+    
+    @Query(value = "SELECT * FROM wallet_transactions WHERE user_id = :userId " +
+                   "AND (created_at, id) < (:createdAt, :id) " +
+                   "ORDER BY created_at DESC, id DESC LIMIT :limit", nativeQuery = true)
+    List<WalletTransaction> findBefore(@Param("userId") Long userId,
+                                       @Param("createdAt") LocalDateTime createdAt,
+                                       @Param("id") Long id,
+                                       @Param("limit") int limit);
+    
     // Tìm theo mã đơn hàng (để kiểm tra xem đơn này đã hoàn tiền chưa, v.v.)
     WalletTransaction findByOrderCode(String orderCode);
 }
\ No newline at end of file
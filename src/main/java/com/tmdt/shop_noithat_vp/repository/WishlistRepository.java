@@ -4,8 +4,11 @@ import com.tmdt.shop_noithat_vp.model.Wishlist;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -13,6 +16,10 @@ public interface WishlistRepository extends JpaRepository<Wishlist, Long> {
     Page<Wishlist> findByUserIdAndIsDeletedFalse(Long userId, Pageable pageable);
     Optional<Wishlist> findByUserIdAndProductIdAndIsDeletedFalse(Long userId, Long productId);
     boolean existsByUserIdAndProductIdAndIsDeletedFalse(Long userId, Long productId);
+    
+    // Chỉ lấy id sản phẩm (dùng index unique (user_id, product_id))
+    @Query("SELECT w.product.id FROM Wishlist w WHERE w.user.id = :userId AND w.isDeleted = false")
+    List<Long> findProductIdsByUserId(@Param("userId") Long userId);
 }
 
 
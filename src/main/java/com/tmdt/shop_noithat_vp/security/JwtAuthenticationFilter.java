@@ -1,62 +1,108 @@
 package com.tmdt.shop_noithat_vp.security;
 
-import com.tmdt.shop_noithat_vp.service.CustomUserDetailsService;
+import com.tmdt.shop_noithat_vp.model.enums.Role;
 import com.tmdt.shop_noithat_vp.util.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
+/**
+ * Xác thực JWT không trạng thái: token chỉ được parse/verify 1 lần, quyền lấy từ claim,
+ * trạng thái user (còn hoạt động, token version) đọc từ UserAuthStateCache thay vì query DB.
+ */
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
     
+    // Danh sách quyền bất biến, dùng chung cho mọi request
+    private static final Map<Role, List<GrantedAuthority>> AUTHORITIES = new EnumMap<>(Role.class);
+    
+    static {
+        for (Role role : Role.values()) {
+            AUTHORITIES.put(role, List.of(new SimpleGrantedAuthority("ROLE_" + role.name())));
+        }
+    }
+    
+    // EventSource không gửi được header -> route này nhận stream token qua ?token=
+    public static final String DASHBOARD_STREAM_PATH = "/api/admin/analytics/stream";
+    
     @Autowired
     private JwtUtil jwtUtil;
     
     @Autowired
-    private CustomUserDetailsService userDetailsService;
+    private UserAuthStateCache userAuthStateCache;
     
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, 
                                     FilterChain filterChain) throws ServletException, IOException {
         final String authHeader = request.getHeader("Authorization");
         
-        String username = null;
-        String jwt = null;
-        
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            jwt = authHeader.substring(7);
+        if (authHeader != null && authHeader.startsWith("Bearer ")
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            String jwt = authHeader.substring(7);
             
             // FIX: Thêm kiểm tra jwt không rỗng
-            if (jwt != null && !jwt.isEmpty() && !jwt.equalsIgnoreCase("undefined") && !jwt.equalsIgnoreCase("null")) {
-                try {
-                    username = jwtUtil.extractUsername(jwt);
-                } catch (Exception e) {
-                    logger.error("Cannot get username from token", e);
-                }
+            if (!jwt.isEmpty() && !jwt.equalsIgnoreCase("undefined") && !jwt.equalsIgnoreCase("null")) {
+                authenticate(jwt, null, request);
             }
-        }
-        
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-            
-            if (jwtUtil.validateToken(jwt, userDetails)) {
-                UsernamePasswordAuthenticationToken authToken = 
-                    new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                SecurityContextHolder.getContext().setAuthentication(authToken);
+        } else if (authHeader == null && DASHBOARD_STREAM_PATH.equals(request.getServletPath())
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            String streamToken = request.getParameter("token");
+            if (streamToken != null && !streamToken.isEmpty()) {
+                authenticate(streamToken, JwtUtil.SCOPE_STREAM, request);
             }
         }
         
         filterChain.doFilter(request, response);
     }
-}
\ No newline at end of file
+    
+    // requiredScope = null: token đăng nhập thường; token có scope (vd. stream) không dùng làm Bearer được
+    private void authenticate(String jwt, String requiredScope, HttpServletRequest request) {
+        Claims claims;
+        try {
+            claims = jwtUtil.parseVerified(jwt);
+        } catch (JwtException | IllegalArgumentException e) {
+            // Token sai chữ ký / hết hạn -> coi như chưa đăng nhập
+            return;
+        }
+        
+        if (!Objects.equals(JwtUtil.scopeOf(claims), requiredScope)) return;
+        
+        String username = claims.getSubject();
+        Role role = JwtUtil.roleOf(claims);
+        if (username == null || role == null) return;
+        
+        UserAuthStateCache.UserAuthState state = userAuthStateCache.get(username);
+        // User bị khóa / xóa, token đã bị thu hồi hoặc quyền đã đổi -> bắt đăng nhập lại
+        if (state == null || !state.active()
+                || state.tokenVersion() != JwtUtil.tokenVersionOf(claims)
+                || state.role() != role) {
+            return;
+        }
+        
+        List<GrantedAuthority> authorities = AUTHORITIES.get(role);
+        UserDetails principal = new User(username, "", authorities);
+        UsernamePasswordAuthenticationToken authToken =
+            new UsernamePasswordAuthenticationToken(principal, null, authorities);
+        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+        SecurityContextHolder.getContext().setAuthentication(authToken);
+    }
+}
@@ -0,0 +1,247 @@
+package com.tmdt.shop_noithat_vp.security;
+
+import com.tmdt.shop_noithat_vp.util.TokenBucketLimiter;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Giới hạn tần suất (token bucket) cho các endpoint dễ bị bot spam: đăng nhập, quên mật khẩu,
+ * gửi lại email xác thực, tạo đơn. Mỗi route có 2 bucket: theo IP và theo tài khoản
+ * (username/email trong request hoặc user đã đăng nhập). Bucket IP được kiểm tra trước
+ * nên request bị chặn không phải đọc body.
+ * rate-limit.shared=true: kiểm tra thêm bucket chung trong Postgres để giới hạn trên toàn cụm.
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+    
+    private static final int MAX_BODY_BYTES = 8192;
+    private static final int MAX_ACCOUNT_LENGTH = 100;
+    private static final byte[] TOO_MANY_REQUESTS_BODY =
+            "{\"message\":\"Bạn thao tác quá nhanh, vui lòng thử lại sau\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] BODY_TOO_LARGE_BODY =
+            "{\"message\":\"Request body too large\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] MISSING_ACCOUNT_BODY =
+            "{\"message\":\"Thiếu thông tin tài khoản\"}".getBytes(StandardCharsets.UTF_8);
+    
+    // Cộng dồn thời gian trôi qua kể từ lần cập nhật cuối (tối đa capacity) rồi trừ 1 token;
+    // không còn đủ token thì WHERE không khớp và không có dòng nào được trả về
+    private static final String SHARED_ACQUIRE_SQL =
+            "INSERT INTO rate_limit_buckets AS b (bucket_key, tokens, updated_at) VALUES (?, ?, now()) " +
+            "ON CONFLICT (bucket_key) DO UPDATE " +
+            "SET tokens = LEAST(?, b.tokens + EXTRACT(EPOCH FROM (now() - b.updated_at)) * ?) - 1, updated_at = now() " +
+            "WHERE LEAST(?, b.tokens + EXTRACT(EPOCH FROM (now() - b.updated_at)) * ?) >= 1 " +
+            "RETURNING b.tokens";
+    
+    private enum AccountSource { BODY_FIELD, PARAM, PRINCIPAL }
+    
+    private record Limit(int capacity, double refillPerSecond) {
+    }
+    
+    private record Route(String name, AccountSource source, String field, Limit ip, Limit account) {
+    }
+    
+    @Autowired
+    private Environment env;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Value("${rate-limit.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${rate-limit.shared:false}")
+    private boolean shared;
+    
+    // Chỉ bật khi chạy sau reverse proxy tin cậy, nếu không client tự giả IP được
+    @Value("${rate-limit.trust-forwarded-for:false}")
+    private boolean trustForwardedFor;
+    
+    @Value("${rate-limit.idle-evict-ms:900000}")
+    private long idleEvictMillis;
+    
+    private final TokenBucketLimiter limiter = new TokenBucketLimiter();
+    
+    // path -> route
+    private final Map<String, Route> routes = new HashMap<>();
+    
+    @PostConstruct
+    public void init() {
+        // Mặc định: ip(capacity, refill/phút), account(capacity, refill/phút)
+        addRoute("/api/auth/login", "login", AccountSource.BODY_FIELD, "usernameOrEmail", 20, 20, 5, 5);
+        addRoute("/api/auth/forgot-password", "forgot-password", AccountSource.BODY_FIELD, "email", 5, 2, 3, 0.5);
+        addRoute("/api/auth/resend-verification", "resend-verification", AccountSource.PARAM, "email", 5, 2, 3, 0.5);
+        addRoute("/api/orders/create", "order-create", AccountSource.PRINCIPAL, null, 30, 30, 10, 10);
+    }
+    
+    private void addRoute(String path, String name, AccountSource source, String field,
+                          int ipCapacity, double ipPerMinute, int accountCapacity, double accountPerMinute) {
+        String prefix = "rate-limit." + name + ".";
+        Limit ip = new Limit(
+                env.getProperty(prefix + "ip.capacity", Integer.class, ipCapacity),
+                env.getProperty(prefix + "ip.refill-per-minute", Double.class, ipPerMinute) / 60.0);
+        Limit account = new Limit(
+                env.getProperty(prefix + "account.capacity", Integer.class, accountCapacity),
+                env.getProperty(prefix + "account.refill-per-minute", Double.class, accountPerMinute) / 60.0);
+        routes.put(path, new Route(name, source, field, ip, account));
+    }
+    
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !"POST".equals(request.getMethod()) || routeOf(request) == null;
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        Route route = routeOf(request);
+        
+        if (!acquire(route.name() + "|ip|" + clientIp(request), route.ip(), response)) {
+            return;
+        }
+        
+        HttpServletRequest effective = request;
+        String account = null;
+        switch (route.source()) {
+            case PRINCIPAL -> {
+                Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+                if (auth != null && auth.isAuthenticated() && !(auth instanceof AnonymousAuthenticationToken)) {
+                    account = auth.getName();
+                }
+            }
+            case PARAM -> account = request.getParameter(route.field());
+            case BODY_FIELD -> {
+                // Đọc tối đa MAX_BODY_BYTES + 1 byte bất kể Content-Length (chunked / khai báo sai),
+                // body quá lớn hoặc không có tài khoản thì chặn luôn, không bỏ qua bucket tài khoản
+                if (request.getContentLengthLong() > MAX_BODY_BYTES) {
+                    writeError(response, 413, BODY_TOO_LARGE_BODY);
+                    return;
+                }
+                byte[] body = request.getInputStream().readNBytes(MAX_BODY_BYTES + 1);
+                if (body.length > MAX_BODY_BYTES) {
+                    writeError(response, 413, BODY_TOO_LARGE_BODY);
+                    return;
+                }
+                CachedBodyRequest cached = new CachedBodyRequest(request, body);
+                account = readJsonField(cached.getBody(), route.field());
+                if (account == null || account.isBlank()) {
+                    writeError(response, HttpServletResponse.SC_BAD_REQUEST, MISSING_ACCOUNT_BODY);
+                    return;
+                }
+                effective = cached;
+            }
+        }
+        
+        if (account != null && !account.isBlank()) {
+            String normalized = account.trim().toLowerCase(Locale.ROOT);
+            if (normalized.length() > MAX_ACCOUNT_LENGTH) {
+                normalized = normalized.substring(0, MAX_ACCOUNT_LENGTH);
+            }
+            if (!acquire(route.name() + "|acct|" + normalized, route.account(), response)) {
+                return;
+            }
+        }
+        
+        filterChain.doFilter(effective, response);
+    }
+    
+    @Scheduled(fixedDelay = 60000)
+    public void evictIdleBuckets() {
+        limiter.evictIdle(idleEvictMillis * 1_000_000L, System.nanoTime());
+        if (shared) {
+            try {
+                jdbcTemplate.update("DELETE FROM rate_limit_buckets WHERE updated_at < now() - make_interval(secs => ?)",
+                        idleEvictMillis / 1000.0);
+            } catch (Exception e) {
+                System.err.println("Cannot evict shared rate limit buckets: " + e.getMessage());
+            }
+        }
+    }
+    
+    private boolean acquire(String key, Limit limit, HttpServletResponse response) throws IOException {
+        long waitNanos = limiter.tryAcquire(key, limit.capacity(), limit.refillPerSecond(), System.nanoTime());
+        if (waitNanos == 0 && shared && !acquireShared(key, limit)) {
+            waitNanos = (long) (1e9 / limit.refillPerSecond());
+        }
+        if (waitNanos == 0) {
+            return true;
+        }
+        reject(response, waitNanos);
+        return false;
+    }
+    
+    private boolean acquireShared(String key, Limit limit) {
+        try {
+            List<Double> rows = jdbcTemplate.queryForList(SHARED_ACQUIRE_SQL, Double.class,
+                    key, limit.capacity() - 1.0,
+                    limit.capacity(), limit.refillPerSecond(),
+                    limit.capacity(), limit.refillPerSecond());
+            return !rows.isEmpty();
+        } catch (Exception e) {
+            // DB lỗi thì chỉ dựa vào giới hạn cục bộ, không chặn người dùng thật
+            System.err.println("Shared rate limit unavailable: " + e.getMessage());
+            return true;
+        }
+    }
+    
+    private void reject(HttpServletResponse response, long waitNanos) throws IOException {
+        response.setHeader("Retry-After", String.valueOf(Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L)));
+        writeError(response, 429, TOO_MANY_REQUESTS_BODY);
+    }
+    
+    private static void writeError(HttpServletResponse response, int status, byte[] body) throws IOException {
+        response.setStatus(status);
+        response.setContentType("application/json;charset=UTF-8");
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+    
+    private Route routeOf(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        String contextPath = request.getContextPath();
+        if (!contextPath.isEmpty() && uri.startsWith(contextPath)) {
+            uri = uri.substring(contextPath.length());
+        }
+        return routes.get(uri);
+    }
+    
+    private String clientIp(HttpServletRequest request) {
+        if (trustForwardedFor) {
+            String forwarded = request.getHeader("X-Forwarded-For");
+            if (forwarded != null && !forwarded.isBlank()) {
+                int comma = forwarded.indexOf(',');
+                return (comma > 0 ? forwarded.substring(0, comma) : forwarded).trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+    
+    private static String readJsonField(byte[] body, String field) {
+        try {
+            return new JSONObject(new String(body, StandardCharsets.UTF_8)).optString(field, null);
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+}
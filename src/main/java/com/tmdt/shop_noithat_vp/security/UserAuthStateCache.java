@@ -0,0 +1,85 @@
+package com.tmdt.shop_noithat_vp.security;
+
+import com.tmdt.shop_noithat_vp.event.UserAuthChangedEvent;
+import com.tmdt.shop_noithat_vp.model.enums.Role;
+import com.tmdt.shop_noithat_vp.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache trạng thái xác thực của user (còn hoạt động, token version, quyền) để filter JWT
+ * không phải query DB ở mỗi request. Bị xóa ngay khi có UserAuthChangedEvent;
+ * TTL ngắn chặn trường hợp dữ liệu bị sửa trực tiếp trong DB.
+ */
+@Component
+public class UserAuthStateCache {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${auth.user-state.ttl-ms:60000}")
+    private long ttlMillis;
+
+    @Value("${auth.user-state.max-entries:10000}")
+    private int maxEntries;
+
+    private final Map<String, Entry> states = new ConcurrentHashMap<>();
+
+    /**
+     * Trả về null nếu user không tồn tại
+     */
+    public UserAuthState get(String username) {
+        long now = System.currentTimeMillis();
+        Entry entry = states.get(username);
+        if (entry != null && entry.expiresAt() > now) {
+            return entry.state();
+        }
+        UserAuthState state = load(username);
+        if (states.size() >= maxEntries) {
+            // Hiếm khi xảy ra: xóa hết còn hơn giữ cấu trúc LRU trên đường nóng
+            states.clear();
+        }
+        states.put(username, new Entry(state, now + ttlMillis));
+        return state;
+    }
+
+    public void invalidate(String username) {
+        states.remove(username);
+    }
+
+    // Sau commit để request kế tiếp không nạp lại dữ liệu cũ
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserAuthChanged(UserAuthChangedEvent event) {
+        invalidate(event.username());
+    }
+
+    @Scheduled(fixedDelay = 5 * 60 * 1000L)
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        states.values().removeIf(e -> e.expiresAt() <= now);
+    }
+
+    private UserAuthState load(String username) {
+        List<Object[]> rows = userRepository.findAuthStateByUsername(username);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        Object[] row = rows.get(0);
+        boolean active = !Boolean.FALSE.equals(row[1]) && !Boolean.TRUE.equals(row[2]);
+        int tokenVersion = row[3] != null ? ((Number) row[3]).intValue() : 0;
+        return new UserAuthState((Long) row[0], active, tokenVersion, (Role) row[4]);
+    }
+
+    public record UserAuthState(Long userId, boolean active, int tokenVersion, Role role) {
+    }
+
+    private record Entry(UserAuthState state, long expiresAt) {
+    }
+}
@@ -10,19 +10,23 @@ import com.tmdt.shop_noithat_vp.repository.CategoryRepository;
 import com.tmdt.shop_noithat_vp.repository.OrderRepository;
 import com.tmdt.shop_noithat_vp.repository.ProductRepository;
 import com.tmdt.shop_noithat_vp.repository.UserRepository;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import com.tmdt.shop_noithat_vp.util.ReportWriter;
+import com.tmdt.shop_noithat_vp.util.SpaceSavingTopK;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.YearMonth;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class AnalyticsService {
@@ -39,6 +43,12 @@ public class AnalyticsService {
     @Autowired
     private CategoryRepository categoryRepository;
     
+    @Autowired
+    private ProductViewAnalyticsService productViewAnalyticsService;
+    
+    @Autowired
+    private LowStockIndexService lowStockIndexService;
+    
     // ========== TỔNG QUAN (CARD) ==========
     
     public BigDecimal getTotalRevenue() {
@@ -85,7 +95,7 @@ public class AnalyticsService {
     }
     
     public long getLowStockProductsCount() {
-        return productRepository.findByStockQuantityLessThanEqualAndIsDeletedFalse(10).size();
+        return lowStockIndexService.count();
     }
     
     // ========== BIỂU ĐỒ DOANH THU ==========
@@ -234,102 +244,109 @@ public class AnalyticsService {
     }
     
     public List<Map<String, Object>> getLowStockProducts() {
-        return productRepository.findByStockQuantityLessThanEqualAndIsDeletedFalse(10).stream().map(p -> {
+        return lowStockIndexService.list().stream().map(p -> {
             Map<String, Object> m = new HashMap<>();
-            m.put("productId", p.getId());
-            m.put("productName", p.getName());
-            m.put("stockQuantity", p.getStockQuantity());
+            m.put("productId", p.productId());
+            m.put("productName", p.productName());
+            m.put("stockQuantity", p.stockQuantity());
+            m.put("minStockLevel", p.minStockLevel());
             return m;
         }).collect(Collectors.toList());
     }
 
-    // ========== EXPORT EXCEL ==========
+    // ========== LƯỢT XEM SẢN PHẨM (XẤP XỈ) ==========
 
-    public byte[] exportReport(String reportType, LocalDateTime startDate, LocalDateTime endDate) {
-        try (Workbook workbook = new XSSFWorkbook(); 
-             ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-            
-            Sheet sheet = workbook.createSheet(reportType);
-            CellStyle headerStyle = createHeaderStyle(workbook);
-            CellStyle currencyStyle = createCurrencyStyle(workbook);
+    public Map<String, Object> getUniqueViewers(Long productId, LocalDate date) {
+        LocalDate day = (date != null) ? date : LocalDate.now();
+        Map<String, Object> map = new HashMap<>();
+        map.put("productId", productId);
+        map.put("date", day.toString());
+        map.put("uniqueViewers", productViewAnalyticsService.getUniqueViewers(productId, day));
+        return map;
+    }
+
+    public List<Map<String, Object>> getTrendingProducts(int limit, int windowMinutes) {
+        List<SpaceSavingTopK.Entry> top = productViewAnalyticsService.getTrendingProducts(limit, windowMinutes);
+        Map<Long, Product> products = productRepository.findAllById(
+                top.stream().map(SpaceSavingTopK.Entry::key).collect(Collectors.toList()))
+                .stream().collect(Collectors.toMap(Product::getId, p -> p));
+
+        List<Map<String, Object>> response = new ArrayList<>();
+        for (SpaceSavingTopK.Entry entry : top) {
+            Product product = products.get(entry.key());
+            if (product == null) continue;
+            Map<String, Object> map = new HashMap<>();
+            map.put("productId", product.getId());
+            map.put("productName", product.getName());
+            map.put("views", entry.count());
+            map.put("maxOvercount", entry.error());
+            response.add(map);
+        }
+        return response;
+    }
+
+    // ========== EXPORT BÁO CÁO (STREAMING) ==========
 
-            int rowIdx = 0;
+    /**
+     * Ghi báo cáo trực tiếp ra OutputStream (xlsx hoặc csv).
+     * Dữ liệu đọc bằng cursor (Stream) và ghi từng dòng, không giữ toàn bộ báo cáo trong RAM.
+     * Query dạng Stream cần transaction: gọi qua proxy (controller, ReportJobService), không gọi nội bộ.
+     * @param rowsWritten tăng sau mỗi dòng dữ liệu được ghi (null = không đếm)
+     */
+    @Transactional(readOnly = true)
+    public void exportReport(String reportType, String format, LocalDateTime startDate, LocalDateTime endDate,
+                             OutputStream out, AtomicLong rowsWritten) throws IOException {
+        LocalDateTime start = (startDate != null) ? startDate : LocalDateTime.of(2000, 1, 1, 0, 0);
+        LocalDateTime end = (endDate != null) ? endDate : LocalDateTime.now();
+
+        try (ReportWriter writer = ReportWriter.open(format, reportType, out).countRowsInto(rowsWritten)) {
             switch (reportType.toLowerCase()) {
                 case "revenue":
-                    rowIdx = generateRevenueReport(sheet, headerStyle, currencyStyle, startDate, endDate);
+                    writeRevenueReport(writer, start, end);
                     break;
                 case "products":
-                    rowIdx = generateProductReport(sheet, headerStyle, currencyStyle, startDate, endDate);
+                    writeProductReport(writer, start, end);
                     break;
                 default:
-                    Row row = sheet.createRow(0);
-                    row.createCell(0).setCellValue("Report type not supported");
+                    writer.row("Report type not supported");
             }
-            
-            for (int i = 0; i < 5; i++) sheet.autoSizeColumn(i);
-            workbook.write(out);
-            return out.toByteArray();
-        } catch (IOException e) {
-            throw new RuntimeException("Excel Error: " + e.getMessage());
+            writer.finish();
         }
     }
 
-    private int generateRevenueReport(Sheet sheet, CellStyle headerStyle, CellStyle currencyStyle, LocalDateTime start, LocalDateTime end) {
-        createHeader(sheet, headerStyle, 0, "Thời gian", "Doanh thu (VNĐ)");
-        Map<String, Object> data = getRevenueByTime(start, end, "day");
-        List<String> labels = (List<String>) data.get("labels");
-        List<BigDecimal> values = (List<BigDecimal>) data.get("data");
-        
-        int rowIdx = 1;
-        for (int i = 0; i < labels.size(); i++) {
-            Row row = sheet.createRow(rowIdx++);
-            row.createCell(0).setCellValue(labels.get(i));
-            Cell val = row.createCell(1);
-            val.setCellValue(values.get(i).doubleValue());
-            val.setCellStyle(currencyStyle);
-        }
-        return rowIdx;
-    }
+    private void writeRevenueReport(ReportWriter writer, LocalDateTime start, LocalDateTime end) throws IOException {
+        writer.header("Thời gian", "Doanh thu (VNĐ)");
 
-    private int generateProductReport(Sheet sheet, CellStyle headerStyle, CellStyle currencyStyle, LocalDateTime start, LocalDateTime end) {
-        createHeader(sheet, headerStyle, 0, "Tên sản phẩm", "Số lượng bán (Đã giao)", "Doanh thu (VNĐ)");
-        List<Map<String, Object>> products = getTopSellingProducts(1000, start, end);
-        
-        int rowIdx = 1;
-        for (Map<String, Object> p : products) {
-            Row row = sheet.createRow(rowIdx++);
-            row.createCell(0).setCellValue((String) p.get("productName"));
-            row.createCell(1).setCellValue(Long.parseLong(p.get("quantitySold").toString()));
-            Cell rev = row.createCell(2);
-            rev.setCellValue(((BigDecimal) p.get("revenue")).doubleValue());
-            rev.setCellStyle(currencyStyle);
+        // Stream đã sắp theo createdAt -> gộp theo ngày khi đọc, chỉ giữ 1 ngày trong bộ nhớ
+        try (Stream<Object[]> rows = orderRepository.streamDeliveredOrderAmounts(start, end)) {
+            Iterator<Object[]> it = rows.iterator();
+            LocalDate currentDay = null;
+            BigDecimal dayTotal = BigDecimal.ZERO;
+            while (it.hasNext()) {
+                Object[] row = it.next();
+                LocalDate day = ((LocalDateTime) row[0]).toLocalDate();
+                if (currentDay != null && !currentDay.equals(day)) {
+                    writer.row(currentDay.toString(), dayTotal);
+                    dayTotal = BigDecimal.ZERO;
+                }
+                currentDay = day;
+                dayTotal = dayTotal.add((BigDecimal) row[1]);
+            }
+            if (currentDay != null) {
+                writer.row(currentDay.toString(), dayTotal);
+            }
         }
-        return rowIdx;
     }
 
-    private void createHeader(Sheet sheet, CellStyle style, int rowIdx, String... headers) {
-        Row row = sheet.createRow(rowIdx);
-        for (int i = 0; i < headers.length; i++) {
-            Cell cell = row.createCell(i);
-            cell.setCellValue(headers[i]);
-            cell.setCellStyle(style);
+    private void writeProductReport(ReportWriter writer, LocalDateTime start, LocalDateTime end) throws IOException {
+        writer.header("Tên sản phẩm", "Số lượng bán (Đã giao)", "Doanh thu (VNĐ)");
+
+        try (Stream<Object[]> rows = orderRepository.streamProductSales(start, end)) {
+            Iterator<Object[]> it = rows.iterator();
+            while (it.hasNext()) {
+                Object[] row = it.next();
+                writer.row(row[0], row[1], row[2]);
+            }
         }
     }
-    
-    private CellStyle createHeaderStyle(Workbook wb) {
-        CellStyle style = wb.createCellStyle();
-        Font font = wb.createFont();
-        font.setBold(true);
-        style.setFont(font);
-        style.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
-        style.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-        return style;
-    }
-    
-    private CellStyle createCurrencyStyle(Workbook wb) {
-        CellStyle style = wb.createCellStyle();
-        DataFormat format = wb.createDataFormat();
-        style.setDataFormat(format.getFormat("#,##0"));
-        return style;
-    }
-}
\ No newline at end of file
+}
@@ -5,12 +5,13 @@ import com.tmdt.shop_noithat_vp.dto.request.LoginRequest;
 import com.tmdt.shop_noithat_vp.dto.request.RegisterRequest;
 import com.tmdt.shop_noithat_vp.dto.request.ResetPasswordRequest;
 import com.tmdt.shop_noithat_vp.dto.response.AuthResponse;
+import com.tmdt.shop_noithat_vp.event.UserAuthChangedEvent;
 import com.tmdt.shop_noithat_vp.model.User;
 import com.tmdt.shop_noithat_vp.model.enums.Role;
 import com.tmdt.shop_noithat_vp.repository.UserRepository;
 import com.tmdt.shop_noithat_vp.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -29,7 +30,10 @@ public class AuthService {
     private EmailService emailService;
     
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordService passwordService;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
     /**
      * Register a new user
@@ -55,7 +59,7 @@ public class AuthService {
         User user = new User();
         user.setUsername(request.getUsername());
         user.setEmail(request.getEmail());
-        user.setPassword(passwordEncoder.encode(request.getPassword()));
+        user.setPassword(passwordService.hash(request.getPassword()));
         user.setFullName(request.getFullName());
         user.setPhoneNumber(request.getPhoneNumber());
         user.setRole(Role.CUSTOMER);
@@ -79,7 +83,7 @@ public class AuthService {
         }
 
         // Generate JWT token (tạm thời cho phép login, nhưng cần verify email sau)
-        String token = jwtUtil.generateTokenFromUsername(user.getUsername(), user.getRole().name());
+        String token = jwtUtil.generateTokenFromUsername(user.getUsername(), user.getRole().name(), user.getTokenVersion());
 
         return new AuthResponse(token, "Bearer", user.getId(), user.getUsername(),
                                user.getEmail(), user.getRole().name());
@@ -106,12 +110,25 @@ public class AuthService {
         }
 
         // Verify password
-        if (!passwordEncoder.matches(request.getPassword(), user.getPassword())) {
+        if (!passwordService.matches(request.getPassword(), user.getPassword())) {
             throw new RuntimeException("Tên đăng nhập hoặc mật khẩu không đúng");
         }
+        
+        // Hash cũ (salt:sha256 hoặc BCrypt cost thấp) -> băm lại bằng thuật toán hiện tại khi đã có mật khẩu gốc
+        if (passwordService.needsRehash(user.getPassword())) {
+            try {
+                String newHash = passwordService.hash(request.getPassword());
+                if (userRepository.replacePasswordHash(user.getId(), user.getPassword(), newHash) > 0) {
+                    passwordService.recordRehash();
+                }
+            } catch (Exception e) {
+                // Không chặn đăng nhập, lần sau sẽ thử lại
+                System.err.println("Cannot rehash password for user " + user.getId() + ": " + e.getMessage());
+            }
+        }
 
         // Generate JWT token
-        String token = jwtUtil.generateTokenFromUsername(user.getUsername(), user.getRole().name());
+        String token = jwtUtil.generateTokenFromUsername(user.getUsername(), user.getRole().name(), user.getTokenVersion());
 
         return new AuthResponse(token, "Bearer", user.getId(), user.getUsername(),
                                user.getEmail(), user.getRole().name());
@@ -183,9 +200,24 @@ public class AuthService {
         }
 
         // Hash new password
-        user.setPassword(passwordEncoder.encode(request.getNewPassword()));
+        user.setPassword(passwordService.hash(request.getNewPassword()));
         user.setResetPasswordToken(null); // Xóa token sau khi reset
         userRepository.save(user);
+        
+        // Thu hồi mọi JWT cũ (có thể đã bị lộ)
+        userRepository.incrementTokenVersion(user.getUsername());
+        eventPublisher.publishEvent(new UserAuthChangedEvent(user.getUsername()));
+    }
+    
+    /**
+     * Đăng xuất khỏi mọi thiết bị: tăng token version để các JWT đã cấp hết hiệu lực
+     */
+    @Transactional
+    public void logoutAllDevices(String username) {
+        if (userRepository.incrementTokenVersion(username) == 0) {
+            throw new RuntimeException("User not found");
+        }
+        eventPublisher.publishEvent(new UserAuthChangedEvent(username));
     }
     
     /**
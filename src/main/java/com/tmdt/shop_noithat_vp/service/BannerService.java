@@ -0,0 +1,75 @@
+package com.tmdt.shop_noithat_vp.service;
+
+import com.tmdt.shop_noithat_vp.model.Banner;
+import com.tmdt.shop_noithat_vp.repository.BannerRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Objects;
+
+/**
+ * Thêm / sửa / xóa banner cùng transaction với số đếm tham chiếu ảnh (stored_blobs),
+ * lỗi ở bước nào thì banner và số đếm cùng rollback.
+ */
+@Service
+public class BannerService {
+
+    @Autowired
+    private BannerRepository bannerRepository;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Transactional
+    public Banner createBanner(Banner banner) {
+        // Set giá trị mặc định nếu null
+        if (banner.getIsActive() == null) banner.setIsActive(true);
+        if (banner.getDisplayOrder() == null) banner.setDisplayOrder(0);
+        banner.setIsDeleted(false);
+
+        banner = bannerRepository.save(banner);
+        fileStorageService.updateReference(null, banner.getImageUrl());
+        return banner;
+    }
+
+    @Transactional
+    public Banner updateBanner(Long id, Banner bannerDetails) {
+        Banner banner = bannerRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Banner not found"));
+
+        String oldImageUrl = banner.getImageUrl();
+        boolean imageChanged = !Objects.equals(oldImageUrl, bannerDetails.getImageUrl());
+        banner.setTitle(bannerDetails.getTitle());
+        banner.setImageUrl(bannerDetails.getImageUrl());
+        banner.setLink(bannerDetails.getLink());
+        banner.setPosition(bannerDetails.getPosition());
+        banner.setDisplayOrder(bannerDetails.getDisplayOrder());
+        banner.setStartDate(bannerDetails.getStartDate());
+        banner.setEndDate(bannerDetails.getEndDate());
+        banner.setIsActive(bannerDetails.getIsActive());
+
+        banner = bannerRepository.save(banner);
+        if (imageChanged) {
+            fileStorageService.updateReference(oldImageUrl, banner.getImageUrl());
+            bannerRepository.clearImageVariants(banner.getId());
+            banner.setThumbUrl(null);
+            banner.setCardUrl(null);
+            banner.setDetailUrl(null);
+        }
+        return banner;
+    }
+
+    /**
+     * @return ảnh của banner đã xóa
+     */
+    @Transactional
+    public String deleteBanner(Long id) {
+        Banner banner = bannerRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Banner not found"));
+        // Xóa cứng hoặc xóa mềm tùy nhu cầu, ở đây dùng xóa cứng cho gọn
+        bannerRepository.delete(banner);
+        fileStorageService.updateReference(banner.getImageUrl(), null);
+        return banner.getImageUrl();
+    }
+}
@@ -0,0 +1,233 @@
+package com.tmdt.shop_noithat_vp.service;
+
+import com.tmdt.shop_noithat_vp.event.LowStockEvent;
+import com.tmdt.shop_noithat_vp.event.OrderCreatedEvent;
+import com.tmdt.shop_noithat_vp.event.OrderStatusChangedEvent;
+import com.tmdt.shop_noithat_vp.event.PaymentSucceededEvent;
+import com.tmdt.shop_noithat_vp.model.enums.OrderStatus;
+import com.tmdt.shop_noithat_vp.util.NamedThreadFactory;
+import jakarta.annotation.PreDestroy;
+import org.json.JSONObject;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Đẩy thay đổi số liệu dashboard cho admin qua Server-Sent Events.
+ * Mỗi sự kiện chỉ serialize một lần rồi đưa vào hàng đợi riêng (có giới hạn) của từng subscriber,
+ * việc gửi chạy trên pool riêng để không chặn request đặt hàng / IPN.
+ * Client chậm chỉ làm đầy hàng đợi của chính nó: đầy hàng đợi hoặc 1 lần gửi quá lâu thì bị ngắt,
+ * client sẽ tự kết nối lại (EventSource) và tải lại số liệu.
+ */
+@Service
+public class DashboardStreamService {
+
+    // Không timeout phía server, heartbeat định kỳ để dọn kết nối chết
+    private static final long EMITTER_TIMEOUT = 0L;
+
+    // Số sự kiện tối đa chờ gửi cho 1 client
+    private static final int CLIENT_QUEUE_CAPACITY = 64;
+    // 1 lần send lâu hơn mức này coi như client bị treo
+    private static final long SEND_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    // Mỗi client tối đa 1 tác vụ gửi trong pool; client treo chỉ giữ 1 luồng cho tới khi bị ngắt
+    private final ThreadPoolExecutor fanOut = new ThreadPoolExecutor(
+            4, 4, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(1000),
+            new NamedThreadFactory("dashboard-sse-"),
+            new ThreadPoolExecutor.AbortPolicy());
+    private final AtomicLong sequence = new AtomicLong();
+
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    // ========== LẮNG NGHE SỰ KIỆN (sau khi transaction commit) ==========
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderCreated(OrderCreatedEvent event) {
+        JSONObject deltas = new JSONObject();
+        deltas.put("totalOrders", 1);
+        deltas.put("monthlyOrders", 1);
+        deltas.put("orders." + event.status().name(), 1);
+
+        JSONObject data = new JSONObject();
+        data.put("orderId", event.orderId());
+        data.put("orderCode", event.orderCode());
+        data.put("totalAmount", event.totalAmount());
+        data.put("deltas", deltas);
+        broadcast("order-created", data);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        if (event.from() == event.to()) return;
+
+        JSONObject deltas = new JSONObject();
+        deltas.put("orders." + event.from().name(), -1);
+        deltas.put("orders." + event.to().name(), 1);
+        // Doanh thu chỉ tính đơn DELIVERED
+        if (event.to() == OrderStatus.DELIVERED) {
+            deltas.put("totalRevenue", event.totalAmount());
+        } else if (event.from() == OrderStatus.DELIVERED) {
+            deltas.put("totalRevenue", event.totalAmount().negate());
+        }
+
+        JSONObject data = new JSONObject();
+        data.put("orderId", event.orderId());
+        data.put("orderCode", event.orderCode());
+        data.put("from", event.from().name());
+        data.put("to", event.to().name());
+        data.put("deltas", deltas);
+        broadcast("order-status-changed", data);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPaymentSucceeded(PaymentSucceededEvent event) {
+        JSONObject deltas = new JSONObject();
+        deltas.put("paidAmount", event.amount());
+
+        JSONObject data = new JSONObject();
+        data.put("orderCode", event.orderCode());
+        data.put("paymentMethod", event.paymentMethod());
+        data.put("amount", event.amount());
+        data.put("deltas", deltas);
+        broadcast("payment-succeeded", data);
+    }
+
+    // LowStockEvent được LowStockIndexService phát ra sau commit nên nghe trực tiếp
+    @EventListener
+    public void onLowStock(LowStockEvent event) {
+        JSONObject data = new JSONObject();
+        data.put("productId", event.productId());
+        data.put("productName", event.productName());
+        data.put("stockQuantity", event.stockQuantity());
+        data.put("minStockLevel", event.minStockLevel());
+        broadcast("low-stock", data);
+    }
+
+    // Giữ kết nối qua proxy, phát hiện client đã đóng tab và ngắt client bị treo giữa lần gửi
+    @Scheduled(fixedRate = 25000)
+    public void heartbeat() {
+        if (subscribers.isEmpty()) return;
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            long started = subscriber.sendStartedAt;
+            if (started != 0 && now - started > SEND_TIMEOUT_NANOS) {
+                drop(subscriber, "send timed out");
+            }
+        }
+        Set<ResponseBodyEmitter.DataWithMediaType> ping = SseEmitter.event().comment("ping").build();
+        enqueueToAll(ping);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fanOut.shutdownNow();
+        subscribers.forEach(s -> s.emitter.complete());
+    }
+
+    private void broadcast(String eventName, JSONObject data) {
+        if (subscribers.isEmpty()) return;
+        // Serialize 1 lần, tái sử dụng cho mọi subscriber
+        Set<ResponseBodyEmitter.DataWithMediaType> payload = SseEmitter.event()
+                .id(String.valueOf(sequence.incrementAndGet()))
+                .name(eventName)
+                .data(data.toString(), MediaType.APPLICATION_JSON)
+                .build();
+        enqueueToAll(payload);
+    }
+
+    private void enqueueToAll(Set<ResponseBodyEmitter.DataWithMediaType> payload) {
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.queue.offer(payload)) {
+                drop(subscriber, "queue full");
+                continue;
+            }
+            scheduleDrain(subscriber);
+        }
+    }
+
+    private void scheduleDrain(Subscriber subscriber) {
+        if (!subscriber.draining.compareAndSet(false, true)) return;
+        try {
+            fanOut.execute(() -> drain(subscriber));
+        } catch (RejectedExecutionException e) {
+            // Sự kiện vẫn nằm trong hàng đợi của client, lần broadcast / heartbeat sau sẽ thử lại
+            subscriber.draining.set(false);
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            Set<ResponseBodyEmitter.DataWithMediaType> payload;
+            while ((payload = subscriber.queue.poll()) != null) {
+                if (!subscribers.contains(subscriber)) return;
+                subscriber.sendStartedAt = System.nanoTime();
+                try {
+                    subscriber.emitter.send(payload);
+                } catch (IOException | IllegalStateException e) {
+                    subscribers.remove(subscriber);
+                    return;
+                } finally {
+                    subscriber.sendStartedAt = 0;
+                }
+            }
+        } finally {
+            subscriber.draining.set(false);
+        }
+        // Sự kiện đến sau lần poll cuối nhưng trước khi bỏ cờ draining
+        if (!subscriber.queue.isEmpty()) scheduleDrain(subscriber);
+    }
+
+    private void drop(Subscriber subscriber, String reason) {
+        if (!subscribers.remove(subscriber)) return;
+        subscriber.queue.clear();
+        System.err.println("Dropping dashboard SSE client: " + reason);
+        try {
+            subscriber.emitter.complete();
+        } catch (IllegalStateException ignored) {
+            // emitter đã đóng
+        }
+    }
+
+    private static class Subscriber {
+        private final SseEmitter emitter;
+        private final BlockingQueue<Set<ResponseBodyEmitter.DataWithMediaType>> queue =
+                new ArrayBlockingQueue<>(CLIENT_QUEUE_CAPACITY);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        // 0 = không gửi dở; khác 0 = System.nanoTime() lúc bắt đầu lần send hiện tại
+        private volatile long sendStartedAt;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+}
@@ -1,46 +1,35 @@
 package com.tmdt.shop_noithat_vp.service;
 
+import com.tmdt.shop_noithat_vp.event.ProductOfferChangedEvent;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
+import org.springframework.web.util.HtmlUtils;
 
-import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
+import java.util.Map;
 
+/**
+ * Soạn nội dung email. Các hàm send* chỉ xếp email vào hàng đợi (MailQueueService),
+ * gửi SMTP chạy nền nên request không phải chờ Gmail.
+ */
 @Service
 public class EmailService {
     
     @Autowired
-    private JavaMailSender mailSender;
-    
-    @Value("${spring.mail.username}")
-    private String fromEmail;
+    private MailQueueService mailQueueService;
     
+    // Văn bản thuần: escape HTML, giữ nguyên xuống dòng
     public void sendSimpleEmail(String to, String subject, String text) {
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setFrom(fromEmail);
-        message.setTo(to);
-        message.setSubject(subject);
-        message.setText(text);
-        mailSender.send(message);
+        String html = "<div style='white-space: pre-line;'>" + HtmlUtils.htmlEscape(text, "UTF-8") + "</div>";
+        mailQueueService.enqueue(to, subject, html);
     }
     
-    public void sendHtmlEmail(String to, String subject, String htmlContent) throws MessagingException {
-        MimeMessage message = mailSender.createMimeMessage();
-        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-        helper.setFrom(fromEmail);
-        helper.setTo(to);
-        helper.setSubject(subject);
-        helper.setText(htmlContent, true);
-        mailSender.send(message);
+    public void sendHtmlEmail(String to, String subject, String htmlContent) {
+        mailQueueService.enqueue(to, subject, htmlContent);
     }
     
     // === ĐÃ SỬA PHẦN NÀY ===
     // Thêm tham số 'name' để email thân thiện hơn
-    public void sendVerificationEmail(String to, String name, String token) throws MessagingException {
+    public void sendVerificationEmail(String to, String name, String token) {
         // QUAN TRỌNG: Trỏ về Frontend (Port 3000) thay vì Backend
         String verificationUrl = "http://localhost:3000/verify-email?code=" + token;
         
@@ -57,7 +46,7 @@ public class EmailService {
         sendHtmlEmail(to, "Xác thực tài khoản của bạn", htmlContent);
     }
     
-    public void sendOrderConfirmationEmail(String to, String orderCode) throws MessagingException {
+    public void sendOrderConfirmationEmail(String to, String orderCode) {
         String htmlContent = "<h2>Cảm ơn bạn đã đặt hàng!</h2>" +
                 "<p>Mã đơn hàng của bạn: <strong>" + orderCode + "</strong></p>" +
                 "<p>Chúng tôi sẽ xử lý đơn hàng của bạn sớm nhất có thể.</p>";
@@ -65,7 +54,7 @@ public class EmailService {
     }
     
     // Sửa luôn cái này cho đồng bộ (trỏ về Frontend)
-    public void sendResetPasswordEmail(String to, String token) throws MessagingException {
+    public void sendResetPasswordEmail(String to, String token) {
         // Trỏ về Frontend port 3000
         String resetUrl = "http://localhost:3000/reset-password?token=" + token;
         
@@ -77,4 +66,42 @@ public class EmailService {
                 "<p><strong>Lưu ý:</strong> Link này sẽ hết hạn sau 1 giờ.</p>";
         sendHtmlEmail(to, "Đặt lại mật khẩu", htmlContent);
     }
-}
\ No newline at end of file
+    
+    public void sendWishlistAlertEmail(String to, String name, ProductOfferChangedEvent offer) {
+        mailQueueService.enqueue(to, wishlistAlertSubject(offer), wishlistAlertHtml(name, offer));
+    }
+    
+    // Cả lô người nhận (email -> tên) được ghi vào hàng đợi bằng 1 batch INSERT
+    public void sendWishlistAlertEmails(Map<String, String> recipients, ProductOfferChangedEvent offer) {
+        String subject = wishlistAlertSubject(offer);
+        mailQueueService.enqueueAll(recipients.entrySet().stream()
+                .map(r -> new MailQueueService.OutgoingMail(r.getKey(), subject, wishlistAlertHtml(r.getValue(), offer)))
+                .toList());
+    }
+    
+    private static String wishlistAlertSubject(ProductOfferChangedEvent offer) {
+        return offer.priceDropped()
+                ? "Sản phẩm bạn yêu thích vừa giảm giá!"
+                : "Sản phẩm bạn yêu thích đã có hàng trở lại!";
+    }
+    
+    private static String wishlistAlertHtml(String name, ProductOfferChangedEvent offer) {
+        String productUrl = "http://localhost:3000/products/" + offer.productSlug();
+        String headline = wishlistAlertSubject(offer);
+        
+        StringBuilder html = new StringBuilder()
+                .append("<h2>").append(headline).append("</h2>")
+                .append("<p>Xin chào <strong>").append(name).append("</strong>,</p>")
+                .append("<p><strong>").append(offer.productName()).append("</strong>");
+        if (offer.priceDropped()) {
+            html.append(" giảm từ <del>").append(offer.oldPrice().toPlainString()).append("đ</del> còn <strong>")
+                    .append(offer.newPrice().toPlainString()).append("đ</strong>");
+        }
+        if (offer.restocked()) {
+            html.append(offer.priceDropped() ? " và đã có hàng trở lại" : " đã có hàng trở lại");
+        }
+        html.append(".</p>")
+                .append("<p><a href=\"").append(productUrl).append("\" style=\"background-color: #007bff; color: white; padding: 10px 20px; text-decoration: none; border-radius: 5px; display: inline-block;\">Xem sản phẩm</a></p>");
+        return html.toString();
+    }
+}
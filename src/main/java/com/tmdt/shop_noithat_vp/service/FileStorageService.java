@@ -1,42 +1,274 @@
 package com.tmdt.shop_noithat_vp.service;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.util.UUID;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+/**
+ * Lưu file upload theo nội dung (content-addressed):
+ * băm SHA-256 trong lúc ghi ra file tạm, mỗi nội dung chỉ lưu 1 lần tại blobs/ab/cd/<sha256>.<ext>.
+ * Bảng stored_blobs giữ số tham chiếu (banner, ảnh review, avatar...);
+ * job GC xóa blob không còn ai tham chiếu sau một khoảng ân hạn (upload xong chưa kịp gắn vào entity).
+ */
 @Service
 public class FileStorageService {
 
+    private static final String BLOB_URL_PREFIX = "/uploads/blobs/";
+    private static final Pattern BLOB_URL = Pattern.compile(
+            "^/uploads/blobs/[0-9a-f]{2}/[0-9a-f]{2}/([0-9a-f]{64})\\.[a-z0-9]+$");
+    private static final Set<String> ALLOWED_EXTENSIONS = Set.of("jpg", "jpeg", "png", "gif", "webp", "bmp");
+
+    // Cùng nội dung upload lại với tên khác -> giữ phần mở rộng của lần đầu
+    private static final String UPSERT_BLOB_SQL =
+            "INSERT INTO stored_blobs (sha256, extension, size_bytes) VALUES (?, ?, ?) " +
+            "ON CONFLICT (sha256) DO UPDATE SET updated_at = now() RETURNING extension";
+
+    private static final String FIND_ORPHANS_SQL =
+            "SELECT b.sha256, b.extension FROM stored_blobs b " +
+            "WHERE b.ref_count = 0 AND b.updated_at < ? " +
+            "ORDER BY b.updated_at LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    // Chốt chặn cuối: vẫn còn dòng trỏ tới URL (vd. ảnh sản phẩm thêm tay trong DB) thì không xóa
+    // review_images là JSON array / danh sách URL cách nhau dấu phẩy -> tìm chuỗi con (strpos, không dính ký tự đặc biệt của LIKE)
+    private static final String STILL_USED_SQL =
+            "SELECT EXISTS (SELECT 1 FROM product_images WHERE image_url = ?) " +
+            "OR EXISTS (SELECT 1 FROM banners WHERE image_url = ?) " +
+            "OR EXISTS (SELECT 1 FROM users WHERE avatar_url = ?) " +
+            "OR EXISTS (SELECT 1 FROM reviews WHERE strpos(review_images, ?) > 0)";
+
     @Value("${file.upload-dir}") // Đã cấu hình trong application.properties
     private String uploadDir;
 
+    @Value("${storage.gc.grace-hours:24}")
+    private long gcGraceHours;
+
+    @Autowired
+    private ImageDerivativeService imageDerivativeService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     public String storeFile(MultipartFile file) {
+        Path tmp = null;
         try {
-            // Tạo tên file duy nhất để tránh trùng lặp
-            String fileName = UUID.randomUUID().toString() + "_" + file.getOriginalFilename();
-            
-            // Đường dẫn lưu file: uploads/images/banners/
-            Path uploadPath = Paths.get(uploadDir + "/images/banners");
-            
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
-            }
-
-            // Lưu file
-            Path filePath = uploadPath.resolve(fileName);
-            Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-
-            // Trả về đường dẫn tương đối để lưu vào DB (VD: /uploads/images/banners/abc.jpg)
-            return "/uploads/images/banners/" + fileName;
-        } catch (IOException e) {
+            Path tmpDir = blobRoot().resolve("tmp");
+            Files.createDirectories(tmpDir);
+            tmp = Files.createTempFile(tmpDir, "upload-", ".tmp");
+
+            // Băm ngay trong lúc copy, không phải đọc file lần 2
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+                Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String sha256 = HexFormat.of().formatHex(digest.digest());
+
+            // Ghi nhận blob trước rồi mới đặt file vào chỗ: GC đang xóa đúng blob này sẽ giữ khóa dòng cho tới khi xong
+            String extension = jdbcTemplate.queryForObject(UPSERT_BLOB_SQL, String.class,
+                    sha256, extensionOf(file), Files.size(tmp));
+
+            Path target = blobPath(sha256, extension);
+            if (!Files.exists(target)) {
+                Files.createDirectories(target.getParent());
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+
+            String url = blobUrl(sha256, extension);
+            // Biến thể thumb / card / detail được sinh nền, upload không phải chờ
+            if (file.getContentType() != null && file.getContentType().startsWith("image/")) {
+                imageDerivativeService.request(url);
+            }
+            return url;
+        } catch (IOException | NoSuchAlgorithmException e) {
             throw new RuntimeException("Could not store file. Error: " + e.getMessage());
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                    // file tạm còn sót sẽ được GC dọn
+                }
+            }
+        }
+    }
+
+    /**
+     * Cập nhật số tham chiếu khi một entity đổi danh sách ảnh (null / rỗng = không có ảnh).
+     * URL không phải blob (ảnh cũ, link ngoài) bị bỏ qua. Gọi trong cùng transaction với việc lưu entity nếu có.
+     */
+    public void updateReferences(Collection<String> oldUrls, Collection<String> newUrls) {
+        Set<String> before = blobHashes(oldUrls);
+        Set<String> after = blobHashes(newUrls);
+        for (String sha256 : after) {
+            if (!before.contains(sha256)) {
+                int updated = jdbcTemplate.update(
+                        "UPDATE stored_blobs SET ref_count = ref_count + 1, updated_at = now() WHERE sha256 = ?", sha256);
+                if (updated == 0) {
+                    System.err.println("Referenced blob " + sha256 + " is not in stored_blobs");
+                }
+            }
+        }
+        for (String sha256 : before) {
+            if (!after.contains(sha256)) {
+                jdbcTemplate.update("UPDATE stored_blobs SET ref_count = GREATEST(ref_count - 1, 0), " +
+                        "updated_at = now() WHERE sha256 = ?", sha256);
+            }
+        }
+    }
+
+    public void updateReference(String oldUrl, String newUrl) {
+        updateReferences(oldUrl != null ? List.of(oldUrl) : List.of(), newUrl != null ? List.of(newUrl) : List.of());
+    }
+
+    /**
+     * Xóa blob không còn tham chiếu (kèm các biến thể ảnh) và file tạm bị bỏ lại.
+     * Dòng được khóa FOR UPDATE trong lúc xóa file nên upload trùng nội dung đồng thời phải chờ rồi ghi lại file.
+     */
+    @Scheduled(cron = "${storage.gc.cron:0 0 4 * * *}")
+    public int collectOrphans() {
+        Instant cutoff = Instant.now().minus(gcGraceHours, ChronoUnit.HOURS);
+        int total = 0;
+        while (true) {
+            GcBatch batch = transactionTemplate.execute(tx -> deleteOrphanBatch(cutoff, 200));
+            if (batch == null) break;
+            total += batch.deleted();
+            // Cả lô lỗi xóa file thì dừng, lần chạy sau thử lại
+            if (batch.handled() == 0) break;
+        }
+        cleanTempFiles(cutoff);
+        return total;
+    }
+
+    public Map<String, Object> getStats() {
+        return jdbcTemplate.queryForMap("SELECT COUNT(*) AS blobs, COALESCE(SUM(size_bytes), 0) AS bytes, " +
+                "COUNT(*) FILTER (WHERE ref_count = 0) AS unreferenced, " +
+                "COALESCE(SUM(ref_count), 0) AS reference_count FROM stored_blobs");
+    }
+
+    private GcBatch deleteOrphanBatch(Instant cutoff, int limit) {
+        List<String[]> orphans = jdbcTemplate.query(FIND_ORPHANS_SQL,
+                (rs, rowNum) -> new String[]{rs.getString("sha256"), rs.getString("extension")},
+                Timestamp.from(cutoff), limit);
+        int handled = 0;
+        int deleted = 0;
+        for (String[] orphan : orphans) {
+            String sha256 = orphan[0];
+            String url = blobUrl(sha256, orphan[1]);
+            Boolean used = jdbcTemplate.queryForObject(STILL_USED_SQL, Boolean.class, url, url, url, url);
+            try {
+                if (Boolean.TRUE.equals(used)) {
+                    // Có tham chiếu chưa được đếm -> sửa lại số đếm thay vì xóa
+                    jdbcTemplate.update("UPDATE stored_blobs SET ref_count = 1, updated_at = now() WHERE sha256 = ?", sha256);
+                    handled++;
+                    continue;
+                }
+                deleteBlobFiles(sha256, orphan[1]);
+                jdbcTemplate.update("DELETE FROM stored_blobs WHERE sha256 = ?", sha256);
+                handled++;
+                deleted++;
+            } catch (IOException e) {
+                System.err.println("Cannot delete blob " + sha256 + ": " + e.getMessage());
+            }
         }
+        return new GcBatch(handled, deleted);
+    }
+
+    // Xóa file gốc và các biến thể <sha256>_thumb.jpg... cùng thư mục
+    private void deleteBlobFiles(String sha256, String extension) throws IOException {
+        Path original = blobPath(sha256, extension);
+        Path dir = original.getParent();
+        if (Files.isDirectory(dir)) {
+            try (DirectoryStream<Path> variants = Files.newDirectoryStream(dir, sha256 + "_*")) {
+                for (Path variant : variants) {
+                    Files.deleteIfExists(variant);
+                }
+            }
+        }
+        Files.deleteIfExists(original);
+    }
+
+    private void cleanTempFiles(Instant cutoff) {
+        Path tmpDir = blobRoot().resolve("tmp");
+        if (!Files.isDirectory(tmpDir)) return;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(tmpDir, "upload-*.tmp")) {
+            for (Path file : files) {
+                if (Files.getLastModifiedTime(file).toInstant().isBefore(cutoff)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Cannot clean upload temp files: " + e.getMessage());
+        }
+    }
+
+    private Set<String> blobHashes(Collection<String> urls) {
+        Set<String> hashes = new LinkedHashSet<>();
+        if (urls == null) return hashes;
+        for (String url : urls) {
+            if (url == null || !url.startsWith(BLOB_URL_PREFIX)) continue;
+            Matcher m = BLOB_URL.matcher(url);
+            if (m.matches()) hashes.add(m.group(1));
+        }
+        return hashes;
+    }
+
+    private Path blobRoot() {
+        return Paths.get(uploadDir, "blobs");
+    }
+
+    // Chia 2 tầng thư mục theo 4 ký tự đầu để mỗi thư mục không có quá nhiều file
+    private Path blobPath(String sha256, String extension) {
+        return blobRoot().resolve(sha256.substring(0, 2)).resolve(sha256.substring(2, 4))
+                .resolve(sha256 + "." + extension);
+    }
+
+    private static String blobUrl(String sha256, String extension) {
+        return BLOB_URL_PREFIX + sha256.substring(0, 2) + "/" + sha256.substring(2, 4) + "/" + sha256 + "." + extension;
+    }
+
+    private static String extensionOf(MultipartFile file) {
+        String name = file.getOriginalFilename();
+        if (name != null && name.lastIndexOf('.') >= 0) {
+            String ext = name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+            if (ALLOWED_EXTENSIONS.contains(ext)) return ext.equals("jpeg") ? "jpg" : ext;
+        }
+        String type = file.getContentType();
+        if (type != null && type.startsWith("image/")) {
+            String ext = type.substring("image/".length()).toLowerCase(Locale.ROOT);
+            if (ALLOWED_EXTENSIONS.contains(ext)) return ext.equals("jpeg") ? "jpg" : ext;
+        }
+        return "bin";
+    }
+
+    private record GcBatch(int handled, int deleted) {
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,212 @@
+package com.tmdt.shop_noithat_vp.service;
+
+import com.tmdt.shop_noithat_vp.util.ImageResizer;
+import com.tmdt.shop_noithat_vp.util.NamedThreadFactory;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sinh biến thể ảnh (thumb / card / detail) cho ảnh upload, chạy nền trên pool giới hạn.
+ * Upload trả URL ảnh gốc ngay; biến thể ghi cạnh ảnh gốc (abc.jpg -> abc_thumb.jpg)
+ * rồi cập nhật cột thumb_url / card_url / detail_url của product_images và banners có cùng image_url.
+ * Ảnh chưa có biến thể (ảnh cũ, gắn vào sản phẩm sau khi job đã chạy) được job quét định kỳ bổ sung.
+ * Ảnh không sinh được biến thể (mất file, hỏng, quá lớn) thì 3 cột trỏ về ảnh gốc, ra khỏi danh sách quét.
+ */
+@Service
+public class ImageDerivativeService {
+
+    // Sinh từ lớn đến nhỏ, biến thể sau thu nhỏ từ biến thể trước cho nhanh
+    private static final Variant[] VARIANTS = {
+        new Variant("detail", 1200, 1200),
+        new Variant("card", 480, 480),
+        new Variant("thumb", 160, 160)
+    };
+
+    private static final String[] VARIANT_FORMATS = {
+        ImageResizer.FORMAT_WEBP, ImageResizer.FORMAT_JPEG, ImageResizer.FORMAT_PNG
+    };
+
+    private static final String UPDATE_PRODUCT_IMAGES_SQL =
+            "UPDATE product_images SET thumb_url = ?, card_url = ?, detail_url = ? WHERE image_url = ?";
+    private static final String UPDATE_BANNERS_SQL =
+            "UPDATE banners SET thumb_url = ?, card_url = ?, detail_url = ? WHERE image_url = ?";
+
+    private static final String FIND_MISSING_SQL =
+            "SELECT image_url FROM product_images WHERE thumb_url IS NULL AND image_url LIKE '/uploads/%' " +
+            "UNION SELECT image_url FROM banners WHERE thumb_url IS NULL AND image_url LIKE '/uploads/%' " +
+            "LIMIT ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${file.upload-dir}")
+    private String uploadDir;
+
+    // Ảnh quá lớn (decompression bomb) thì bỏ qua, giải mã 1 ảnh 40MP tốn ~160MB heap
+    @Value("${image.derivative.max-pixels:40000000}")
+    private long maxPixels;
+
+    // Giải mã ảnh tốn CPU / RAM nên chỉ 2 luồng; đầy hàng đợi thì job quét định kỳ làm sau
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            2, 2, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(500),
+            new NamedThreadFactory("image-derivative-"),
+            new ThreadPoolExecutor.AbortPolicy());
+
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Xếp ảnh vào hàng đợi sinh biến thể (không chờ). Chỉ nhận ảnh nằm trong /uploads/.
+     */
+    public void request(String imageUrl) {
+        if (resolve(imageUrl) == null || !inFlight.add(imageUrl)) return;
+        try {
+            executor.execute(() -> {
+                try {
+                    process(imageUrl);
+                } finally {
+                    inFlight.remove(imageUrl);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(imageUrl);
+            System.err.println("Image derivative queue full, " + imageUrl + " will be retried later");
+        }
+    }
+
+    @Scheduled(fixedDelay = 5 * 60 * 1000L, initialDelay = 60 * 1000L)
+    public void backfill() {
+        int room = executor.getQueue().remainingCapacity();
+        if (room == 0) return;
+        List<String> urls = jdbcTemplate.queryForList(FIND_MISSING_SQL, String.class, Math.min(room, 100));
+        for (String url : urls) {
+            if (resolve(url) == null) {
+                // Đường dẫn ra ngoài thư mục upload: không bao giờ xử lý được
+                markUnprocessable(url);
+            } else {
+                request(url);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    void process(String imageUrl) {
+        try {
+            Map<String, String> urls = findExisting(imageUrl);
+            if (urls == null) {
+                urls = generate(imageUrl);
+            }
+            if (urls == null) {
+                markUnprocessable(imageUrl);
+                return;
+            }
+            Object[] args = {urls.get("thumb"), urls.get("card"), urls.get("detail"), imageUrl};
+            jdbcTemplate.update(UPDATE_PRODUCT_IMAGES_SQL, args);
+            jdbcTemplate.update(UPDATE_BANNERS_SQL, args);
+        } catch (Exception e) {
+            // Lỗi tạm thời (IO, DB): để job quét lần sau thử lại
+            System.err.println("Cannot build image derivatives for " + imageUrl + ": " + e.getMessage());
+        }
+    }
+
+    // Lưu lại thất bại vào DB (biến thể = ảnh gốc) để job quét không chọn lại mãi cùng các dòng hỏng
+    private void markUnprocessable(String imageUrl) {
+        Object[] args = {imageUrl, imageUrl, imageUrl, imageUrl};
+        jdbcTemplate.update(UPDATE_PRODUCT_IMAGES_SQL, args);
+        jdbcTemplate.update(UPDATE_BANNERS_SQL, args);
+    }
+
+    // null nếu ảnh không đọc được hoặc vượt quá maxPixels
+    private Map<String, String> generate(String imageUrl) throws IOException {
+        Path original = resolve(imageUrl);
+        if (original == null || !Files.isRegularFile(original)) return null;
+
+        BufferedImage source = ImageResizer.read(original, maxPixels);
+        if (source == null) return null;
+        String format = ImageResizer.preferredFormat(source.getColorModel().hasAlpha());
+
+        Map<String, String> urls = new LinkedHashMap<>();
+        BufferedImage current = source;
+        for (Variant v : VARIANTS) {
+            current = ImageResizer.resize(current, v.maxWidth(), v.maxHeight());
+            Path target = variantPath(original, v.name(), format);
+            // Ghi ra file tạm rồi đổi tên để request đọc song song không thấy file dở dang
+            Path tmp = Files.createTempFile(target.getParent(), ".variant-", ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(tmp)) {
+                    ImageResizer.write(current, format, out);
+                }
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            urls.put(v.name(), variantUrl(imageUrl, v.name(), format));
+        }
+        return urls;
+    }
+
+    // Biến thể đã có sẵn trên đĩa (vd. cùng file được gắn vào nhiều sản phẩm) thì không sinh lại
+    private Map<String, String> findExisting(String imageUrl) {
+        Path original = resolve(imageUrl);
+        if (original == null) return null;
+        for (String format : VARIANT_FORMATS) {
+            Map<String, String> urls = new LinkedHashMap<>();
+            for (Variant v : VARIANTS) {
+                if (!Files.isRegularFile(variantPath(original, v.name(), format))) break;
+                urls.put(v.name(), variantUrl(imageUrl, v.name(), format));
+            }
+            if (urls.size() == VARIANTS.length) return urls;
+        }
+        return null;
+    }
+
+    // /uploads/images/banners/abc.jpg -> <upload-dir>/images/banners/abc.jpg, chặn "../"
+    private Path resolve(String imageUrl) {
+        if (imageUrl == null || !imageUrl.startsWith("/uploads/")) return null;
+        Path root = Paths.get(uploadDir).toAbsolutePath().normalize();
+        Path file = root.resolve(imageUrl.substring("/uploads/".length())).normalize();
+        return file.startsWith(root) && !file.equals(root) ? file : null;
+    }
+
+    private static Path variantPath(Path original, String variant, String format) {
+        return original.resolveSibling(stem(original.getFileName().toString()) + "_" + variant + "." + format);
+    }
+
+    private static String variantUrl(String imageUrl, String variant, String format) {
+        int slash = imageUrl.lastIndexOf('/');
+        return imageUrl.substring(0, slash + 1) + stem(imageUrl.substring(slash + 1)) + "_" + variant + "." + format;
+    }
+
+    private static String stem(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(0, dot) : fileName;
+    }
+
+    private record Variant(String name, int maxWidth, int maxHeight) {
+    }
+}
@@ -0,0 +1,258 @@
+package com.tmdt.shop_noithat_vp.service;
+
+import com.tmdt.shop_noithat_vp.util.ImageResizer;
+import com.tmdt.shop_noithat_vp.util.NamedThreadFactory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+/**
+ * Thu nhỏ ảnh upload cũ theo yêu cầu (/img/{w}x{h}/{path}).
+ * - Chỉ nhận kích thước trong danh sách cho phép để cache không bị phình theo mọi tổ hợp w x h
+ * - Nhiều request cùng ảnh / cùng kích thước chỉ resize 1 lần (dùng chung CompletableFuture)
+ * - Kết quả lưu ở <upload-dir>/cache/img/{w}x{h}/{path}.{ext}, xóa theo LRU khi vượt max-bytes
+ * - WebP chỉ cho client khai báo image/webp trong Accept; định dạng nằm trong tên file cache nên mỗi định dạng 1 bản
+ */
+@Service
+public class ImageResizeService {
+
+    public static final String CACHE_DIR = "cache/img";
+
+    @Value("${file.upload-dir}")
+    private String uploadDir;
+
+    @Value("${img.resize.sizes:160,320,480,640,960,1200}")
+    private String sizesConfig;
+
+    @Value("${img.resize.threads:2}")
+    private int threads;
+
+    @Value("${img.resize.timeout-ms:30000}")
+    private long timeoutMs;
+
+    @Value("${img.cache.max-bytes:536870912}")
+    private long maxCacheBytes;
+
+    @Value("${image.derivative.max-pixels:40000000}")
+    private long maxPixels;
+
+    private final Set<Integer> allowedSizes = new HashSet<>();
+    private final Map<Path, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+    // File cache -> kích thước, thứ tự truy cập (LRU); khóa bằng chính map
+    private final LinkedHashMap<Path, Long> lru = new LinkedHashMap<>(256, 0.75f, true);
+    private long cacheBytes;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        for (String size : sizesConfig.split(",")) {
+            if (!size.isBlank()) allowedSizes.add(Integer.parseInt(size.trim()));
+        }
+        executor = new ThreadPoolExecutor(
+                threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(100),
+                new NamedThreadFactory("image-resize-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        loadCacheIndex();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Chiều rộng phải thuộc danh sách; chiều cao = 0 (tự theo tỉ lệ) hoặc cũng thuộc danh sách
+     */
+    public boolean isAllowedSize(int width, int height) {
+        return allowedSizes.contains(width) && (height == 0 || allowedSizes.contains(height));
+    }
+
+    /**
+     * @param relativePath đường dẫn ảnh gốc trong thư mục upload (vd. images/banners/abc.jpg)
+     * @param acceptsWebp client nhận được WebP (header Accept có image/webp)
+     * @return file đã resize trong cache, null nếu ảnh gốc không tồn tại / không đọc được
+     * @throws RejectedExecutionException khi pool đang quá tải
+     */
+    public Path getResized(int width, int height, String relativePath, boolean acceptsWebp) throws IOException {
+        Path root = Paths.get(uploadDir).toAbsolutePath().normalize();
+        Path original = root.resolve(relativePath).normalize();
+        if (!original.startsWith(root) || original.startsWith(root.resolve("cache"))
+                || original.startsWith(root.resolve("blobs/tmp")) || !Files.isRegularFile(original)) {
+            return null;
+        }
+        Path relative = root.relativize(original);
+        String format = formatFor(original, acceptsWebp);
+        Path cached = root.resolve(CACHE_DIR).resolve(width + "x" + height)
+                .resolve(relative + "." + format);
+
+        if (isFresh(cached, original)) {
+            touch(cached);
+            return cached;
+        }
+
+        CompletableFuture<Path> created = new CompletableFuture<>();
+        CompletableFuture<Path> existing = inFlight.putIfAbsent(cached, created);
+        if (existing == null) {
+            try {
+                executor.execute(() -> {
+                    try {
+                        created.complete(render(original, cached, format, width, height));
+                    } catch (Throwable e) {
+                        created.completeExceptionally(e);
+                    } finally {
+                        inFlight.remove(cached, created);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                inFlight.remove(cached, created);
+                throw e;
+            }
+        }
+
+        try {
+            return (existing != null ? existing : created).get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while resizing image");
+        } catch (TimeoutException e) {
+            throw new IOException("Image resize timed out");
+        } catch (ExecutionException e) {
+            throw new IOException("Cannot resize image: " + e.getCause().getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        synchronized (lru) {
+            return Map.of(
+                    "files", lru.size(),
+                    "bytes", cacheBytes,
+                    "maxBytes", maxCacheBytes,
+                    "inFlight", inFlight.size(),
+                    "queued", executor.getQueue().size());
+        }
+    }
+
+    private Path render(Path original, Path cached, String format, int width, int height) throws IOException {
+        // Request khác có thể đã resize xong trong lúc chờ hàng đợi
+        if (isFresh(cached, original)) return cached;
+
+        BufferedImage source = ImageResizer.read(original, maxPixels);
+        if (source == null) return null;
+        BufferedImage resized = ImageResizer.resize(source, width, height);
+
+        Files.createDirectories(cached.getParent());
+        Path tmp = Files.createTempFile(cached.getParent(), ".resize-", ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                ImageResizer.write(resized, format, out);
+            }
+            Files.move(tmp, cached, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        record(cached, Files.size(cached));
+        return cached;
+    }
+
+    // Ảnh gốc bị ghi đè (file cũ đặt tên cố định) thì bản cache mất hiệu lực
+    private static boolean isFresh(Path cached, Path original) throws IOException {
+        return Files.isRegularFile(cached)
+                && Files.getLastModifiedTime(cached).compareTo(Files.getLastModifiedTime(original)) >= 0;
+    }
+
+    // Định dạng quyết định từ Accept + đuôi file gốc để biết tên file cache trước khi giải mã
+    private static String formatFor(Path original, boolean acceptsWebp) {
+        if (acceptsWebp && ImageResizer.isWebpSupported()) return ImageResizer.FORMAT_WEBP;
+        String name = original.getFileName().toString().toLowerCase(Locale.ROOT);
+        boolean mayHaveAlpha = name.endsWith(".png") || name.endsWith(".gif")
+                || name.endsWith(".webp") || name.endsWith(".bmp");
+        return mayHaveAlpha ? ImageResizer.FORMAT_PNG : ImageResizer.FORMAT_JPEG;
+    }
+
+    private void touch(Path cached) {
+        synchronized (lru) {
+            lru.get(cached);
+        }
+    }
+
+    private void record(Path cached, long size) {
+        List<Path> evicted = new ArrayList<>();
+        synchronized (lru) {
+            Long previous = lru.put(cached, size);
+            cacheBytes += size - (previous != null ? previous : 0);
+            Iterator<Map.Entry<Path, Long>> it = lru.entrySet().iterator();
+            while (cacheBytes > maxCacheBytes && it.hasNext()) {
+                Map.Entry<Path, Long> eldest = it.next();
+                if (eldest.getKey().equals(cached)) continue;
+                cacheBytes -= eldest.getValue();
+                evicted.add(eldest.getKey());
+                it.remove();
+            }
+        }
+        for (Path file : evicted) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                System.err.println("Cannot evict resized image " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Nạp lại chỉ mục cache từ đĩa khi khởi động, file sửa lâu nhất coi như ít dùng nhất
+    private void loadCacheIndex() {
+        Path cacheRoot = Paths.get(uploadDir).toAbsolutePath().normalize().resolve(CACHE_DIR);
+        if (!Files.isDirectory(cacheRoot)) return;
+        List<Map.Entry<Path, BasicFileAttributes>> files = new ArrayList<>();
+        try (Stream<Path> walk = Files.walk(cacheRoot)) {
+            walk.filter(Files::isRegularFile).forEach(p -> {
+                try {
+                    if (p.getFileName().toString().startsWith(".resize-")) {
+                        Files.deleteIfExists(p);
+                    } else {
+                        files.add(Map.entry(p, Files.readAttributes(p, BasicFileAttributes.class)));
+                    }
+                } catch (IOException ignored) {
+                    // file vừa bị xóa
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Cannot index resized image cache: " + e.getMessage());
+            return;
+        }
+        files.sort(Comparator.comparing(e -> e.getValue().lastModifiedTime()));
+        for (Map.Entry<Path, BasicFileAttributes> e : files) {
+            record(e.getKey(), e.getValue().size());
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.tmdt.shop_noithat_vp.service;
+
+import com.tmdt.shop_noithat_vp.event.LowStockEvent;
+import com.tmdt.shop_noithat_vp.event.ProductStockChangedEvent;
+import com.tmdt.shop_noithat_vp.model.Product;
+import com.tmdt.shop_noithat_vp.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tập sản phẩm sắp hết hàng (stockQuantity <= minStockLevel) giữ trong RAM.
+ * Cập nhật theo sự kiện thay đổi tồn kho sau khi commit, nạp lại định kỳ từ DB
+ * (query dùng partial index idx_products_low_stock) để đồng bộ giữa các node.
+ * Đếm O(1), lấy danh sách O(k).
+ */
+@Service
+public class LowStockIndexService {
+    
+    @Autowired
+    private ProductRepository productRepository;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    private final Map<Long, LowStockEvent> lowStock = new ConcurrentHashMap<>();
+    
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelay = 5 * 60 * 1000L, initialDelay = 5 * 60 * 1000L)
+    public void rebuild() {
+        List<Product> products = productRepository.findLowStockProducts();
+        Map<Long, LowStockEvent> fresh = new ConcurrentHashMap<>();
+        for (Product p : products) {
+            fresh.put(p.getId(), new LowStockEvent(p.getId(), p.getName(), p.getStockQuantity(), p.getMinStockLevel()));
+        }
+        lowStock.keySet().retainAll(fresh.keySet());
+        lowStock.putAll(fresh);
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockChanged(ProductStockChangedEvent event) {
+        int minStock = event.minStockLevel() != null ? event.minStockLevel() : 10;
+        boolean isLow = !event.deleted() && event.stockQuantity() != null && event.stockQuantity() <= minStock;
+        
+        if (isLow) {
+            LowStockEvent entry = new LowStockEvent(event.productId(), event.productName(), event.stockQuantity(), minStock);
+            LowStockEvent previous = lowStock.put(event.productId(), entry);
+            // Chỉ báo khi vừa rơi xuống dưới ngưỡng
+            if (previous == null) {
+                eventPublisher.publishEvent(entry);
+            }
+        } else {
+            lowStock.remove(event.productId());
+        }
+    }
+    
+    public long count() {
+        return lowStock.size();
+    }
+    
+    public List<LowStockEvent> list() {
+        List<LowStockEvent> items = new ArrayList<>(lowStock.values());
+        items.sort(Comparator.comparing(LowStockEvent::stockQuantity));
+        return items;
+    }
+}
@@ -0,0 +1,366 @@
+package com.tmdt.shop_noithat_vp.service;
+
+import com.tmdt.shop_noithat_vp.model.MailMessage;
+import com.tmdt.shop_noithat_vp.model.enums.MailStatus;
+import com.tmdt.shop_noithat_vp.repository.MailMessageRepository;
+import com.tmdt.shop_noithat_vp.util.NamedThreadFactory;
+import com.tmdt.shop_noithat_vp.util.TokenBucketLimiter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.MimeMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hàng đợi email lưu trong bảng mail_queue, request nghiệp vụ chỉ INSERT rồi trả về ngay.
+ * - Worker giành từng lô bằng FOR UPDATE SKIP LOCKED (nhiều luồng / nhiều node không lấy trùng)
+ * - Cả lô gửi qua 1 kết nối SMTP (JavaMailSender.send(MimeMessage...)), không mở phiên mới cho từng email
+ * - Giới hạn tốc độ theo domain người nhận; email bị giới hạn được hẹn lại, không tính là 1 lần thử
+ * - Lỗi tạm thời thử lại với backoff lũy thừa; địa chỉ bị từ chối hoặc quá max-attempts thì chuyển DEAD
+ */
+@Service
+public class MailQueueService {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO mail_queue (recipient, recipient_domain, subject, body, status, attempts, " +
+            "next_attempt_at, created_at, updated_at, is_deleted) " +
+            "VALUES (?, ?, ?, ?, 'PENDING', 0, now(), now(), now(), false)";
+
+    private static final String CLAIM_SQL =
+            "UPDATE mail_queue SET status = 'SENDING', locked_at = now(), updated_at = now() WHERE id IN (" +
+            "SELECT id FROM mail_queue WHERE status = 'PENDING' AND next_attempt_at <= now() " +
+            "ORDER BY next_attempt_at LIMIT ? FOR UPDATE SKIP LOCKED) " +
+            "RETURNING id, recipient, recipient_domain, subject, body, attempts";
+
+    private static final String MARK_SENT_SQL =
+            "UPDATE mail_queue SET status = 'SENT', sent_at = now(), locked_at = NULL, last_error = NULL, " +
+            "updated_at = now() WHERE id = ANY(?)";
+
+    private static final String MARK_FAILED_SQL =
+            "UPDATE mail_queue SET status = ?, attempts = attempts + 1, " +
+            "next_attempt_at = now() + ? * INTERVAL '1 second', last_error = ?, locked_at = NULL, " +
+            "updated_at = now() WHERE id = ?";
+
+    private static final String POSTPONE_SQL =
+            "UPDATE mail_queue SET status = 'PENDING', next_attempt_at = now() + ? * INTERVAL '1 millisecond', " +
+            "locked_at = NULL, updated_at = now() WHERE id = ?";
+
+    // Worker chết giữa chừng (restart, OOM) -> email kẹt ở SENDING; trả về hàng đợi, có thể bị gửi lại 1 lần
+    private static final String RELEASE_STUCK_SQL =
+            "UPDATE mail_queue SET status = 'PENDING', locked_at = NULL, updated_at = now() " +
+            "WHERE status = 'SENDING' AND locked_at < ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private JavaMailSender mailSender;
+
+    @Autowired
+    private MailMessageRepository mailMessageRepository;
+
+    @Value("${spring.mail.username}")
+    private String fromEmail;
+
+    @Value("${mail.queue.workers:2}")
+    private int workers;
+
+    @Value("${mail.queue.batch-size:20}")
+    private int batchSize;
+
+    @Value("${mail.queue.poll-ms:5000}")
+    private long pollMillis;
+
+    @Value("${mail.queue.max-attempts:6}")
+    private int maxAttempts;
+
+    @Value("${mail.queue.backoff-base-seconds:60}")
+    private long backoffBaseSeconds;
+
+    @Value("${mail.queue.backoff-max-seconds:21600}")
+    private long backoffMaxSeconds;
+
+    @Value("${mail.queue.per-domain-per-minute:30}")
+    private int perDomainPerMinute;
+
+    @Value("${mail.queue.sent-retention-days:14}")
+    private int sentRetentionDays;
+
+    // Bucket theo domain chỉ nằm trong bộ nhớ node này: chạy nhiều node thì giới hạn thực tế nhân theo số node
+    private final TokenBucketLimiter domainLimiter = new TokenBucketLimiter();
+    // Đánh thức worker khi có email mới commit, không phải chờ hết poll-ms
+    private final Semaphore wakeUp = new Semaphore(0);
+    private final List<Thread> workerThreads = new ArrayList<>();
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong dead = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private volatile boolean running = true;
+
+    @PostConstruct
+    public void init() {
+        NamedThreadFactory factory = new NamedThreadFactory("mail-worker-");
+        for (int i = 0; i < workers; i++) {
+            Thread t = factory.newThread(this::workLoop);
+            workerThreads.add(t);
+            t.start();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        workerThreads.forEach(Thread::interrupt);
+    }
+
+    /**
+     * Xếp 1 email HTML vào hàng đợi. Gọi trong transaction thì email chỉ được gửi khi transaction commit.
+     */
+    public void enqueue(String to, String subject, String html) {
+        enqueueAll(List.of(new OutgoingMail(to, subject, html)));
+    }
+
+    public void enqueueAll(List<OutgoingMail> mails) {
+        if (mails.isEmpty()) return;
+        jdbcTemplate.batchUpdate(INSERT_SQL, mails, 500, (ps, mail) -> {
+            ps.setString(1, mail.to());
+            ps.setString(2, domainOf(mail.to()));
+            ps.setString(3, mail.subject());
+            ps.setString(4, mail.html());
+        });
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    wakeUp.release();
+                }
+            });
+        } else {
+            wakeUp.release();
+        }
+    }
+
+    public Page<MailMessage> getDeadLetters(Pageable pageable) {
+        return mailMessageRepository.findByStatusOrderByUpdatedAtDesc(MailStatus.DEAD, pageable);
+    }
+
+    public void retryDeadLetter(Long id) {
+        int updated = mailMessageRepository.requeue(id, MailStatus.PENDING, MailStatus.DEAD, LocalDateTime.now());
+        if (updated == 0) {
+            throw new RuntimeException("Email not found in dead letters");
+        }
+        wakeUp.release();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (MailStatus status : MailStatus.values()) {
+            stats.put(status.name().toLowerCase(Locale.ROOT), 0L);
+        }
+        jdbcTemplate.query("SELECT status, COUNT(*) FROM mail_queue GROUP BY status",
+                rs -> { stats.put(rs.getString(1).toLowerCase(Locale.ROOT), rs.getLong(2)); });
+        stats.put("oldestPendingAt", jdbcTemplate.queryForObject(
+                "SELECT MIN(created_at) FROM mail_queue WHERE status = 'PENDING'", Timestamp.class));
+        stats.put("sentSinceStart", sent.get());
+        stats.put("retriedSinceStart", retried.get());
+        stats.put("deadSinceStart", dead.get());
+        stats.put("throttledSinceStart", throttled.get());
+        return stats;
+    }
+
+    @Scheduled(fixedDelay = 5 * 60 * 1000L, initialDelay = 60 * 1000L)
+    public void releaseStuck() {
+        int released = jdbcTemplate.update(RELEASE_STUCK_SQL, Timestamp.valueOf(LocalDateTime.now().minusMinutes(10)));
+        if (released > 0) {
+            System.err.println("Released " + released + " mails stuck in SENDING");
+            wakeUp.release();
+        }
+        domainLimiter.evictIdle(TimeUnit.MINUTES.toNanos(10), System.nanoTime());
+    }
+
+    @Scheduled(cron = "0 15 3 * * *")
+    public void purgeSent() {
+        jdbcTemplate.update("DELETE FROM mail_queue WHERE status = 'SENT' AND sent_at < ?",
+                Timestamp.valueOf(LocalDateTime.now().minusDays(sentRetentionDays)));
+    }
+
+    private void workLoop() {
+        while (running) {
+            int handled = 0;
+            try {
+                handled = processBatch();
+            } catch (Exception e) {
+                System.err.println("Mail worker error: " + e.getMessage());
+            }
+            // Lô đầy thì lấy tiếp ngay, ngược lại chờ email mới hoặc tới lượt thử lại
+            if (handled < batchSize) {
+                try {
+                    if (wakeUp.tryAcquire(pollMillis, TimeUnit.MILLISECONDS)) {
+                        wakeUp.drainPermits();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // @return số email đã thử gửi (không tính email bị hoãn do giới hạn domain)
+    int processBatch() {
+        List<QueuedMail> claimed = jdbcTemplate.query(CLAIM_SQL,
+                (rs, rowNum) -> new QueuedMail(rs.getLong("id"), rs.getString("recipient"),
+                        rs.getString("recipient_domain"), rs.getString("subject"), rs.getString("body"),
+                        rs.getInt("attempts")),
+                batchSize);
+        if (claimed.isEmpty()) return 0;
+
+        List<QueuedMail> batch = new ArrayList<>(claimed.size());
+        List<Object[]> postponed = new ArrayList<>();
+        long now = System.nanoTime();
+        for (QueuedMail mail : claimed) {
+            long waitNanos = domainLimiter.tryAcquire(mail.domain(), perDomainPerMinute,
+                    perDomainPerMinute / 60.0, now);
+            if (waitNanos == 0) {
+                batch.add(mail);
+            } else {
+                postponed.add(new Object[]{TimeUnit.NANOSECONDS.toMillis(waitNanos) + 1, mail.id()});
+            }
+        }
+        if (!postponed.isEmpty()) {
+            jdbcTemplate.batchUpdate(POSTPONE_SQL, postponed);
+            throttled.addAndGet(postponed.size());
+        }
+        if (batch.isEmpty()) return 0;
+
+        Map<Long, Exception> failures = deliver(batch);
+
+        Long[] sentIds = batch.stream().map(QueuedMail::id).filter(id -> !failures.containsKey(id)).toArray(Long[]::new);
+        if (sentIds.length > 0) {
+            jdbcTemplate.update(con -> {
+                PreparedStatement ps = con.prepareStatement(MARK_SENT_SQL);
+                ps.setArray(1, con.createArrayOf("bigint", sentIds));
+                return ps;
+            });
+            sent.addAndGet(sentIds.length);
+        }
+        if (!failures.isEmpty()) {
+            List<Object[]> args = new ArrayList<>(failures.size());
+            for (QueuedMail mail : batch) {
+                Exception error = failures.get(mail.id());
+                if (error == null) continue;
+                int attempts = mail.attempts() + 1;
+                boolean giveUp = isPermanent(error) || attempts >= maxAttempts;
+                (giveUp ? dead : retried).incrementAndGet();
+                args.add(new Object[]{
+                        (giveUp ? MailStatus.DEAD : MailStatus.PENDING).name(),
+                        backoffSeconds(attempts, backoffBaseSeconds, backoffMaxSeconds),
+                        truncate(error.getMessage()),
+                        mail.id()});
+                System.err.println("Cannot send mail " + mail.id() + " to " + mail.to()
+                        + (giveUp ? " (dead)" : " (attempt " + attempts + ")") + ": " + error.getMessage());
+            }
+            jdbcTemplate.batchUpdate(MARK_FAILED_SQL, args);
+        }
+        return batch.size();
+    }
+
+    /**
+     * Gửi cả lô trên 1 kết nối SMTP.
+     * @return id email gửi lỗi -> lỗi; email không có trong map là đã gửi
+     */
+    Map<Long, Exception> deliver(List<QueuedMail> batch) {
+        Map<Long, Exception> failures = new HashMap<>();
+        Map<Object, Long> ids = new IdentityHashMap<>();
+        List<MimeMessage> messages = new ArrayList<>(batch.size());
+        for (QueuedMail mail : batch) {
+            try {
+                MimeMessage message = mailSender.createMimeMessage();
+                MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+                helper.setFrom(fromEmail);
+                helper.setTo(mail.to());
+                helper.setSubject(mail.subject());
+                helper.setText(mail.html(), true);
+                messages.add(message);
+                ids.put(message, mail.id());
+            } catch (MessagingException e) {
+                failures.put(mail.id(), e);
+            }
+        }
+        if (messages.isEmpty()) return failures;
+
+        try {
+            mailSender.send(messages.toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            Map<Object, Exception> failed = e.getFailedMessages();
+            if (failed.isEmpty()) {
+                ids.values().forEach(id -> failures.put(id, e));
+            }
+            failed.forEach((message, error) -> {
+                Long id = ids.get(message);
+                if (id != null) failures.put(id, error);
+            });
+        } catch (MailException e) {
+            // Lỗi xác thực / kết nối: cả lô coi như chưa gửi
+            ids.values().forEach(id -> failures.put(id, e));
+        }
+        return failures;
+    }
+
+    // 1 phút, 2 phút, 4 phút... tối đa max
+    static long backoffSeconds(int attempts, long baseSeconds, long maxSeconds) {
+        int shift = Math.min(Math.max(attempts - 1, 0), 30);
+        return Math.min(baseSeconds << shift, maxSeconds);
+    }
+
+    // Địa chỉ sai cú pháp hoặc bị server từ chối: thử lại cũng vô ích
+    static boolean isPermanent(Exception error) {
+        if (error instanceof AddressException) return true;
+        return error instanceof SendFailedException sfe
+                && sfe.getInvalidAddresses() != null && sfe.getInvalidAddresses().length > 0;
+    }
+
+    private static String domainOf(String email) {
+        int at = email.lastIndexOf('@');
+        return at >= 0 ? email.substring(at + 1).trim().toLowerCase(Locale.ROOT) : "";
+    }
+
+    private static String truncate(String message) {
+        if (message == null) return null;
+        return message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+
+    public record OutgoingMail(String to, String subject, String html) {
+    }
+
+    record QueuedMail(long id, String to, String domain, String subject, String html, int attempts) {
+    }
+}
@@ -0,0 +1,191 @@
+package com.tmdt.shop_noithat_vp.service;
+
+import com.tmdt.shop_noithat_vp.util.CircuitBreaker;
+import com.tmdt.shop_noithat_vp.util.LatencyHistogram;
+import jakarta.annotation.PreDestroy;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HTTP client dùng chung để gọi cổng MoMo:
+ * - Connection pool + keep-alive (không bắt tay TLS lại mỗi lần thanh toán)
+ * - Timeout kết nối / đọc / chờ lấy connection
+ * - Bulkhead (giới hạn số cuộc gọi đồng thời) + circuit breaker: MoMo chậm/lỗi thì fail nhanh
+ *   thay vì giữ hết luồng xử lý request
+ * - Histogram độ trễ mỗi cuộc gọi
+ */
+@Component
+public class MoMoGatewayClient {
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final Semaphore bulkhead;
+    private final int maxConcurrentCalls;
+    private final long bulkheadWaitMillis;
+    private final CircuitBreaker circuitBreaker;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong successCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final AtomicLong rejectedByBreaker = new AtomicLong();
+    private final AtomicLong rejectedByBulkhead = new AtomicLong();
+
+    @Autowired
+    public MoMoGatewayClient(@Value("${momo.http.connect-timeout-ms:3000}") long connectTimeoutMs,
+                             @Value("${momo.http.read-timeout-ms:10000}") long readTimeoutMs,
+                             @Value("${momo.http.max-connections:20}") int maxConnections,
+                             @Value("${momo.http.max-concurrent-calls:10}") int maxConcurrentCalls,
+                             @Value("${momo.http.bulkhead-wait-ms:500}") long bulkheadWaitMillis,
+                             @Value("${momo.http.breaker-failure-threshold:5}") int breakerFailureThreshold,
+                             @Value("${momo.http.breaker-open-ms:30000}") long breakerOpenMillis) {
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                .setTimeToLive(TimeValue.ofMinutes(5))
+                .build();
+        this.connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setDefaultConnectionConfig(connectionConfig)
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections)
+                .build();
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(bulkheadWaitMillis + connectTimeoutMs))
+                .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                .build();
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(30))
+                // Tạo thanh toán không idempotent -> không tự động gửi lại
+                .disableAutomaticRetries()
+                .build();
+
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.bulkheadWaitMillis = bulkheadWaitMillis;
+        this.circuitBreaker = new CircuitBreaker(breakerFailureThreshold, breakerOpenMillis);
+    }
+
+    /**
+     * POST JSON và trả về JSON phản hồi.
+     * Lỗi mạng / timeout / HTTP 5xx được tính là lỗi cho circuit breaker.
+     */
+    public JSONObject postJson(String url, JSONObject body) {
+        if (!circuitBreaker.tryAcquire()) {
+            rejectedByBreaker.incrementAndGet();
+            throw new RuntimeException("Cổng thanh toán MoMo tạm thời không khả dụng, vui lòng thử lại sau");
+        }
+        boolean permitted;
+        try {
+            permitted = bulkhead.tryAcquire(bulkheadWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            permitted = false;
+        }
+        if (!permitted) {
+            // Không phải lỗi của MoMo, chỉ trả lại lượt thử nếu đang HALF_OPEN
+            circuitBreaker.release();
+            rejectedByBulkhead.incrementAndGet();
+            throw new RuntimeException("Quá nhiều yêu cầu thanh toán đồng thời, vui lòng thử lại sau");
+        }
+
+        long start = System.nanoTime();
+        try {
+            HttpPost post = new HttpPost(url);
+            post.setEntity(new StringEntity(body.toString(), ContentType.APPLICATION_JSON.withCharset(StandardCharsets.UTF_8)));
+            GatewayResponse response;
+            try {
+                response = httpClient.execute(post, res -> new GatewayResponse(
+                        res.getCode(),
+                        res.getEntity() != null ? EntityUtils.toString(res.getEntity(), StandardCharsets.UTF_8) : ""));
+            } catch (IOException e) {
+                recordFailure();
+                throw new RuntimeException("Không thể kết nối tới MoMo: " + e.getMessage(), e);
+            } catch (RuntimeException e) {
+                // ParseException, pool đã đóng...: vẫn phải kết thúc lượt thử HALF_OPEN, nếu không breaker kẹt mãi
+                recordFailure();
+                throw e;
+            }
+
+            if (response.status() >= 500) {
+                recordFailure();
+                throw new RuntimeException("MoMo trả về lỗi HTTP " + response.status());
+            }
+            circuitBreaker.onSuccess();
+            successCount.incrementAndGet();
+            if (response.body().isBlank()) {
+                throw new RuntimeException("MoMo trả về phản hồi rỗng (HTTP " + response.status() + ")");
+            }
+            return new JSONObject(response.body());
+        } finally {
+            latency.record(System.nanoTime() - start);
+            bulkhead.release();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        PoolStats pool = connectionManager.getTotalStats();
+        Map<String, Object> poolStats = new HashMap<>();
+        poolStats.put("leased", pool.getLeased());
+        poolStats.put("available", pool.getAvailable());
+        poolStats.put("pending", pool.getPending());
+        poolStats.put("max", pool.getMax());
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("circuitState", circuitBreaker.getState().name());
+        stats.put("success", successCount.get());
+        stats.put("failures", failureCount.get());
+        stats.put("rejectedByBreaker", rejectedByBreaker.get());
+        stats.put("rejectedByBulkhead", rejectedByBulkhead.get());
+        stats.put("inFlight", maxConcurrentCalls - bulkhead.availablePermits());
+        stats.put("latency", latency.snapshot());
+        stats.put("pool", poolStats);
+        return stats;
+    }
+
+    CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    @PreDestroy
+    public void close() {
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            System.err.println("Cannot close MoMo http client: " + e.getMessage());
+        }
+    }
+
+    private void recordFailure() {
+        failureCount.incrementAndGet();
+        circuitBreaker.onFailure();
+    }
+
+    private record GatewayResponse(int status, String body) {
+    }
+}
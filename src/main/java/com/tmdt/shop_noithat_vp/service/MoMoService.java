@@ -1,25 +1,23 @@
 package com.tmdt.shop_noithat_vp.service;
 
 import com.tmdt.shop_noithat_vp.model.Order;
+import com.tmdt.shop_noithat_vp.util.HmacSigner;
+import jakarta.annotation.PostConstruct;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 import java.math.BigDecimal;
-import java.nio.charset.StandardCharsets;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
 import java.util.Map;
 
 @Service
 public class MoMoService {
 
+    @Autowired
+    private MoMoGatewayClient moMoGatewayClient;
+
     // Sử dụng tên cấu hình khớp với application.properties
     @Value("${momo.partner-code}")
     private String partnerCode;
@@ -39,6 +37,13 @@ public class MoMoService {
     @Value("${momo.ipn-url}")
     private String ipnUrl;
 
+    private HmacSigner signer;
+
+    @PostConstruct
+    public void init() {
+        signer = new HmacSigner(secretKey);
+    }
+
     /**
      * Tạo thanh toán cho ĐƠN HÀNG (Mua hàng)
      */
@@ -70,20 +75,18 @@ public class MoMoService {
         String requestType = "captureWallet";
         String extraData = ""; // Có thể để trống hoặc mã hóa thông tin thêm
 
-        // 1. Tạo chuỗi Raw Signature (Quy tắc: sắp xếp a-z)
-        String rawHash = "accessKey=" + accessKey +
-                "&amount=" + amount +
-                "&extraData=" + extraData +
-                "&ipnUrl=" + ipnUrl +
-                "&orderId=" + orderId +
-                "&orderInfo=" + orderInfo +
-                "&partnerCode=" + partnerCode +
-                "&redirectUrl=" + redirectUrl +
-                "&requestId=" + requestId +
-                "&requestType=" + requestType;
-
-        // 2. Ký tên (HMAC SHA256)
-        String signature = hmacSHA256(rawHash, secretKey);
+        // 1 + 2. Ký HMAC SHA256 trên chuỗi Raw Signature (Quy tắc: sắp xếp a-z)
+        String signature = signer.sign(
+                "accessKey", accessKey,
+                "amount", amount,
+                "extraData", extraData,
+                "ipnUrl", ipnUrl,
+                "orderId", orderId,
+                "orderInfo", orderInfo,
+                "partnerCode", partnerCode,
+                "redirectUrl", redirectUrl,
+                "requestId", requestId,
+                "requestType", requestType);
 
         // 3. Tạo Request Body
         Map<String, String> map = new HashMap<>();
@@ -101,30 +104,10 @@ public class MoMoService {
         map.put("requestType", requestType);
         map.put("signature", signature);
 
-        // 4. Gửi Request sang MoMo API
-        RestTemplate restTemplate = new RestTemplate();
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        
-        HttpEntity<Map<String, String>> request = new HttpEntity<>(map, headers);
-        
-        // Nhận kết quả trả về
-        return restTemplate.postForObject(momoEndpoint, request, Map.class);
-    }
+        // 4. Gửi Request sang MoMo API (client dùng chung: pool + timeout + circuit breaker)
+        JSONObject response = moMoGatewayClient.postJson(momoEndpoint, new JSONObject(map));
 
-    // Hàm mã hóa HmacSHA256
-    private String hmacSHA256(String data, String key) throws NoSuchAlgorithmException, InvalidKeyException {
-        SecretKeySpec secretKeySpec = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
-        Mac mac = Mac.getInstance("HmacSHA256");
-        mac.init(secretKeySpec);
-        byte[] rawHmac = mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
-        
-        StringBuilder hexString = new StringBuilder();
-        for (byte b : rawHmac) {
-            String hex = Integer.toHexString(0xff & b);
-            if (hex.length() == 1) hexString.append('0');
-            hexString.append(hex);
-        }
-        return hexString.toString();
+        // Nhận kết quả trả về
+        return response.toMap();
     }
-}
\ No newline at end of file
+}
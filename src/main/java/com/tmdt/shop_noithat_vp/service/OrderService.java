@@ -1,11 +1,16 @@
 package com.tmdt.shop_noithat_vp.service;
 
+import com.tmdt.shop_noithat_vp.event.OrderCreatedEvent;
+import com.tmdt.shop_noithat_vp.event.OrderStatusChangedEvent;
+import com.tmdt.shop_noithat_vp.event.PaymentSucceededEvent;
+import com.tmdt.shop_noithat_vp.event.ProductStockChangedEvent;
 import com.tmdt.shop_noithat_vp.model.*;
 import com.tmdt.shop_noithat_vp.model.enums.OrderStatus;
 import com.tmdt.shop_noithat_vp.model.enums.PaymentMethod;
 import com.tmdt.shop_noithat_vp.model.enums.PaymentStatus;
 import com.tmdt.shop_noithat_vp.repository.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -43,6 +48,9 @@ public class OrderService {
     @Autowired
     private WalletService walletService;
     
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     @Transactional
     public Order createOrder(Long userId, String customerName, String customerPhone, 
                              String customerEmail, String shippingAddress, String shippingProvince,
@@ -93,6 +101,7 @@ public class OrderService {
             product.setStockQuantity(product.getStockQuantity() - cartItem.getQuantity());
             product.setSoldCount(product.getSoldCount() + cartItem.getQuantity());
             productRepository.save(product);
+            publishStockChange(product);
         }
         
         order.setSubtotal(subtotal);
@@ -134,6 +143,12 @@ public class OrderService {
         order = orderRepository.save(order);
         cartItemRepository.deleteByUserId(userId);
         
+        eventPublisher.publishEvent(new OrderCreatedEvent(order.getId(), order.getOrderCode(),
+                order.getOrderStatus(), order.getTotalAmount()));
+        if (paymentMethod == PaymentMethod.WALLET) {
+            eventPublisher.publishEvent(new PaymentSucceededEvent(order.getOrderCode(), PaymentMethod.WALLET.name(), totalAmount));
+        }
+        
         try {
             emailService.sendOrderConfirmationEmail(customerEmail, order.getOrderCode());
         } catch (Exception e) {
@@ -152,6 +167,7 @@ public class OrderService {
                 .orElseThrow(() -> new RuntimeException("Order not found"));
 
         if (order.getOrderStatus() == OrderStatus.PENDING || order.getOrderStatus() == OrderStatus.CONFIRMED) {
+            publishStatusChange(order, OrderStatus.CANCEL_REQUESTED);
             order.setOrderStatus(OrderStatus.CANCEL_REQUESTED);
             // Lưu lý do hủy vào field notes với định dạng chuẩn để Frontend parse
             String oldNote = order.getNotes() != null ? order.getNotes() : "";
@@ -171,6 +187,7 @@ public class OrderService {
                 .orElseThrow(() -> new RuntimeException("Order not found"));
 
         // 1. Cập nhật trạng thái hủy
+        publishStatusChange(order, OrderStatus.CANCELLED);
         order.setOrderStatus(OrderStatus.CANCELLED);
 
         // 2. Hoàn trả tồn kho (Restock)
@@ -179,6 +196,7 @@ public class OrderService {
             product.setStockQuantity(product.getStockQuantity() + item.getQuantity());
             product.setSoldCount(product.getSoldCount() - item.getQuantity());
             productRepository.save(product);
+            publishStockChange(product);
         }
 
         // 3. Xử lý hoàn tiền
@@ -216,6 +234,7 @@ public class OrderService {
                 .orElseThrow(() -> new RuntimeException("Order not found"));
 
         if (order.getOrderStatus() == OrderStatus.CANCEL_REQUESTED) {
+            publishStatusChange(order, OrderStatus.CONFIRMED);
             order.setOrderStatus(OrderStatus.CONFIRMED);
             String oldNote = order.getNotes() != null ? order.getNotes() : "";
             order.setNotes(oldNote + " | [Admin từ chối hủy]: " + reason);
@@ -235,6 +254,7 @@ public class OrderService {
             return approveCancel(orderId); 
         }
 
+        publishStatusChange(order, status);
         order.setOrderStatus(status);
         
         // Nếu giao thành công -> Set đã thanh toán (cho trường hợp COD)
@@ -256,6 +276,18 @@ public class OrderService {
     }
 
     // Helper methods
+    private void publishStockChange(Product product) {
+        eventPublisher.publishEvent(new ProductStockChangedEvent(product.getId(), product.getName(),
+                product.getStockQuantity(), product.getMinStockLevel(), product.getIsDeleted()));
+    }
+
+    private void publishStatusChange(Order order, OrderStatus newStatus) {
+        if (order.getOrderStatus() != newStatus) {
+            eventPublisher.publishEvent(new OrderStatusChangedEvent(order.getId(), order.getOrderCode(),
+                    order.getOrderStatus(), newStatus, order.getTotalAmount()));
+        }
+    }
+
     private boolean isValidVoucher(Voucher voucher, BigDecimal orderValue) {
         return voucher.getIsActive() && 
                LocalDateTime.now().isAfter(voucher.getStartDate()) &&
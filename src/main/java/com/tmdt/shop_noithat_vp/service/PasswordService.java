@@ -0,0 +1,176 @@
+package com.tmdt.shop_noithat_vp.service;
+
+import com.tmdt.shop_noithat_vp.util.LatencyHistogram;
+import com.tmdt.shop_noithat_vp.util.NamedThreadFactory;
+import com.tmdt.shop_noithat_vp.util.PasswordUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Băm / kiểm tra mật khẩu trên pool CPU riêng có giới hạn: mỗi lần BCrypt tốn hàng chục ms CPU,
+ * dồn vào luồng request thì một đợt đăng nhập có thể làm nghẽn cả server.
+ * Pool đầy thì từ chối ngay thay vì xếp hàng vô hạn.
+ * Hỗ trợ hash cũ dạng salt:sha256 của PasswordUtil; needsRehash() cho biết hash cần nâng cấp.
+ */
+@Service
+public class PasswordService {
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    // Mặc định = số CPU
+    @Value("${security.password.threads:0}")
+    private int threads;
+
+    @Value("${security.password.queue-capacity:200}")
+    private int queueCapacity;
+
+    @Value("${security.password.timeout-ms:5000}")
+    private long timeoutMillis;
+
+    private ThreadPoolExecutor executor;
+
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram hashTime = new LatencyHistogram();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong rehashed = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        executor = new ThreadPoolExecutor(
+                poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new NamedThreadFactory("password-hash-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public String hash(String rawPassword) {
+        return run(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    public boolean matches(String rawPassword, String storedHash) {
+        if (rawPassword == null || storedHash == null) {
+            return false;
+        }
+        if (isLegacy(storedHash)) {
+            return run(() -> PasswordUtil.verifyPassword(rawPassword, storedHash));
+        }
+        return run(() -> passwordEncoder.matches(rawPassword, storedHash));
+    }
+
+    /**
+     * true nếu hash là dạng cũ (salt:sha256) hoặc BCrypt với cost thấp hơn cấu hình hiện tại
+     */
+    public boolean needsRehash(String storedHash) {
+        return storedHash != null && (isLegacy(storedHash) || passwordEncoder.upgradeEncoding(storedHash));
+    }
+
+    public void recordRehash() {
+        rehashed.incrementAndGet();
+    }
+
+    /**
+     * Đo thời gian BCrypt với từng cost trên chính máy này để chọn security.password.bcrypt-strength
+     * (khuyến nghị cost lớn nhất có thời gian <= targetMillis)
+     */
+    public Map<String, Object> benchmark(int minStrength, int maxStrength, long targetMillis) {
+        int min = Math.max(4, minStrength);
+        int max = Math.min(16, Math.max(min, maxStrength));
+        Map<String, Object> millisByStrength = new LinkedHashMap<>();
+        int recommended = min;
+        for (int strength = min; strength <= max; strength++) {
+            BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+            long elapsed = run(() -> {
+                encoder.encode("warm-up");
+                long start = System.nanoTime();
+                encoder.encode("benchmark-password");
+                return (System.nanoTime() - start) / 1_000_000;
+            });
+            millisByStrength.put(String.valueOf(strength), elapsed);
+            if (elapsed <= targetMillis) {
+                recommended = strength;
+            }
+            // Cost sau gấp đôi cost trước -> dừng sớm khi đã vượt xa mục tiêu
+            if (elapsed > targetMillis * 2) {
+                break;
+            }
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("millisByStrength", millisByStrength);
+        result.put("targetMillis", targetMillis);
+        result.put("recommendedStrength", recommended);
+        return result;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("poolSize", executor.getMaximumPoolSize());
+        stats.put("active", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("completed", executor.getCompletedTaskCount());
+        stats.put("rejected", rejected.get());
+        stats.put("rehashed", rehashed.get());
+        stats.put("queueWait", queueWait.snapshot());
+        stats.put("hashTime", hashTime.snapshot());
+        return stats;
+    }
+
+    private static boolean isLegacy(String storedHash) {
+        return !storedHash.startsWith("$") && storedHash.indexOf(':') > 0;
+    }
+
+    private <T> T run(Callable<T> task) {
+        long submittedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long startedAt = System.nanoTime();
+                queueWait.record(startedAt - submittedAt);
+                try {
+                    return task.call();
+                } finally {
+                    hashTime.record(System.nanoTime() - startedAt);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw new RuntimeException("Hệ thống đang bận, vui lòng thử lại sau");
+        }
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new RuntimeException("Hệ thống đang bận, vui lòng thử lại sau");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Password hashing interrupted");
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Password hashing failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.tmdt.shop_noithat_vp.service;
+
+import com.tmdt.shop_noithat_vp.model.PaymentCallback;
+import com.tmdt.shop_noithat_vp.model.User;
+import com.tmdt.shop_noithat_vp.model.enums.CallbackStatus;
+import com.tmdt.shop_noithat_vp.repository.PaymentCallbackRepository;
+import com.tmdt.shop_noithat_vp.repository.UserRepository;
+import com.tmdt.shop_noithat_vp.util.MoMoUtil;
+import com.tmdt.shop_noithat_vp.util.NamedThreadFactory;
+import jakarta.annotation.PreDestroy;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tiếp nhận IPN MoMo: kiểm tra chữ ký, lưu bản thô rồi trả lời ngay,
+ * phần cập nhật Payment / Order / ví chạy nền. MoMo gửi lại IPN trùng sẽ bị
+ * unique constraint chặn; việc xử lý được "giành quyền" bằng UPDATE có điều kiện
+ * trong cùng transaction nên mỗi callback chỉ được áp dụng đúng 1 lần.
+ * Callback lỗi quá MAX_ATTEMPTS lần chuyển DEAD, admin xem và chạy lại qua /api/admin/payment-callbacks.
+ */
+@Service
+public class PaymentCallbackService {
+
+    private static final int MAX_ATTEMPTS = 5;
+    private static final String TOPUP_PREFIX = "TOPUP-";
+
+    @Autowired
+    private PaymentCallbackRepository callbackRepository;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MoMoUtil moMoUtil;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Đầy hàng đợi thì bỏ qua, job quét lại sẽ xử lý sau (bản ghi đã nằm trong DB)
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            2, 2, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(1000),
+            new NamedThreadFactory("momo-ipn-"),
+            new ThreadPoolExecutor.AbortPolicy());
+
+    /**
+     * @return true nếu là callback mới, false nếu MoMo gửi lại callback đã nhận
+     */
+    public boolean receive(Map<String, Object> ipn) {
+        if (!moMoUtil.verifyIpnSignature(ipn)) {
+            throw new RuntimeException("Invalid MoMo signature");
+        }
+        return ingest(ipn);
+    }
+
+    /**
+     * Đưa kết quả giao dịch đã xác thực vào pipeline (IPN hoặc kết quả truy vấn khi đối soát).
+     * Trùng (request_id, trans_id) với bản đã có thì bỏ qua.
+     */
+    public boolean ingest(Map<String, Object> data) {
+        PaymentCallback callback = new PaymentCallback();
+        callback.setRequestId(String.valueOf(data.get("requestId")));
+        callback.setTransId(data.get("transId") != null ? String.valueOf(data.get("transId")) : "");
+        callback.setGatewayOrderId(String.valueOf(data.get("orderId")));
+        callback.setResultCode(Integer.valueOf(String.valueOf(data.get("resultCode"))));
+        callback.setAmount(data.get("amount") != null ? new BigDecimal(String.valueOf(data.get("amount"))) : null);
+        callback.setRawData(new JSONObject(data).toString());
+
+        try {
+            // saveAndFlush tự commit (ngoài transaction) -> trùng key ném lỗi ngay tại đây
+            callback = callbackRepository.saveAndFlush(callback);
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+
+        submit(callback.getId());
+        return true;
+    }
+
+    /**
+     * Chạy lại callback chưa xử lý được (mất khi restart, hàng đợi đầy, lỗi tạm thời)
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void retryPending() {
+        List<Long> ids = callbackRepository.findIdsToRetry(
+                List.of(CallbackStatus.RECEIVED, CallbackStatus.FAILED), MAX_ATTEMPTS,
+                LocalDateTime.now().minusSeconds(30), PageRequest.of(0, 100));
+        ids.forEach(this::submit);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void submit(Long callbackId) {
+        try {
+            executor.execute(() -> process(callbackId));
+        } catch (RejectedExecutionException e) {
+            System.err.println("IPN queue full, callback " + callbackId + " will be retried later");
+        }
+    }
+
+    void process(Long callbackId) {
+        try {
+            transactionTemplate.executeWithoutResult(tx -> {
+                if (callbackRepository.claim(callbackId, CallbackStatus.PROCESSED, LocalDateTime.now()) == 0) {
+                    return; // đã được xử lý
+                }
+                PaymentCallback callback = callbackRepository.findById(callbackId)
+                        .orElseThrow(() -> new RuntimeException("Callback not found"));
+                apply(callback);
+            });
+        } catch (Exception e) {
+            String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            callbackRepository.markFailed(callbackId, CallbackStatus.FAILED, CallbackStatus.PROCESSED,
+                    error.length() > 1000 ? error.substring(0, 1000) : error);
+            if (callbackRepository.markDeadIfExhausted(callbackId, CallbackStatus.FAILED, CallbackStatus.DEAD,
+                    MAX_ATTEMPTS) > 0) {
+                System.err.println("MoMo callback " + callbackId + " failed " + MAX_ATTEMPTS
+                        + " times, moved to DEAD: " + error);
+            } else {
+                System.err.println("Cannot process MoMo callback " + callbackId + ": " + error);
+            }
+        }
+    }
+
+    public Page<PaymentCallback> getDeadCallbacks(Pageable pageable) {
+        return callbackRepository.findByStatusOrderByUpdatedAtDesc(CallbackStatus.DEAD, pageable);
+    }
+
+    /**
+     * Chạy lại callback DEAD (vd. sau khi sửa dữ liệu đơn hàng / ví gây lỗi)
+     */
+    public void replay(Long callbackId) {
+        if (callbackRepository.requeue(callbackId, CallbackStatus.RECEIVED, CallbackStatus.DEAD) == 0) {
+            throw new RuntimeException("Callback not found in dead callbacks");
+        }
+        submit(callbackId);
+    }
+
+    private void apply(PaymentCallback callback) {
+        if (callback.getGatewayOrderId().startsWith(TOPUP_PREFIX)) {
+            // Nạp ví: TOPUP-{userId}-{timestamp}, chỉ cộng tiền khi thành công
+            if (callback.getResultCode() != 0) {
+                return;
+            }
+            Long userId = Long.parseLong(callback.getGatewayOrderId().split("-")[1]);
+            User user = userRepository.findById(userId)
+                    .orElseThrow(() -> new RuntimeException("User not found"));
+            walletService.deposit(user, callback.getAmount(), "Nạp tiền qua MoMo");
+        } else {
+            paymentService.handleMoMoCallback(new JSONObject(callback.getRawData()));
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.tmdt.shop_noithat_vp.service;
+
+import com.tmdt.shop_noithat_vp.model.enums.PaymentStatus;
+import com.tmdt.shop_noithat_vp.repository.PaymentRepository;
+import com.tmdt.shop_noithat_vp.util.MoMoUtil;
+import com.tmdt.shop_noithat_vp.util.NamedThreadFactory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Đối soát thanh toán MoMo bị kẹt PENDING (mất IPN): quét các payment PENDING cũ hơn N phút
+ * theo keyset, hỏi trạng thái qua API query của MoMo theo lô song song có giới hạn tốc độ,
+ * rồi đưa kết quả vào cùng pipeline với IPN (PaymentCallbackService -> handleMoMoCallback).
+ */
+@Service
+public class PaymentReconciliationService {
+
+    // Giao dịch chưa có kết quả cuối (chờ người dùng xác nhận / đang xử lý)
+    private static final Set<Integer> NON_FINAL_CODES = Set.of(1000, 7000, 7002, 9000);
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PaymentCallbackService paymentCallbackService;
+
+    @Autowired
+    private MoMoGatewayClient moMoGatewayClient;
+
+    @Autowired
+    private MoMoUtil moMoUtil;
+
+    @Value("${payment.reconcile.min-age-minutes:15}")
+    private long minAgeMinutes;
+
+    @Value("${payment.reconcile.max-age-days:7}")
+    private long maxAgeDays;
+
+    @Value("${payment.reconcile.batch-size:50}")
+    private int batchSize;
+
+    @Value("${payment.reconcile.parallelism:4}")
+    private int parallelism;
+
+    @Value("${payment.reconcile.rate-per-second:5}")
+    private int ratePerSecond;
+
+    private ExecutorService executor;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    // Giới hạn tốc độ: mỗi lần gọi chiếm 1 slot cách nhau 1/ratePerSecond giây
+    private final Object rateLock = new Object();
+    private long nextSlotNanos = System.nanoTime();
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newFixedThreadPool(parallelism, new NamedThreadFactory("payment-reconcile-"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return số payment đã có kết quả cuối và được đưa vào pipeline
+     */
+    @Scheduled(fixedDelayString = "${payment.reconcile.interval-ms:300000}",
+               initialDelayString = "${payment.reconcile.initial-delay-ms:60000}")
+    public int reconcile() {
+        // Lần chạy trước chưa xong (MoMo chậm) thì bỏ qua
+        if (!running.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            LocalDateTime to = LocalDateTime.now().minusMinutes(minAgeMinutes);
+            LocalDateTime from = LocalDateTime.now().minusDays(maxAgeDays);
+            long lastId = 0;
+            int applied = 0;
+            while (true) {
+                List<Object[]> rows = paymentRepository.findPendingForReconcile(
+                        PaymentStatus.PENDING, from, to, lastId, PageRequest.of(0, batchSize));
+                if (rows.isEmpty()) break;
+                applied += reconcileBatch(rows);
+                lastId = (Long) rows.get(rows.size() - 1)[0];
+                if (rows.size() < batchSize) break;
+            }
+            return applied;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * rows: [paymentId, requestId, orderCode]
+     */
+    int reconcileBatch(List<Object[]> rows) {
+        List<Future<Map<String, Object>>> futures = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            String requestId = (String) row[1];
+            String orderCode = (String) row[2];
+            futures.add(executor.submit(() -> {
+                acquirePermit();
+                return query(requestId, orderCode);
+            }));
+        }
+
+        int applied = 0;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                Map<String, Object> result = futures.get(i).get();
+                Integer resultCode = Integer.valueOf(String.valueOf(result.get("resultCode")));
+                if (NON_FINAL_CODES.contains(resultCode)) {
+                    continue;
+                }
+                // Gắn lại requestId của payment gốc để handleMoMoCallback tìm được Payment
+                result.put("requestId", rows.get(i)[1]);
+                result.put("source", "RECONCILE");
+                if (paymentCallbackService.ingest(result)) {
+                    applied++;
+                }
+            } catch (ExecutionException e) {
+                // Lỗi mạng / circuit breaker mở: để lần chạy sau
+                System.err.println("Cannot query MoMo status for payment " + rows.get(i)[0] + ": "
+                        + e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                System.err.println("Cannot reconcile payment " + rows.get(i)[0] + ": " + e.getMessage());
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Gọi API query trạng thái giao dịch của MoMo
+     */
+    Map<String, Object> query(String requestId, String orderCode) {
+        JSONObject body = new JSONObject();
+        body.put("partnerCode", moMoUtil.getPartnerCode());
+        body.put("requestId", requestId);
+        body.put("orderId", orderCode);
+        body.put("lang", "vi");
+        body.put("signature", moMoUtil.generateQuerySignature(requestId, orderCode));
+        return moMoGatewayClient.postJson(moMoUtil.getQueryEndpoint(), body).toMap();
+    }
+
+    private void acquirePermit() throws InterruptedException {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, ratePerSecond);
+        long waitNanos;
+        synchronized (rateLock) {
+            long now = System.nanoTime();
+            long slot = nextSlotNanos - now > 0 ? nextSlotNanos : now;
+            nextSlotNanos = slot + intervalNanos;
+            waitNanos = slot - now;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
@@ -1,24 +1,20 @@
 package com.tmdt.shop_noithat_vp.service;
 
+import com.tmdt.shop_noithat_vp.event.OrderStatusChangedEvent;
+import com.tmdt.shop_noithat_vp.event.PaymentSucceededEvent;
 import com.tmdt.shop_noithat_vp.model.Order;
 import com.tmdt.shop_noithat_vp.model.Payment;
 import com.tmdt.shop_noithat_vp.model.enums.PaymentStatus;
 import com.tmdt.shop_noithat_vp.repository.OrderRepository;
 import com.tmdt.shop_noithat_vp.repository.PaymentRepository;
 import com.tmdt.shop_noithat_vp.util.MoMoUtil;
-import org.apache.hc.client5.http.classic.methods.HttpPost;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
-import org.apache.hc.core5.http.io.entity.StringEntity;
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
+import java.util.Map;
 
 @Service
 public class PaymentService {
@@ -32,6 +28,12 @@ public class PaymentService {
     @Autowired
     private MoMoUtil moMoUtil;
     
+    @Autowired
+    private MoMoGatewayClient moMoGatewayClient;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     @Transactional
     public Payment createMoMoPayment(Long orderId) throws Exception {
         Order order = orderRepository.findById(orderId)
@@ -72,22 +74,8 @@ public class PaymentService {
         requestBody.put("requestType", "captureWallet");
         requestBody.put("signature", signature);
         
-        // Call MoMo API
-        CloseableHttpClient httpClient = HttpClients.createDefault();
-        HttpPost httpPost = new HttpPost(moMoUtil.getApiEndpoint());
-        httpPost.setHeader("Content-Type", "application/json");
-        httpPost.setEntity(new StringEntity(requestBody.toString(), StandardCharsets.UTF_8));
-        
-        CloseableHttpResponse response = httpClient.execute(httpPost);
-        BufferedReader reader = new BufferedReader(
-            new InputStreamReader(response.getEntity().getContent(), StandardCharsets.UTF_8));
-        StringBuilder result = new StringBuilder();
-        String line;
-        while ((line = reader.readLine()) != null) {
-            result.append(line);
-        }
-        
-        JSONObject responseJson = new JSONObject(result.toString());
+        // Call MoMo API (client dùng chung: pool + timeout + circuit breaker)
+        JSONObject responseJson = moMoGatewayClient.postJson(moMoUtil.getApiEndpoint(), requestBody);
         
         Payment payment = new Payment();
         payment.setOrder(order);
@@ -107,14 +95,40 @@ public class PaymentService {
         return payment;
     }
     
+    /**
+     * Lưu Payment PENDING cho link thanh toán tạo qua MoMoService để đối soát được nếu mất IPN
+     */
+    @Transactional
+    public Payment recordPendingPayment(Order order, Map<String, Object> momoResponse) {
+        Payment payment = new Payment();
+        payment.setOrder(order);
+        payment.setRequestId(String.valueOf(momoResponse.get("requestId")));
+        payment.setAmount(order.getTotalAmount());
+        payment.setPartnerCode(momoResponse.get("partnerCode") != null
+                ? String.valueOf(momoResponse.get("partnerCode")) : moMoUtil.getPartnerCode());
+        payment.setPaymentMethod("MOMO");
+        payment.setPaymentStatus(PaymentStatus.PENDING);
+        payment.setPayUrl((String) momoResponse.get("payUrl"));
+        payment.setMessage((String) momoResponse.get("message"));
+        if (momoResponse.get("responseTime") instanceof Number responseTime) {
+            payment.setResponseTime(responseTime.longValue());
+        }
+        return paymentRepository.save(payment);
+    }
+    
     @Transactional
     public void handleMoMoCallback(JSONObject callbackData) {
-        String orderId = callbackData.getString("orderId");
-        String resultCode = callbackData.getString("resultCode");
-        String transId = callbackData.getString("transId");
+        // MoMo gửi resultCode / transId dạng số -> optString để đọc được cả hai dạng
+        String resultCode = callbackData.optString("resultCode");
+        String transId = callbackData.optString("transId");
         
-        Payment payment = paymentRepository.findByRequestId(callbackData.getString("requestId"))
-                .orElseThrow(() -> new RuntimeException("Payment not found"));
+        Payment payment = paymentRepository.findByRequestId(callbackData.optString("requestId"))
+                .orElseGet(() -> newPaymentFromCallback(callbackData));
+        
+        // Đã thành công thì không cho callback khác ghi đè
+        if (payment.getPaymentStatus() == PaymentStatus.SUCCESS) {
+            return;
+        }
         
         Order order = payment.getOrder();
         
@@ -124,14 +138,37 @@ public class PaymentService {
         if ("0".equals(resultCode)) {
             payment.setPaymentStatus(PaymentStatus.SUCCESS);
             order.setPaymentStatus(com.tmdt.shop_noithat_vp.model.enums.PaymentStatus.SUCCESS);
+            if (order.getOrderStatus() != com.tmdt.shop_noithat_vp.model.enums.OrderStatus.CONFIRMED) {
+                eventPublisher.publishEvent(new OrderStatusChangedEvent(order.getId(), order.getOrderCode(),
+                        order.getOrderStatus(), com.tmdt.shop_noithat_vp.model.enums.OrderStatus.CONFIRMED, order.getTotalAmount()));
+            }
             order.setOrderStatus(com.tmdt.shop_noithat_vp.model.enums.OrderStatus.CONFIRMED);
+            eventPublisher.publishEvent(new PaymentSucceededEvent(order.getOrderCode(), "MOMO", payment.getAmount()));
         } else {
             payment.setPaymentStatus(PaymentStatus.FAILED);
+            // Link thanh toán trùng bị hủy / hết hạn không được hạ đơn đã trả bằng giao dịch khác
+            if (order.getPaymentStatus() == com.tmdt.shop_noithat_vp.model.enums.PaymentStatus.SUCCESS) {
+                paymentRepository.save(payment);
+                return;
+            }
             order.setPaymentStatus(com.tmdt.shop_noithat_vp.model.enums.PaymentStatus.FAILED);
         }
         
         paymentRepository.save(payment);
         orderRepository.save(order);
     }
+    
+    // Thanh toán tạo qua MoMoService (không lưu Payment lúc tạo link) -> tạo bản ghi khi có IPN
+    private Payment newPaymentFromCallback(JSONObject callbackData) {
+        Order order = orderRepository.findByOrderCode(callbackData.optString("orderId"))
+                .orElseThrow(() -> new RuntimeException("Order not found"));
+        Payment payment = new Payment();
+        payment.setOrder(order);
+        payment.setRequestId(callbackData.optString("requestId"));
+        payment.setAmount(order.getTotalAmount());
+        payment.setPartnerCode(callbackData.optString("partnerCode", moMoUtil.getPartnerCode()));
+        payment.setPaymentMethod("MOMO");
+        payment.setPaymentStatus(PaymentStatus.PENDING);
+        return payment;
+    }
 }
-
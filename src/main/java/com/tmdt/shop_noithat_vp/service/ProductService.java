@@ -2,6 +2,8 @@ package com.tmdt.shop_noithat_vp.service;
 
 import com.tmdt.shop_noithat_vp.dto.request.CreateProductRequest;
 import com.tmdt.shop_noithat_vp.dto.request.UpdateProductRequest;
+import com.tmdt.shop_noithat_vp.event.ProductOfferChangedEvent;
+import com.tmdt.shop_noithat_vp.event.ProductStockChangedEvent;
 import com.tmdt.shop_noithat_vp.model.Category;
 import com.tmdt.shop_noithat_vp.model.Product;
 import com.tmdt.shop_noithat_vp.repository.CategoryRepository;
@@ -9,6 +11,7 @@ import com.tmdt.shop_noithat_vp.repository.ProductRepository;
 import com.tmdt.shop_noithat_vp.repository.ProductSpecification;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
@@ -27,6 +30,9 @@ public class ProductService {
     @Autowired
     private CategoryRepository categoryRepository;
     
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     public Page<Product> getAllProducts(Pageable pageable) {
         return productRepository.findByIsActiveTrueAndIsDeletedFalse(pageable);
     }
@@ -51,6 +57,10 @@ public class ProductService {
         return productRepository.findDiscountedProducts(pageable);
     }
     
+    public Page<Product> getTopRatedProducts(long minReviews, Pageable pageable) {
+        return productRepository.findTopRatedProducts(minReviews, pageable);
+    }
+    
     // === HÀM NÀY SẼ HẾT LỖI SAU KHI SỬA REPOSITORY ===
     public Page<Product> searchProducts(Long categoryId, BigDecimal minPrice, BigDecimal maxPrice, 
                                    String brand, String keyword, Pageable pageable) {
@@ -113,7 +123,9 @@ public class ProductService {
         product.setViewCount(0L);
         product.setSoldCount(0L);
         
-        return productRepository.save(product);
+        product = productRepository.save(product);
+        publishStockChange(product);
+        return product;
     }
     
     @Transactional
@@ -124,6 +136,10 @@ public class ProductService {
         Category category = categoryRepository.findById(request.getCategoryId())
                 .orElseThrow(() -> new RuntimeException("Danh mục không tồn tại"));
         
+        // Giữ giá / tồn kho cũ để báo cho người đang yêu thích sản phẩm khi giảm giá / hàng về
+        BigDecimal oldPrice = effectivePrice(product);
+        int oldStock = product.getStockQuantity() != null ? product.getStockQuantity() : 0;
+        
         product.setName(request.getName());
         product.setSlug(generateSlug(request.getName()));
         product.setCategory(category);
@@ -144,7 +160,10 @@ public class ProductService {
             product.setIsActive(request.getIsActive());
         }
         
-        return productRepository.save(product);
+        product = productRepository.save(product);
+        publishStockChange(product);
+        publishOfferChange(product, oldPrice, oldStock);
+        return product;
     }
     
     @Transactional
@@ -153,6 +172,28 @@ public class ProductService {
                 .orElseThrow(() -> new RuntimeException("Sản phẩm không tồn tại"));
         product.setIsDeleted(true);
         productRepository.save(product);
+        publishStockChange(product);
+    }
+    
+    private void publishStockChange(Product product) {
+        eventPublisher.publishEvent(new ProductStockChangedEvent(product.getId(), product.getName(),
+                product.getStockQuantity(), product.getMinStockLevel(), product.getIsDeleted()));
+    }
+    
+    private void publishOfferChange(Product product, BigDecimal oldPrice, int oldStock) {
+        if (!Boolean.TRUE.equals(product.getIsActive()) || Boolean.TRUE.equals(product.getIsDeleted())) return;
+        BigDecimal newPrice = effectivePrice(product);
+        int newStock = product.getStockQuantity() != null ? product.getStockQuantity() : 0;
+        boolean priceDropped = oldPrice != null && newPrice != null && newPrice.compareTo(oldPrice) < 0;
+        boolean restocked = oldStock <= 0 && newStock > 0;
+        if (priceDropped || restocked) {
+            eventPublisher.publishEvent(new ProductOfferChangedEvent(product.getId(), product.getName(), product.getSlug(),
+                    oldPrice, newPrice, priceDropped, restocked));
+        }
+    }
+    
+    private static BigDecimal effectivePrice(Product product) {
+        return product.getSalePrice() != null ? product.getSalePrice() : product.getPrice();
     }
     
     private String generateSlug(String name) {
@@ -0,0 +1,190 @@
+package com.tmdt.shop_noithat_vp.service;
+
+import com.tmdt.shop_noithat_vp.model.AnalyticsSketch;
+import com.tmdt.shop_noithat_vp.repository.AnalyticsSketchRepository;
+import com.tmdt.shop_noithat_vp.util.HyperLogLog;
+import com.tmdt.shop_noithat_vp.util.SpaceSavingTopK;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thống kê lượt xem sản phẩm dạng xấp xỉ, không lưu từng lượt xem:
+ * - Người xem duy nhất theo ngày / sản phẩm: HyperLogLog
+ * - Sản phẩm đang hot: Space-Saving top-K theo bucket 5 phút, gộp trong cửa sổ trượt
+ * Sketch được flush định kỳ xuống bảng analytics_sketches (mỗi node một bản) để gộp giữa các node.
+ */
+@Service
+public class ProductViewAnalyticsService {
+
+    private static final int BUCKET_MINUTES = 5;
+    private static final int TOPK_CAPACITY = 64;
+    private static final int MAX_WINDOW_MINUTES = 24 * 60;
+
+    @Autowired
+    private AnalyticsSketchRepository sketchRepository;
+
+    @Value("${app.node-id:}")
+    private String configuredNodeId;
+
+    private String nodeId;
+
+    // ngày -> productId -> HLL
+    private final Map<LocalDate, Map<Long, HyperLogLog>> dailyViewers = new ConcurrentHashMap<>();
+    // đầu bucket -> top-K lượt xem trong bucket
+    private final Map<LocalDateTime, SpaceSavingTopK> viewBuckets = new ConcurrentHashMap<>();
+
+    // Các sketch có thay đổi từ lần flush trước
+    private final Set<String> dirtyViewers = ConcurrentHashMap.newKeySet();
+    private final Set<LocalDateTime> dirtyBuckets = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        // Không cấu hình thì mỗi lần khởi động là một node mới; bản cũ vẫn được gộp khi đọc
+        nodeId = (configuredNodeId == null || configuredNodeId.isBlank())
+                ? UUID.randomUUID().toString()
+                : configuredNodeId;
+    }
+
+    /**
+     * Ghi nhận 1 lượt xem. visitorKey: username nếu đã đăng nhập, ngược lại là IP.
+     */
+    public void recordView(Long productId, String visitorKey) {
+        LocalDate today = LocalDate.now();
+        dailyViewers.computeIfAbsent(today, d -> new ConcurrentHashMap<>())
+                .computeIfAbsent(productId, id -> new HyperLogLog())
+                .add(visitorKey);
+        dirtyViewers.add(today + "|" + productId);
+
+        LocalDateTime bucket = bucketStart(LocalDateTime.now());
+        viewBuckets.computeIfAbsent(bucket, b -> new SpaceSavingTopK(TOPK_CAPACITY)).offer(productId, 1);
+        dirtyBuckets.add(bucket);
+    }
+
+    /**
+     * Số người xem duy nhất của sản phẩm trong ngày (gộp tất cả node)
+     */
+    public long getUniqueViewers(Long productId, LocalDate date) {
+        HyperLogLog merged = new HyperLogLog();
+        Map<Long, HyperLogLog> local = dailyViewers.get(date);
+        if (local != null && local.containsKey(productId)) {
+            merged.merge(local.get(productId));
+        }
+        // Gộp HLL là idempotent nên đọc luôn cả bản đã flush của node hiện tại (cần cho ngày cũ đã bị evict khỏi RAM)
+        for (AnalyticsSketch s : sketchRepository.findBySketchTypeAndSketchKeyAndPeriodStart(
+                AnalyticsSketch.TYPE_PRODUCT_VIEWERS, String.valueOf(productId), date.atStartOfDay())) {
+            merged.merge(HyperLogLog.fromBytes(s.getData()));
+        }
+        return merged.estimate();
+    }
+
+    /**
+     * Top sản phẩm được xem nhiều nhất trong `windowMinutes` phút gần đây (gộp tất cả node)
+     */
+    public List<SpaceSavingTopK.Entry> getTrendingProducts(int limit, int windowMinutes) {
+        int window = Math.max(BUCKET_MINUTES, Math.min(windowMinutes, MAX_WINDOW_MINUTES));
+        LocalDateTime from = bucketStart(LocalDateTime.now().minusMinutes(window - 1L));
+
+        SpaceSavingTopK merged = new SpaceSavingTopK(TOPK_CAPACITY);
+        viewBuckets.forEach((bucket, topK) -> {
+            if (!bucket.isBefore(from)) merged.merge(topK);
+        });
+        for (AnalyticsSketch s : sketchRepository.findBySketchTypeAndPeriodStartGreaterThanEqualAndNodeIdNot(
+                AnalyticsSketch.TYPE_PRODUCT_VIEWS_TOPK, from, nodeId)) {
+            merged.merge(SpaceSavingTopK.fromBytes(s.getData()));
+        }
+        return merged.top(limit);
+    }
+
+    // ========== FLUSH / DỌN DẸP ==========
+
+    @Scheduled(fixedDelay = 60000)
+    public void flush() {
+        for (String key : drain(dirtyViewers)) {
+            String[] parts = key.split("\\|");
+            LocalDate day = LocalDate.parse(parts[0]);
+            Long productId = Long.valueOf(parts[1]);
+            Map<Long, HyperLogLog> perProduct = dailyViewers.get(day);
+            if (perProduct == null || !perProduct.containsKey(productId)) continue;
+            if (!save(AnalyticsSketch.TYPE_PRODUCT_VIEWERS, parts[1], day.atStartOfDay(), perProduct.get(productId).toBytes())) {
+                dirtyViewers.add(key);
+            }
+        }
+        for (LocalDateTime bucket : drain(dirtyBuckets)) {
+            SpaceSavingTopK topK = viewBuckets.get(bucket);
+            if (topK == null) continue;
+            if (!save(AnalyticsSketch.TYPE_PRODUCT_VIEWS_TOPK, "", bucket, topK.toBytes())) {
+                dirtyBuckets.add(bucket);
+            }
+        }
+    }
+
+    @Scheduled(cron = "0 15 3 * * *")
+    public void purgeOldSketches() {
+        sketchRepository.deleteOlderThan(AnalyticsSketch.TYPE_PRODUCT_VIEWERS, LocalDate.now().minusDays(90).atStartOfDay());
+        sketchRepository.deleteOlderThan(AnalyticsSketch.TYPE_PRODUCT_VIEWS_TOPK, LocalDateTime.now().minusMinutes(MAX_WINDOW_MINUTES + BUCKET_MINUTES));
+    }
+
+    @Scheduled(fixedDelay = 10 * 60 * 1000L)
+    public void evictLocal() {
+        // Trong RAM chỉ giữ hôm nay + hôm qua và các bucket trong cửa sổ tối đa (đã được flush)
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        dailyViewers.keySet().removeIf(day -> day.isBefore(yesterday) && dirtyViewers.stream().noneMatch(k -> k.startsWith(day + "|")));
+        LocalDateTime oldest = bucketStart(LocalDateTime.now().minusMinutes(MAX_WINDOW_MINUTES));
+        viewBuckets.keySet().removeIf(bucket -> bucket.isBefore(oldest) && !dirtyBuckets.contains(bucket));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            flush();
+        } catch (Exception e) {
+            System.err.println("Cannot flush view sketches on shutdown: " + e.getMessage());
+        }
+    }
+
+    // Trả về false nếu lỗi để lần flush sau thử lại
+    private boolean save(String type, String key, LocalDateTime period, byte[] data) {
+        try {
+            AnalyticsSketch sketch = sketchRepository
+                    .findBySketchTypeAndSketchKeyAndPeriodStartAndNodeId(type, key, period, nodeId)
+                    .orElseGet(() -> {
+                        AnalyticsSketch s = new AnalyticsSketch();
+                        s.setSketchType(type);
+                        s.setSketchKey(key);
+                        s.setPeriodStart(period);
+                        s.setNodeId(nodeId);
+                        return s;
+                    });
+            sketch.setData(data);
+            sketchRepository.save(sketch);
+            return true;
+        } catch (Exception e) {
+            System.err.println("Cannot flush sketch " + type + "/" + key + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static <T> List<T> drain(Set<T> dirty) {
+        List<T> items = List.copyOf(dirty);
+        items.forEach(dirty::remove);
+        return items;
+    }
+
+    private static LocalDateTime bucketStart(LocalDateTime time) {
+        LocalDateTime minute = time.truncatedTo(ChronoUnit.MINUTES);
+        return minute.minusMinutes(minute.getMinute() % BUCKET_MINUTES);
+    }
+}
@@ -0,0 +1,153 @@
+package com.tmdt.shop_noithat_vp.service;
+
+import com.tmdt.shop_noithat_vp.model.Review;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Duy trì số review / tổng điểm / trung bình / phân bố 1-5 sao trên bảng products.
+ * Mỗi thay đổi review chỉ cộng delta bằng 1 câu UPDATE trong cùng transaction với review,
+ * nên trang danh sách đọc thẳng từ products mà không cần COUNT/AVG theo từng sản phẩm.
+ */
+@Service
+public class RatingAggregateService {
+
+    // Tham số: dCount, dSum, d1..d5, rồi lặp lại dCount, dCount, dSum, dCount cho rating_avg, cuối cùng productId.
+    // Vế phải của UPDATE dùng giá trị cũ nên avg được tính từ count/sum mới một cách nhất quán.
+    private static final String APPLY_DELTA_SQL =
+            "UPDATE products SET " +
+            "rating_count = rating_count + ?, rating_sum = rating_sum + ?, " +
+            "rating_1 = rating_1 + ?, rating_2 = rating_2 + ?, rating_3 = rating_3 + ?, " +
+            "rating_4 = rating_4 + ?, rating_5 = rating_5 + ?, " +
+            "rating_avg = CASE WHEN rating_count + ? > 0 " +
+            "THEN ROUND((rating_sum + ?)::numeric / (rating_count + ?), 2) ELSE 0 END " +
+            "WHERE id = ?";
+
+    private static final String RESET_UNREVIEWED_SQL =
+            "UPDATE products p SET rating_count = 0, rating_sum = 0, rating_avg = 0, " +
+            "rating_1 = 0, rating_2 = 0, rating_3 = 0, rating_4 = 0, rating_5 = 0 " +
+            "WHERE p.rating_count <> 0 AND NOT EXISTS (SELECT 1 FROM reviews r " +
+            "WHERE r.product_id = p.id AND r.is_approved = true AND r.is_deleted = false)";
+
+    private static final String REBUILD_SQL =
+            "UPDATE products p SET rating_count = a.cnt, rating_sum = a.total, " +
+            "rating_avg = ROUND(a.total::numeric / a.cnt, 2), " +
+            "rating_1 = a.r1, rating_2 = a.r2, rating_3 = a.r3, rating_4 = a.r4, rating_5 = a.r5 " +
+            "FROM (SELECT product_id, COUNT(*) AS cnt, SUM(rating) AS total, " +
+            "COUNT(*) FILTER (WHERE rating = 1) AS r1, COUNT(*) FILTER (WHERE rating = 2) AS r2, " +
+            "COUNT(*) FILTER (WHERE rating = 3) AS r3, COUNT(*) FILTER (WHERE rating = 4) AS r4, " +
+            "COUNT(*) FILTER (WHERE rating = 5) AS r5 " +
+            "FROM reviews WHERE is_approved = true AND is_deleted = false GROUP BY product_id) a " +
+            "WHERE p.id = a.product_id AND (p.rating_count, p.rating_sum, p.rating_1, p.rating_2, p.rating_3, p.rating_4, p.rating_5) " +
+            "IS DISTINCT FROM (a.cnt, a.total, a.r1, a.r2, a.r3, a.r4, a.r5)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Điểm của review nếu nó đang được tính vào tổng hợp (đã duyệt, chưa xóa), ngược lại null
+     */
+    public static Integer countedRating(Review review) {
+        if (review == null || !Boolean.TRUE.equals(review.getIsApproved()) || Boolean.TRUE.equals(review.getIsDeleted())) {
+            return null;
+        }
+        return review.getRating();
+    }
+
+    /**
+     * Ghi nhận 1 review đổi từ trạng thái `before` sang `after` (điểm đang được tính, null = không tính).
+     * Phải gọi trong transaction ghi review.
+     */
+    public void onReviewChanged(Long productId, Integer before, Integer after) {
+        RatingDelta delta = new RatingDelta();
+        delta.remove(before);
+        delta.add(after);
+        Map<Long, RatingDelta> deltas = new HashMap<>();
+        deltas.put(productId, delta);
+        applyDeltas(deltas);
+    }
+
+    /**
+     * Cộng nhiều delta (theo sản phẩm) trong 1 batch
+     */
+    public void applyDeltas(Map<Long, RatingDelta> deltas) {
+        List<Object[]> args = new ArrayList<>();
+        deltas.forEach((productId, d) -> {
+            if (d.isEmpty()) return;
+            args.add(new Object[]{
+                    d.count, d.sum, d.stars[0], d.stars[1], d.stars[2], d.stars[3], d.stars[4],
+                    d.count, d.sum, d.count, productId});
+        });
+        if (!args.isEmpty()) {
+            jdbcTemplate.batchUpdate(APPLY_DELTA_SQL, args);
+        }
+    }
+
+    /**
+     * Tính lại toàn bộ từ bảng reviews (sửa sai lệch nếu có ai sửa DB trực tiếp).
+     * Chỉ ghi các sản phẩm bị lệch.
+     * @return số sản phẩm được sửa
+     */
+    @Scheduled(cron = "${rating.rebuild.cron:0 45 3 * * *}")
+    @Transactional
+    public int rebuildAll() {
+        int reset = jdbcTemplate.update(RESET_UNREVIEWED_SQL);
+        int updated = jdbcTemplate.update(REBUILD_SQL);
+        if (reset + updated > 0) {
+            System.err.println("Rating aggregates rebuilt, fixed " + (reset + updated) + " products");
+        }
+        return reset + updated;
+    }
+
+    // Lần đầu triển khai các cột tổng hợp đều = 0 -> dựng lại từ reviews hiện có
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        try {
+            rebuildAll();
+        } catch (Exception e) {
+            System.err.println("Cannot rebuild rating aggregates: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Delta cộng dồn cho 1 sản phẩm
+     */
+    public static class RatingDelta {
+        private long count;
+        private long sum;
+        private final long[] stars = new long[5];
+
+        public void add(Integer rating) {
+            apply(rating, 1);
+        }
+
+        public void remove(Integer rating) {
+            apply(rating, -1);
+        }
+
+        public boolean isEmpty() {
+            if (count != 0 || sum != 0) return false;
+            for (long s : stars) {
+                if (s != 0) return false;
+            }
+            return true;
+        }
+
+        private void apply(Integer rating, int sign) {
+            if (rating == null || rating < 1 || rating > 5) return;
+            count += sign;
+            sum += (long) sign * rating;
+            stars[rating - 1] += sign;
+        }
+    }
+}
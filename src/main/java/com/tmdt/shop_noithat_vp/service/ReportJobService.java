@@ -0,0 +1,195 @@
+package com.tmdt.shop_noithat_vp.service;
+
+import com.tmdt.shop_noithat_vp.util.NamedThreadFactory;
+import com.tmdt.shop_noithat_vp.util.ReportWriter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chạy export báo cáo ở background: trả về jobId ngay, file được ghi ra đĩa,
+ * client hỏi trạng thái rồi tải file khi xong. File cũ tự động bị xóa.
+ * Job chỉ nằm trong bộ nhớ: file còn sót trong report.dir sau khi restart được dọn khi khởi động / theo TTL.
+ */
+@Service
+public class ReportJobService {
+
+    public enum JobStatus { QUEUED, RUNNING, DONE, FAILED }
+
+    @Autowired
+    private AnalyticsService analyticsService;
+
+    @Value("${report.dir:reports}")
+    private String reportDir;
+
+    @Value("${report.ttl-minutes:60}")
+    private long ttlMinutes;
+
+    private final Map<String, ReportJob> jobs = new ConcurrentHashMap<>();
+
+    // Pool giới hạn: 2 luồng, tối đa 20 job chờ -> quá tải thì từ chối thay vì dồn việc
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            2, 2, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(20),
+            new NamedThreadFactory("report-job-"),
+            new ThreadPoolExecutor.AbortPolicy());
+
+    @PostConstruct
+    public void init() {
+        // Khởi động lại thì không còn job nào tham chiếu tới file cũ
+        deleteOrphanFiles(Instant.now());
+    }
+
+    public ReportJob submit(String reportType, String format, LocalDateTime startDate, LocalDateTime endDate) {
+        String jobId = UUID.randomUUID().toString();
+        String fileName = "report_" + reportType.replaceAll("[^a-zA-Z0-9_-]", "") + "_" + jobId + "." + ReportWriter.extension(format);
+        ReportJob job = new ReportJob(jobId, reportType, format, Paths.get(reportDir).resolve(fileName));
+        jobs.put(jobId, job);
+
+        try {
+            executor.execute(() -> run(job, startDate, endDate));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(jobId);
+            throw new RuntimeException("Hệ thống đang xử lý quá nhiều báo cáo, vui lòng thử lại sau");
+        }
+        return job;
+    }
+
+    public ReportJob getJob(String jobId) {
+        ReportJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new RuntimeException("Report job not found");
+        }
+        return job;
+    }
+
+    private void run(ReportJob job, LocalDateTime startDate, LocalDateTime endDate) {
+        job.status = JobStatus.RUNNING;
+        job.startedAt = LocalDateTime.now();
+        try {
+            Files.createDirectories(job.file.getParent());
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(job.file), 64 * 1024)) {
+                analyticsService.exportReport(job.reportType, job.format, startDate, endDate, out, job.rowsWritten);
+            }
+            job.status = JobStatus.DONE;
+        } catch (Exception e) {
+            job.status = JobStatus.FAILED;
+            job.error = e.getMessage();
+            deleteQuietly(job.file);
+            System.err.println("Report job " + job.id + " failed: " + e.getMessage());
+        } finally {
+            job.finishedAt = LocalDateTime.now();
+        }
+    }
+
+    /**
+     * Xóa job + file đã xong quá TTL (chạy mỗi 5 phút)
+     */
+    @Scheduled(fixedDelay = 5 * 60 * 1000L)
+    public void expireOldJobs() {
+        LocalDateTime threshold = LocalDateTime.now().minusMinutes(ttlMinutes);
+        jobs.values().removeIf(job -> {
+            boolean expired = job.finishedAt != null && job.finishedAt.isBefore(threshold);
+            if (expired) {
+                deleteQuietly(job.file);
+            }
+            return expired;
+        });
+        deleteOrphanFiles(Instant.now().minus(ttlMinutes, ChronoUnit.MINUTES));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Xóa file report_* không thuộc job nào đang theo dõi và sửa lần cuối trước `before`
+    private void deleteOrphanFiles(Instant before) {
+        Path dir = Paths.get(reportDir);
+        if (!Files.isDirectory(dir)) return;
+        Set<Path> tracked = new HashSet<>();
+        jobs.values().forEach(job -> tracked.add(job.file.toAbsolutePath().normalize()));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "report_*")) {
+            for (Path file : files) {
+                if (tracked.contains(file.toAbsolutePath().normalize())) continue;
+                if (Files.getLastModifiedTime(file).toInstant().isBefore(before)) {
+                    deleteQuietly(file);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Cannot sweep report directory " + dir + ": " + e.getMessage());
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Cannot delete report file " + file + ": " + e.getMessage());
+        }
+    }
+
+    public static class ReportJob {
+        private final String id;
+        private final String reportType;
+        private final String format;
+        private final Path file;
+        private final AtomicLong rowsWritten = new AtomicLong();
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private volatile JobStatus status = JobStatus.QUEUED;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+        private volatile String error;
+
+        ReportJob(String id, String reportType, String format, Path file) {
+            this.id = id;
+            this.reportType = reportType;
+            this.format = format;
+            this.file = file;
+        }
+
+        public String getId() { return id; }
+        public String getFormat() { return format; }
+        public Path getFile() { return file; }
+        public JobStatus getStatus() { return status; }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("jobId", id);
+            map.put("reportType", reportType);
+            map.put("format", format);
+            map.put("status", status.name());
+            map.put("rowsWritten", rowsWritten.get());
+            map.put("createdAt", createdAt);
+            map.put("startedAt", startedAt);
+            map.put("finishedAt", finishedAt);
+            map.put("error", error);
+            return map;
+        }
+    }
+}
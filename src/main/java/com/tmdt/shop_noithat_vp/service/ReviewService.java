@@ -1,6 +1,9 @@
 package com.tmdt.shop_noithat_vp.service;
 
 import com.tmdt.shop_noithat_vp.dto.request.ReviewRequest;
+import com.tmdt.shop_noithat_vp.dto.response.ReviewModerationItem;
+import com.tmdt.shop_noithat_vp.dto.response.ReviewView;
+import com.tmdt.shop_noithat_vp.event.ReviewChangedEvent;
 import com.tmdt.shop_noithat_vp.model.Order;
 import com.tmdt.shop_noithat_vp.model.Product;
 import com.tmdt.shop_noithat_vp.model.Review;
@@ -10,13 +13,27 @@ import com.tmdt.shop_noithat_vp.repository.OrderRepository;
 import com.tmdt.shop_noithat_vp.repository.ProductRepository;
 import com.tmdt.shop_noithat_vp.repository.ReviewRepository;
 import com.tmdt.shop_noithat_vp.repository.UserRepository;
+import com.tmdt.shop_noithat_vp.util.KeysetCursor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.sql.PreparedStatement;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class ReviewService {
@@ -32,6 +49,48 @@ public class ReviewService {
     
     @Autowired
     private UserRepository userRepository;
+    
+    @Autowired
+    private RatingAggregateService ratingAggregateService;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private FileStorageService fileStorageService;
+    
+    private static final int MAX_MODERATION_PAGE = 200;
+    private static final int MAX_BULK_IDS = 5000;
+    
+    // Chỉ các review đang chờ duyệt mới đổi trạng thái -> RETURNING đúng những dòng cần cộng vào tổng hợp
+    private static final String BULK_APPROVE_SQL =
+            "UPDATE reviews SET is_approved = true, updated_at = now() " +
+            "WHERE id = ANY(?) AND is_approved IS NOT TRUE AND is_deleted = false " +
+            "RETURNING product_id, rating";
+    
+    // Trả về trạng thái cũ để trừ khỏi tổng hợp những review đang được tính
+    private static final String BULK_REJECT_SQL =
+            "WITH target AS (SELECT id, product_id, rating, is_approved FROM reviews " +
+            "WHERE id = ANY(?) AND is_deleted = false FOR UPDATE) " +
+            "UPDATE reviews r SET is_approved = false, is_deleted = true, updated_at = now() " +
+            "FROM target t WHERE r.id = t.id " +
+            "RETURNING t.product_id, t.rating, t.is_approved";
+    
+    // Trang đầu (dòng mới nhất) của mỗi sản phẩm: lấy dư FEED_CACHE_ROWS dòng để phục vụ mọi size <= MAX_FEED_SIZE
+    private static final int MAX_FEED_SIZE = 50;
+    private static final int FEED_CACHE_ROWS = MAX_FEED_SIZE + 1;
+    private static final int FEED_CACHE_MAX_PRODUCTS = 2000;
+    
+    @Value("${review.feed-cache.ttl-ms:300000}")
+    private long feedCacheTtlMillis;
+    
+    private final Map<Long, CachedFeed> firstPageCache = new ConcurrentHashMap<>();
+    
+    private record CachedFeed(List<ReviewView> rows, long expiresAt) {
+    }
 
     @Transactional
     public Review createReview(Long userId, ReviewRequest request) {
@@ -75,14 +134,71 @@ public class ReviewService {
         review.setIsApproved(true); 
         review.setReviewImages(request.getReviewImages());
         
-
-        return reviewRepository.save(review);
+        Review saved = reviewRepository.save(review);
+        fileStorageService.updateReferences(List.of(), ReviewView.parseImages(saved.getReviewImages()));
+        ratingAggregateService.onReviewChanged(product.getId(), null, RatingAggregateService.countedRating(saved));
+        eventPublisher.publishEvent(new ReviewChangedEvent(product.getId()));
+        return saved;
     }
     
 
-    public Page<Review> getProductReviews(Long productId, Pageable pageable) {
-        return reviewRepository.findByProductIdAndIsApprovedTrueAndIsDeletedFalse(productId, pageable);
+    public Page<ReviewView> getProductReviews(Long productId, Pageable pageable) {
+        return reviewRepository.findViewsByProductId(productId, pageable);
+    }
+    
+    /**
+     * Đánh giá của sản phẩm, phân trang keyset: cursor = vị trí (createdAt, id) của dòng cuối trang trước.
+     * Trang đầu được cache theo sản phẩm, xóa khi có đánh giá mới / thay đổi.
+     */
+    public Map<String, Object> getProductReviewFeed(Long productId, String cursor, int size) {
+        int limit = Math.max(1, Math.min(size, MAX_FEED_SIZE));
+        // Lấy dư 1 dòng để biết còn trang sau hay không
+        List<ReviewView> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = firstPageRows(productId);
+        } else {
+            KeysetCursor after = KeysetCursor.decode(cursor);
+            rows = reviewRepository.findViewsBefore(productId, after.createdAt(), after.id(),
+                    PageRequest.of(0, limit + 1));
+        }
+        
+        boolean hasMore = rows.size() > limit;
+        List<ReviewView> page = hasMore ? rows.subList(0, limit) : rows;
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("items", page);
+        response.put("hasMore", hasMore);
+        ReviewView last = page.isEmpty() ? null : page.get(page.size() - 1);
+        response.put("nextCursor", hasMore ? new KeysetCursor(last.getCreatedAt(), last.getId()).encode() : null);
+        return response;
+    }
+    
+    private List<ReviewView> firstPageRows(Long productId) {
+        long now = System.currentTimeMillis();
+        CachedFeed cached = firstPageCache.get(productId);
+        if (cached != null && cached.expiresAt() > now) {
+            return cached.rows();
+        }
+        List<ReviewView> rows = List.copyOf(reviewRepository.findLatestViews(productId, PageRequest.of(0, FEED_CACHE_ROWS)));
+        if (firstPageCache.size() >= FEED_CACHE_MAX_PRODUCTS) {
+            firstPageCache.clear();
+        }
+        firstPageCache.put(productId, new CachedFeed(rows, now + feedCacheTtlMillis));
+        return rows;
     }
+    
+    // Sau commit để request kế tiếp không cache lại dữ liệu cũ
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReviewChanged(ReviewChangedEvent event) {
+        firstPageCache.remove(event.productId());
+    }
+    
+    @Scheduled(fixedDelay = 10 * 60 * 1000L)
+    public void evictExpiredFeeds() {
+        long now = System.currentTimeMillis();
+        firstPageCache.values().removeIf(feed -> feed.expiresAt() <= now);
+    }
+    
     @Transactional
     public Review updateReview(Long userId, Long reviewId, ReviewRequest request) {
         Review review = reviewRepository.findById(reviewId)
@@ -92,6 +208,9 @@ public class ReviewService {
             throw new RuntimeException("Bạn không có quyền chỉnh sửa đánh giá này");
         }
 
+        Integer before = RatingAggregateService.countedRating(review);
+        List<String> imagesBefore = ReviewView.parseImages(review.getReviewImages());
+        
         // Cho phép sửa điểm, nhận xét và ảnh
         review.setRating(request.getRating());
         review.setComment(request.getComment());
@@ -100,7 +219,108 @@ public class ReviewService {
         // Tùy chọn: Nếu sửa thì có cần duyệt lại không? Ở đây giữ nguyên isApproved cũ hoặc set lại true
         // review.setIsApproved(false); 
 
-        return reviewRepository.save(review);
+        Review saved = reviewRepository.save(review);
+        fileStorageService.updateReferences(imagesBefore, ReviewView.parseImages(saved.getReviewImages()));
+        ratingAggregateService.onReviewChanged(saved.getProduct().getId(), before, RatingAggregateService.countedRating(saved));
+        eventPublisher.publishEvent(new ReviewChangedEvent(saved.getProduct().getId()));
+        return saved;
+    }
+    
+    /**
+     * Duyệt / ẩn 1 đánh giá (admin)
+     */
+    @Transactional
+    public Review setApproval(Long reviewId, boolean approved) {
+        Review review = reviewRepository.findById(reviewId)
+                .orElseThrow(() -> new RuntimeException("Đánh giá không tồn tại"));
+        Integer before = RatingAggregateService.countedRating(review);
+        review.setIsApproved(approved);
+        Review saved = reviewRepository.save(review);
+        ratingAggregateService.onReviewChanged(saved.getProduct().getId(), before, RatingAggregateService.countedRating(saved));
+        eventPublisher.publishEvent(new ReviewChangedEvent(saved.getProduct().getId()));
+        return saved;
+    }
+    
+    /**
+     * Hàng đợi duyệt đánh giá (cũ nhất trước), phân trang keyset theo id
+     */
+    public Map<String, Object> getModerationQueue(Long afterId, int size) {
+        int limit = Math.max(1, Math.min(size, MAX_MODERATION_PAGE));
+        List<ReviewModerationItem> rows = reviewRepository.findModerationQueue(
+                afterId != null ? afterId : 0L, PageRequest.of(0, limit + 1));
+        boolean hasMore = rows.size() > limit;
+        List<ReviewModerationItem> page = hasMore ? rows.subList(0, limit) : rows;
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("items", page);
+        response.put("hasMore", hasMore);
+        response.put("nextAfterId", hasMore ? page.get(page.size() - 1).getId() : null);
+        response.put("pendingTotal", reviewRepository.countByIsApprovedFalseAndIsDeletedFalse());
+        return response;
+    }
+    
+    /**
+     * Duyệt / từ chối hàng loạt: 1 câu UPDATE cho cả danh sách id,
+     * điểm tổng hợp của các sản phẩm liên quan được cập nhật trong cùng transaction.
+     * Từ chối = ẩn hẳn (is_deleted) để review rời khỏi hàng đợi.
+     */
+    @Transactional
+    public Map<String, Object> moderateReviews(List<Long> reviewIds, boolean approve) {
+        if (reviewIds == null || reviewIds.isEmpty()) {
+            throw new RuntimeException("Danh sách đánh giá trống");
+        }
+        Long[] ids = reviewIds.stream().filter(Objects::nonNull).distinct().toArray(Long[]::new);
+        if (ids.length > MAX_BULK_IDS) {
+            throw new RuntimeException("Tối đa " + MAX_BULK_IDS + " đánh giá mỗi lần");
+        }
+        
+        Map<Long, RatingAggregateService.RatingDelta> deltas = new HashMap<>();
+        List<Long> touched = jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(approve ? BULK_APPROVE_SQL : BULK_REJECT_SQL);
+            ps.setArray(1, con.createArrayOf("bigint", ids));
+            return ps;
+        }, (rs, rowNum) -> {
+            long productId = rs.getLong("product_id");
+            RatingAggregateService.RatingDelta delta =
+                    deltas.computeIfAbsent(productId, id -> new RatingAggregateService.RatingDelta());
+            int rating = rs.getInt("rating");
+            if (approve) {
+                delta.add(rating);
+            } else if (rs.getBoolean("is_approved")) {
+                delta.remove(rating);
+            }
+            return productId;
+        });
+        
+        ratingAggregateService.applyDeltas(deltas);
+        deltas.keySet().forEach(productId -> eventPublisher.publishEvent(new ReviewChangedEvent(productId)));
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("requested", ids.length);
+        result.put("updated", touched.size());
+        result.put("affectedProducts", deltas.size());
+        return result;
+    }
+    
+    /**
+     * Điểm trung bình + phân bố sao của sản phẩm (đọc từ cột tổng hợp trên products)
+     */
+    public Map<String, Object> getRatingSummary(Long productId) {
+        Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new RuntimeException("Sản phẩm không tồn tại"));
+        Map<String, Object> histogram = new LinkedHashMap<>();
+        histogram.put("1", product.getRating1());
+        histogram.put("2", product.getRating2());
+        histogram.put("3", product.getRating3());
+        histogram.put("4", product.getRating4());
+        histogram.put("5", product.getRating5());
+        
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("productId", productId);
+        summary.put("count", product.getRatingCount());
+        summary.put("average", product.getRatingAvg());
+        summary.put("histogram", histogram);
+        return summary;
     }
 
     // Hàm lấy đánh giá của user cho 1 sản phẩm trong đơn hàng cụ thể
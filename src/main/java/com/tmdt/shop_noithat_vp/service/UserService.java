@@ -2,12 +2,14 @@ package com.tmdt.shop_noithat_vp.service;
 
 import com.tmdt.shop_noithat_vp.model.User;
 import com.tmdt.shop_noithat_vp.repository.UserRepository;
+import com.tmdt.shop_noithat_vp.security.UserAuthStateCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import com.tmdt.shop_noithat_vp.dto.request.UpdateProfileRequest;
 import java.util.Optional;
 
@@ -17,6 +19,12 @@ public class UserService {
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private UserAuthStateCache userAuthStateCache;
+    
+    @Autowired
+    private FileStorageService fileStorageService;
+    
     public Optional<User> getCurrentUser(Authentication authentication) {
         if (authentication == null || !authentication.isAuthenticated()) {
             return Optional.empty();
@@ -32,14 +40,21 @@ public class UserService {
     }
     
     public Long getCurrentUserId(Authentication authentication) {
-        return getCurrentUser(authentication)
-                .map(User::getId)
-                .orElseThrow(() -> new RuntimeException("User not authenticated"));
+        // Id đã có sẵn trong cache trạng thái xác thực, không cần load cả entity User
+        if (authentication != null && authentication.isAuthenticated()
+                && authentication.getPrincipal() instanceof UserDetails details) {
+            UserAuthStateCache.UserAuthState state = userAuthStateCache.get(details.getUsername());
+            if (state != null) {
+                return state.userId();
+            }
+        }
+        throw new RuntimeException("User not authenticated");
     }
     
     public Page<User> getAllUsers(Pageable pageable) {
         return userRepository.findByIsDeletedFalse(pageable);
     }
+    @Transactional
     public User updateProfile(Long userId, UpdateProfileRequest request) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
@@ -54,6 +69,7 @@ public class UserService {
             user.setAddress(request.getAddress());
         }
         if (request.getAvatarUrl() != null) {
+            fileStorageService.updateReference(user.getAvatarUrl(), request.getAvatarUrl());
             user.setAvatarUrl(request.getAvatarUrl());
         }
         
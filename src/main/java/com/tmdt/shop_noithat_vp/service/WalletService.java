@@ -1,71 +1,248 @@
 package com.tmdt.shop_noithat_vp.service;
 
 import com.tmdt.shop_noithat_vp.model.User;
+import com.tmdt.shop_noithat_vp.model.WalletMonthlyStatement;
 import com.tmdt.shop_noithat_vp.model.WalletTransaction;
 import com.tmdt.shop_noithat_vp.model.enums.TransactionType;
-import com.tmdt.shop_noithat_vp.repository.UserRepository;
+import com.tmdt.shop_noithat_vp.repository.WalletMonthlyStatementRepository;
 import com.tmdt.shop_noithat_vp.repository.WalletTransactionRepository;
+import com.tmdt.shop_noithat_vp.util.KeysetCursor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 
 import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * Sổ cái ví: mỗi biến động số dư là 1 câu lệnh duy nhất vừa UPDATE số dư có điều kiện
+ * (không cho âm) vừa INSERT dòng wallet_transactions kèm số dư sau giao dịch.
+ * Không đọc-sửa-ghi cả User nên nạp / trả tiền đồng thời không bị mất cập nhật.
+ * Sao kê tháng được cộng dồn trong cùng câu lệnh.
+ */
 @Service
 public class WalletService {
 
+    // CTE: UPDATE khóa dòng user + kiểm tra số dư, INSERT giao dịch chỉ chạy khi UPDATE thành công,
+    // rồi cộng dồn sao kê tháng. Giao dịch cùng user tuần tự theo khóa dòng users nên closing_balance luôn là mới nhất.
+    private static final String APPLY_SQL =
+            "WITH upd AS (" +
+            "  UPDATE users SET balance = COALESCE(balance, 0) + ? " +
+            "  WHERE id = ? AND COALESCE(balance, 0) + ? >= 0 " +
+            "  RETURNING id, balance" +
+            "), ins AS (" +
+            "  INSERT INTO wallet_transactions (user_id, amount, type, description, order_code, created_at, transaction_status, balance_after) " +
+            "  SELECT id, ?, ?, ?, ?, ?, 'SUCCESS', balance FROM upd " +
+            "  RETURNING user_id, amount, type, balance_after" +
+            ") " +
+            "INSERT INTO wallet_monthly_statements AS s (user_id, statement_month, opening_balance, deposit_total, payment_total, " +
+            "  refund_total, closing_balance, transaction_count) " +
+            "SELECT user_id, ?, balance_after - amount, " +
+            "  CASE WHEN type = 'DEPOSIT' THEN amount ELSE 0 END, " +
+            "  CASE WHEN type = 'PAYMENT' THEN amount ELSE 0 END, " +
+            "  CASE WHEN type = 'REFUND' THEN amount ELSE 0 END, " +
+            "  balance_after, 1 FROM ins " +
+            "ON CONFLICT (user_id, statement_month) DO UPDATE SET " +
+            "  deposit_total = s.deposit_total + EXCLUDED.deposit_total, " +
+            "  payment_total = s.payment_total + EXCLUDED.payment_total, " +
+            "  refund_total = s.refund_total + EXCLUDED.refund_total, " +
+            "  closing_balance = EXCLUDED.closing_balance, " +
+            "  transaction_count = s.transaction_count + 1 " +
+            "RETURNING s.closing_balance";
+
+    // Chụp số dư cho các ví có giao dịch mới kể từ ảnh chụp gần nhất.
+    // 1 câu lệnh = 1 snapshot nhất quán; giao dịch cùng user tuần tự theo khóa dòng users nên id tăng theo thứ tự commit.
+    private static final String SNAPSHOT_SQL =
+            "INSERT INTO wallet_balance_snapshots (user_id, balance, last_transaction_id, created_at) " +
+            "SELECT u.id, COALESCE(u.balance, 0), t.max_id, ? FROM users u " +
+            "JOIN (SELECT user_id, MAX(id) AS max_id FROM wallet_transactions GROUP BY user_id) t ON t.user_id = u.id " +
+            "WHERE t.max_id > COALESCE((SELECT MAX(s.last_transaction_id) FROM wallet_balance_snapshots s WHERE s.user_id = u.id), 0)";
+
+    // Như SNAPSHOT_SQL nhưng chỉ chụp 1 ví (trước khi đối soát riêng 1 người dùng)
+    private static final String SNAPSHOT_USER_SQL =
+            "INSERT INTO wallet_balance_snapshots (user_id, balance, last_transaction_id, created_at) " +
+            "SELECT u.id, COALESCE(u.balance, 0), t.max_id, ? FROM users u " +
+            "JOIN (SELECT user_id, MAX(id) AS max_id FROM wallet_transactions WHERE user_id = ? GROUP BY user_id) t ON t.user_id = u.id " +
+            "WHERE t.max_id > COALESCE((SELECT MAX(s.last_transaction_id) FROM wallet_balance_snapshots s WHERE s.user_id = u.id), 0)";
+
+    // Số dư dựng lại = ảnh chụp gần nhất + tổng giao dịch sau đó (không có ảnh chụp thì cộng toàn bộ lịch sử)
+    private static final String AUDIT_SQL =
+            "SELECT COALESCE(u.balance, 0) AS balance, s.balance AS snapshot_balance, s.last_transaction_id, s.created_at AS snapshot_at, " +
+            "  (SELECT COALESCE(SUM(t.amount), 0) FROM wallet_transactions t " +
+            "   WHERE t.user_id = u.id AND t.id > COALESCE(s.last_transaction_id, 0)) AS delta " +
+            "FROM users u LEFT JOIN LATERAL (" +
+            "  SELECT balance, last_transaction_id, created_at FROM wallet_balance_snapshots " +
+            "  WHERE user_id = u.id ORDER BY id DESC LIMIT 1) s ON true " +
+            "WHERE u.id = ?";
+
     @Autowired
-    private UserRepository userRepository;
+    private JdbcTemplate jdbcTemplate;
     
     @Autowired
     private WalletTransactionRepository transactionRepository;
 
+    @Autowired
+    private WalletMonthlyStatementRepository statementRepository;
+
     // 1. Nạp tiền (Gọi khi MoMo báo thành công)
     @Transactional
     public void deposit(User user, BigDecimal amount, String description) {
-        user.setBalance(user.getBalance().add(amount));
-        userRepository.save(user);
-        createTransaction(user, amount, TransactionType.DEPOSIT, description, null);
+        apply(user, amount, TransactionType.DEPOSIT, description, null);
     }
 
     // 2. Thanh toán đơn hàng
     @Transactional
     public void payOrder(User user, BigDecimal amount, String orderCode) {
-        if (user.getBalance().compareTo(amount) < 0) {
-            throw new RuntimeException("Số dư ví không đủ!");
-        }
-        user.setBalance(user.getBalance().subtract(amount));
-        userRepository.save(user);
-        createTransaction(user, amount.negate(), TransactionType.PAYMENT, "Thanh toán đơn hàng " + orderCode, orderCode);
+        apply(user, amount.negate(), TransactionType.PAYMENT, "Thanh toán đơn hàng " + orderCode, orderCode);
     }
 
     // 3. Hoàn tiền (Admin hủy đơn)
     @Transactional
     public void refund(User user, BigDecimal amount, String orderCode) {
-        // Cộng tiền vào số dư hiện tại
-        BigDecimal currentBalance = user.getBalance();
-        user.setBalance(currentBalance.add(amount));
-        
-        // Lưu user
-        userRepository.save(user);
-        
-        // Lưu lịch sử giao dịch
-        createTransaction(user, amount, TransactionType.REFUND, "Hoàn tiền đơn hàng " + orderCode, orderCode);
+        apply(user, amount, TransactionType.REFUND, "Hoàn tiền đơn hàng " + orderCode, orderCode);
     }
 
-    private void createTransaction(User user, BigDecimal amount, TransactionType type, String desc, String orderCode) {
-        WalletTransaction tx = new WalletTransaction();
-        tx.setUser(user);
-        tx.setAmount(amount);
-        tx.setType(type);
-        tx.setDescription(desc);
-        tx.setOrderCode(orderCode);
-        tx.setStatus("SUCCESS");
-        transactionRepository.save(tx);
+    /**
+     * Đổi số dư + ghi sổ cái trong 1 câu lệnh. Số dư không đủ (hoặc user không tồn tại) thì không có dòng nào.
+     */
+    private BigDecimal apply(User user, BigDecimal amount, TransactionType type, String desc, String orderCode) {
+        LocalDateTime now = LocalDateTime.now();
+        List<BigDecimal> result = jdbcTemplate.queryForList(APPLY_SQL, BigDecimal.class,
+                amount, user.getId(), amount,
+                amount, type.name(), desc, orderCode, Timestamp.valueOf(now),
+                Date.valueOf(now.toLocalDate().withDayOfMonth(1)));
+        if (result.isEmpty()) {
+            throw new RuntimeException("Số dư ví không đủ!");
+        }
+        BigDecimal balanceAfter = result.get(0);
+        // Đồng bộ entity trong bộ nhớ để response trả đúng số dư (cột balance không bị JPA ghi đè)
+        user.setBalance(balanceAfter);
+        return balanceAfter;
+    }
+
+    /**
+     * Ảnh chụp số dư hằng ngày
+     * @return số ví được chụp
+     */
+    @Scheduled(cron = "${wallet.snapshot.cron:0 30 2 * * *}")
+    @Transactional
+    public int snapshotBalances() {
+        return jdbcTemplate.update(SNAPSHOT_SQL, Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    /**
+     * Ảnh chụp số dư của 1 ví
+     * @return 1 nếu có giao dịch mới kể từ ảnh chụp trước, ngược lại 0
+     */
+    @Transactional
+    public int snapshotBalance(Long userId) {
+        return jdbcTemplate.update(SNAPSHOT_USER_SQL, Timestamp.valueOf(LocalDateTime.now()), userId);
     }
+
+    /**
+     * Đối chiếu số dư hiện tại với số dư dựng lại từ ảnh chụp + sổ cái
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> auditBalance(Long userId) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(AUDIT_SQL, userId);
+        if (rows.isEmpty()) {
+            throw new RuntimeException("User not found");
+        }
+        Map<String, Object> row = rows.get(0);
+        BigDecimal balance = (BigDecimal) row.get("balance");
+        BigDecimal snapshotBalance = row.get("snapshot_balance") != null ? (BigDecimal) row.get("snapshot_balance") : BigDecimal.ZERO;
+        BigDecimal reconstructed = snapshotBalance.add((BigDecimal) row.get("delta"));
+
+        Map<String, Object> audit = new HashMap<>();
+        audit.put("userId", userId);
+        audit.put("balance", balance);
+        audit.put("reconstructedBalance", reconstructed);
+        audit.put("snapshotBalance", row.get("snapshot_balance"));
+        audit.put("snapshotLastTransactionId", row.get("last_transaction_id"));
+        audit.put("snapshotAt", row.get("snapshot_at"));
+        audit.put("consistent", balance.compareTo(reconstructed) == 0);
+        return audit;
+    }
+
     public Page<WalletTransaction> getUserTransactions(Long userId, Pageable pageable) {
         return transactionRepository.findByUserIdOrderByCreatedAtDesc(userId, pageable);
     }
-}
\ No newline at end of file
+
+    /**
+     * Lịch sử giao dịch phân trang keyset: cursor = vị trí (createdAt, id) của dòng cuối trang trước
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getUserTransactionsAfterCursor(Long userId, String cursor, int size) {
+        int limit = Math.max(1, Math.min(size, 100));
+        // Lấy dư 1 dòng để biết còn trang sau hay không
+        List<WalletTransaction> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = transactionRepository.findLatest(userId, limit + 1);
+        } else {
+            KeysetCursor after = KeysetCursor.decode(cursor);
+            rows = transactionRepository.findBefore(userId, after.createdAt(), after.id(), limit + 1);
+        }
+
+        boolean hasMore = rows.size() > limit;
+        List<WalletTransaction> page = hasMore ? rows.subList(0, limit) : rows;
+        List<Map<String, Object>> items = new ArrayList<>(page.size());
+        for (WalletTransaction tx : page) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("id", tx.getId());
+            item.put("amount", tx.getAmount());
+            item.put("type", tx.getType());
+            item.put("description", tx.getDescription());
+            item.put("orderCode", tx.getOrderCode());
+            item.put("status", tx.getStatus());
+            item.put("balanceAfter", tx.getBalanceAfter());
+            item.put("createdAt", tx.getCreatedAt());
+            items.add(item);
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("items", items);
+        response.put("hasMore", hasMore);
+        WalletTransaction last = page.isEmpty() ? null : page.get(page.size() - 1);
+        response.put("nextCursor", hasMore ? new KeysetCursor(last.getCreatedAt(), last.getId()).encode() : null);
+        return response;
+    }
+
+    /**
+     * Sao kê các tháng gần nhất (chỉ tháng có giao dịch)
+     */
+    public List<WalletMonthlyStatement> getMonthlyStatements(Long userId, int months) {
+        return statementRepository.findByUserIdOrderByStatementMonthDesc(userId, PageRequest.of(0, Math.max(1, Math.min(months, 60))));
+    }
+
+    /**
+     * Sao kê 1 tháng; tháng không có giao dịch thì đầu kỳ = cuối kỳ = số dư cuối tháng có giao dịch gần nhất
+     */
+    public WalletMonthlyStatement getMonthlyStatement(Long userId, YearMonth month) {
+        LocalDate start = month.atDay(1);
+        return statementRepository.findByUserIdAndStatementMonth(userId, start).orElseGet(() -> {
+            BigDecimal balance = statementRepository
+                    .findFirstByUserIdAndStatementMonthLessThanOrderByStatementMonthDesc(userId, start)
+                    .map(WalletMonthlyStatement::getClosingBalance)
+                    .orElse(BigDecimal.ZERO);
+            WalletMonthlyStatement empty = new WalletMonthlyStatement();
+            empty.setUserId(userId);
+            empty.setStatementMonth(start);
+            empty.setOpeningBalance(balance);
+            empty.setClosingBalance(balance);
+            return empty;
+        });
+    }
+}
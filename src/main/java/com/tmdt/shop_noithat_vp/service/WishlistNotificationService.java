@@ -0,0 +1,165 @@
+package com.tmdt.shop_noithat_vp.service;
+
+import com.tmdt.shop_noithat_vp.event.ProductOfferChangedEvent;
+import com.tmdt.shop_noithat_vp.util.NamedThreadFactory;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Báo cho người đang yêu thích sản phẩm khi sản phẩm giảm giá / có hàng trở lại.
+ * - Chạy sau commit trên luồng riêng, request cập nhật sản phẩm của admin không phải chờ
+ * - Lấy người yêu thích theo product_id qua index idx_wishlists_product, phân trang keyset theo user_id
+ * - Mỗi user chỉ nhận 1 email / sản phẩm / ngày (bảng wishlist_notifications, ON CONFLICT DO NOTHING)
+ * - Mỗi lô người nhận được ghi vào hàng đợi email (MailQueueService) bằng 1 batch INSERT,
+ *   tốc độ gửi / thử lại do hàng đợi email quản lý
+ * - Đánh dấu "đã báo" và ghi hàng đợi của 1 lô nằm trong cùng 1 transaction:
+ *   ghi hàng đợi lỗi thì đánh dấu cũng rollback, lần thay đổi sau còn báo lại
+ */
+@Service
+public class WishlistNotificationService {
+
+    private static final String FIND_WISHLISTERS_SQL =
+            "SELECT w.user_id, u.email, COALESCE(u.full_name, u.username) AS name " +
+            "FROM wishlists w JOIN users u ON u.id = w.user_id " +
+            "WHERE w.product_id = ? AND w.is_deleted = false AND w.user_id > ? AND u.is_active = true " +
+            "ORDER BY w.user_id LIMIT ?";
+
+    // Chỉ trả về các user chưa được báo về sản phẩm này trong ngày
+    private static final String CLAIM_SQL =
+            "INSERT INTO wishlist_notifications (user_id, product_id, notify_date) " +
+            "SELECT unnest(?), ?, ? ON CONFLICT DO NOTHING RETURNING user_id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${wishlist.notify.batch-size:500}")
+    private int batchSize;
+
+    @Value("${wishlist.notify.retention-days:7}")
+    private int retentionDays;
+
+    // Mỗi lần chỉ xử lý 1 sản phẩm; đầy hàng đợi thì bỏ qua sự kiện (chỉ là thông báo)
+    private final ThreadPoolExecutor matcher = new ThreadPoolExecutor(
+            1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(1000),
+            new NamedThreadFactory("wishlist-matcher-"),
+            new ThreadPoolExecutor.AbortPolicy());
+
+    private final AtomicLong matched = new AtomicLong();
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile boolean running = true;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOfferChanged(ProductOfferChangedEvent event) {
+        try {
+            matcher.execute(() -> match(event));
+        } catch (RejectedExecutionException e) {
+            System.err.println("Wishlist matcher queue full, skip product " + event.productId());
+        }
+    }
+
+    void match(ProductOfferChangedEvent event) {
+        LocalDate today = LocalDate.now();
+        long afterUserId = 0;
+        try {
+            while (running) {
+                List<Recipient> page = jdbcTemplate.query(FIND_WISHLISTERS_SQL,
+                        (rs, rowNum) -> new Recipient(rs.getLong("user_id"), rs.getString("email"),
+                                rs.getString("name")),
+                        event.productId(), afterUserId, batchSize);
+                if (page.isEmpty()) break;
+                afterUserId = page.get(page.size() - 1).userId();
+
+                notifyPage(page, event, today);
+                if (page.size() < batchSize) break;
+            }
+        } catch (Exception e) {
+            System.err.println("Cannot match wishlist notifications for product " + event.productId() + ": " + e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        return Map.of(
+                "pendingProducts", matcher.getQueue().size(),
+                "matched", matched.get(),
+                "queued", queued.get(),
+                "failed", failed.get());
+    }
+
+    @Scheduled(cron = "0 30 3 * * *")
+    public void purgeOldClaims() {
+        jdbcTemplate.update("DELETE FROM wishlist_notifications WHERE notify_date < ?",
+                Date.valueOf(LocalDate.now().minusDays(retentionDays)));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        matcher.shutdownNow();
+    }
+
+    // Lỗi ghi hàng đợi thì rollback cả lô (kể cả đánh dấu), không làm dừng cả sản phẩm
+    private void notifyPage(List<Recipient> page, ProductOfferChangedEvent event, LocalDate today) {
+        int[] size = {0};
+        try {
+            transactionTemplate.executeWithoutResult(tx -> {
+                Set<Long> fresh = claim(page, event.productId(), today);
+                Map<String, String> batch = new LinkedHashMap<>();
+                for (Recipient r : page) {
+                    if (fresh.contains(r.userId())) batch.put(r.email(), r.name());
+                }
+                size[0] = batch.size();
+                if (!batch.isEmpty()) {
+                    emailService.sendWishlistAlertEmails(batch, event);
+                }
+            });
+            matched.addAndGet(size[0]);
+            queued.addAndGet(size[0]);
+        } catch (Exception e) {
+            failed.addAndGet(size[0]);
+            System.err.println("Cannot queue wishlist alerts for product " + event.productId() + ": " + e.getMessage());
+        }
+    }
+
+    private Set<Long> claim(List<Recipient> page, Long productId, LocalDate day) {
+        Long[] userIds = page.stream().map(Recipient::userId).toArray(Long[]::new);
+        List<Long> claimed = jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(CLAIM_SQL);
+            ps.setArray(1, con.createArrayOf("bigint", userIds));
+            ps.setLong(2, productId);
+            ps.setDate(3, Date.valueOf(day));
+            return ps;
+        }, (rs, rowNum) -> rs.getLong(1));
+        return new HashSet<>(claimed);
+    }
+
+    private record Recipient(long userId, String email, String name) {
+    }
+}
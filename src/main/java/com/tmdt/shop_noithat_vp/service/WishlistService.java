@@ -1,18 +1,28 @@
 package com.tmdt.shop_noithat_vp.service;
 
+import com.tmdt.shop_noithat_vp.event.WishlistChangedEvent;
 import com.tmdt.shop_noithat_vp.model.Product;
 import com.tmdt.shop_noithat_vp.model.User;
 import com.tmdt.shop_noithat_vp.model.Wishlist;
 import com.tmdt.shop_noithat_vp.repository.ProductRepository;
 import com.tmdt.shop_noithat_vp.repository.UserRepository;
 import com.tmdt.shop_noithat_vp.repository.WishlistRepository;
+import com.tmdt.shop_noithat_vp.util.SortedLongSet;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class WishlistService {
@@ -26,6 +36,21 @@ public class WishlistService {
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private static final int MAX_CONTAINS_IDS = 200;
+    private static final int MAX_CACHED_USERS = 20000;
+
+    @Value("${wishlist.id-cache.ttl-ms:600000}")
+    private long idCacheTtlMillis;
+
+    // userId -> tập id sản phẩm yêu thích (để vẽ icon trái tim cho cả lưới sản phẩm)
+    private final Map<Long, CachedIds> productIdCache = new ConcurrentHashMap<>();
+
+    private record CachedIds(SortedLongSet ids, long expiresAt) {
+    }
+
     public Page<Wishlist> getUserWishlist(Long userId, Pageable pageable) {
         return wishlistRepository.findByUserIdAndIsDeletedFalse(userId, pageable);
     }
@@ -39,6 +64,7 @@ public class WishlistService {
             // Lưu ý: Có thể dùng xóa cứng (delete) hoặc xóa mềm (isDeleted=true)
             // Ở đây dùng xóa cứng cho gọn database
             wishlistRepository.delete(existing.get());
+            eventPublisher.publishEvent(new WishlistChangedEvent(userId, productId, false));
             return "removed";
         } else {
             // Nếu chưa có -> Thêm mới
@@ -49,11 +75,57 @@ public class WishlistService {
             wishlist.setUser(user);
             wishlist.setProduct(product);
             wishlistRepository.save(wishlist);
+            eventPublisher.publishEvent(new WishlistChangedEvent(userId, productId, true));
             return "added";
         }
     }
 
     public boolean checkProductInWishlist(Long userId, Long productId) {
-        return wishlistRepository.existsByUserIdAndProductIdAndIsDeletedFalse(userId, productId);
+        return productIds(userId).contains(productId);
+    }
+
+    /**
+     * Sản phẩm nào trong danh sách đang được user yêu thích: tối đa 1 query (khi cache hết hạn)
+     */
+    public Map<Long, Boolean> containsProducts(Long userId, List<Long> productIds) {
+        if (productIds.size() > MAX_CONTAINS_IDS) {
+            throw new RuntimeException("Tối đa " + MAX_CONTAINS_IDS + " sản phẩm mỗi lần");
+        }
+        SortedLongSet ids = productIds(userId);
+        Map<Long, Boolean> result = new LinkedHashMap<>();
+        for (Long productId : productIds) {
+            if (productId != null) {
+                result.put(productId, ids.contains(productId));
+            }
+        }
+        return result;
+    }
+
+    // Cập nhật tập id đã cache sau khi toggle commit (chưa cache thì để lần đọc sau tự nạp)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onWishlistChanged(WishlistChangedEvent event) {
+        productIdCache.computeIfPresent(event.userId(), (userId, cached) -> new CachedIds(
+                event.added() ? cached.ids().with(event.productId()) : cached.ids().without(event.productId()),
+                cached.expiresAt()));
+    }
+
+    @Scheduled(fixedDelay = 10 * 60 * 1000L)
+    public void evictExpiredIdSets() {
+        long now = System.currentTimeMillis();
+        productIdCache.values().removeIf(cached -> cached.expiresAt() <= now);
+    }
+
+    private SortedLongSet productIds(Long userId) {
+        long now = System.currentTimeMillis();
+        CachedIds cached = productIdCache.get(userId);
+        if (cached != null && cached.expiresAt() > now) {
+            return cached.ids();
+        }
+        SortedLongSet ids = SortedLongSet.of(wishlistRepository.findProductIdsByUserId(userId));
+        if (productIdCache.size() >= MAX_CACHED_USERS) {
+            productIdCache.clear();
+        }
+        productIdCache.put(userId, new CachedIds(ids, now + idCacheTtlMillis));
+        return ids;
     }
 }
\ No newline at end of file
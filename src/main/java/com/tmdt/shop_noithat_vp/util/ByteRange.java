@@ -0,0 +1,46 @@
+package com.tmdt.shop_noithat_vp.util;
+
+/**
+ * Một đoạn byte [start, end] (end tính cả) của header Range.
+ * Chỉ hỗ trợ 1 đoạn; nhiều đoạn (multipart/byteranges) thì trả file đầy đủ, RFC 9110 cho phép.
+ */
+public record ByteRange(long start, long end) {
+
+    /** Header Range hợp lệ về cú pháp nhưng không có byte nào thỏa (-> 416) */
+    public static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+
+    public long length() {
+        return end - start + 1;
+    }
+
+    /**
+     * @return null nếu không có / không hiểu header (trả 200 đầy đủ), UNSATISFIABLE nếu nằm ngoài file
+     */
+    public static ByteRange parse(String header, long fileLength) {
+        if (header == null || !header.startsWith("bytes=")) return null;
+        String spec = header.substring("bytes=".length()).trim();
+        if (spec.isEmpty() || spec.indexOf(',') >= 0) return null;
+
+        int dash = spec.indexOf('-');
+        if (dash < 0) return null;
+        String first = spec.substring(0, dash).trim();
+        String last = spec.substring(dash + 1).trim();
+        try {
+            if (first.isEmpty()) {
+                // bytes=-n: n byte cuối
+                if (last.isEmpty()) return null;
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || fileLength == 0) return UNSATISFIABLE;
+                return new ByteRange(Math.max(0, fileLength - suffix), fileLength - 1);
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? fileLength - 1 : Long.parseLong(last);
+            if (start < 0) return null;
+            if (start >= fileLength) return UNSATISFIABLE;
+            if (end < start) return null;
+            return new ByteRange(start, Math.min(end, fileLength - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
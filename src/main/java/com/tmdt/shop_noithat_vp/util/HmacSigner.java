@@ -0,0 +1,156 @@
+package com.tmdt.shop_noithat_vp.util;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+
+/**
+ * Ký HMAC-SHA256 dùng lại tài nguyên: mỗi luồng giữ 1 Mac đã init với khóa,
+ * buffer dựng chuỗi "k1=v1&k2=v2...", buffer byte UTF-8 (tự encode, không qua CharsetEncoder) và buffer digest.
+ * Hex encode bằng bảng tra, so sánh chữ ký theo thời gian hằng (không lộ vị trí sai qua timing).
+ * Mỗi lần ký chỉ còn cấp phát chuỗi kết quả, cộng mảng varargs và boxing / toString tham số số của sign(), verify();
+ * số byte / lần đo bằng HmacSignerBenchmark (test).
+ */
+public class HmacSigner {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int DIGEST_LENGTH = 32;
+
+    private final SecretKeySpec key;
+    private final ThreadLocal<State> state;
+
+    public HmacSigner(String secret) {
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.state = ThreadLocal.withInitial(this::newState);
+    }
+
+    /**
+     * Ký chuỗi canonical dựng từ các cặp key/value theo đúng thứ tự truyền vào:
+     * sign("accessKey", a, "amount", b) ký "accessKey=a&amount=b"
+     */
+    public String sign(Object... keyValues) {
+        State s = state.get();
+        digest(s, canonical(s, keyValues));
+        return new String(toHex(s), 0, DIGEST_LENGTH * 2);
+    }
+
+    /**
+     * Ký chuỗi đã dựng sẵn
+     */
+    public String signRaw(CharSequence raw) {
+        State s = state.get();
+        digest(s, raw);
+        return new String(toHex(s), 0, DIGEST_LENGTH * 2);
+    }
+
+    /**
+     * So sánh chữ ký hex (không phân biệt hoa thường) theo thời gian hằng
+     */
+    public boolean verify(String signatureHex, Object... keyValues) {
+        if (signatureHex == null || signatureHex.length() != DIGEST_LENGTH * 2) {
+            return false;
+        }
+        State s = state.get();
+        digest(s, canonical(s, keyValues));
+        char[] expected = toHex(s);
+        int diff = 0;
+        for (int i = 0; i < expected.length; i++) {
+            diff |= expected[i] ^ Character.toLowerCase(signatureHex.charAt(i));
+        }
+        return diff == 0;
+    }
+
+    private StringBuilder canonical(State s, Object[] keyValues) {
+        if ((keyValues.length & 1) != 0) {
+            throw new IllegalArgumentException("keyValues must be key/value pairs");
+        }
+        StringBuilder sb = s.payload;
+        sb.setLength(0);
+        for (int i = 0; i < keyValues.length; i += 2) {
+            if (i > 0) sb.append('&');
+            sb.append(keyValues[i]).append('=');
+            Object value = keyValues[i + 1];
+            if (value != null) sb.append(value);
+        }
+        return sb;
+    }
+
+    private void digest(State s, CharSequence payload) {
+        int length = payload.length();
+        // 1 char UTF-16 -> tối đa 3 byte (cặp surrogate 2 char -> 4 byte)
+        byte[] buf = s.bytes(length * 3);
+        int pos = 0;
+        for (int i = 0; i < length; i++) {
+            char c = payload.charAt(i);
+            if (c < 0x80) {
+                buf[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                buf[pos++] = (byte) (0xc0 | (c >> 6));
+                buf[pos++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(payload.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, payload.charAt(++i));
+                    buf[pos++] = (byte) (0xf0 | (cp >> 18));
+                    buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                    buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                    buf[pos++] = (byte) (0x80 | (cp & 0x3f));
+                } else {
+                    // Surrogate lẻ -> '?' giống String.getBytes(UTF_8)
+                    buf[pos++] = '?';
+                }
+            } else {
+                buf[pos++] = (byte) (0xe0 | (c >> 12));
+                buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buf[pos++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        try {
+            s.mac.update(buf, 0, pos);
+            s.mac.doFinal(s.digest, 0);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot compute HMAC", e);
+        }
+    }
+
+    private char[] toHex(State s) {
+        char[] out = s.hex;
+        for (int i = 0; i < DIGEST_LENGTH; i++) {
+            int b = s.digest[i] & 0xff;
+            out[i * 2] = HEX[b >>> 4];
+            out[i * 2 + 1] = HEX[b & 0x0f];
+        }
+        return out;
+    }
+
+    private State newState() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return new State(mac);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot init " + ALGORITHM, e);
+        }
+    }
+
+    private static final class State {
+        private final Mac mac;
+        private final StringBuilder payload = new StringBuilder(512);
+        private final byte[] digest = new byte[DIGEST_LENGTH];
+        private final char[] hex = new char[DIGEST_LENGTH * 2];
+        private byte[] bytes = new byte[1536];
+
+        State(Mac mac) {
+            this.mac = mac;
+        }
+
+        // Buffer chỉ lớn lên
+        byte[] bytes(int minCapacity) {
+            if (bytes.length < minCapacity) {
+                bytes = new byte[Math.max(minCapacity, bytes.length * 2)];
+            }
+            return bytes;
+        }
+    }
+}
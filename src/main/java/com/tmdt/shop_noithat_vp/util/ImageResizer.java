@@ -0,0 +1,128 @@
+package com.tmdt.shop_noithat_vp.util;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * Thu nhỏ và mã hóa lại ảnh bằng ImageIO.
+ * Ảnh ghi ra chỉ gồm pixel nên EXIF / GPS / ICC của ảnh gốc bị loại bỏ.
+ */
+public final class ImageResizer {
+
+    public static final String FORMAT_WEBP = "webp";
+    public static final String FORMAT_JPEG = "jpg";
+    public static final String FORMAT_PNG = "png";
+
+    private static final float JPEG_QUALITY = 0.82f;
+
+    private ImageResizer() {
+    }
+
+    /**
+     * Đọc ảnh, trả null nếu không phải ảnh hoặc quá maxPixels (decompression bomb).
+     * Kích thước lấy từ header trước, chưa giải mã pixel.
+     */
+    public static BufferedImage read(Path file, long maxPixels) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            if (in == null) return null;
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) return null;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > maxPixels) return null;
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Thu nhỏ để vừa khung maxWidth x maxHeight (giữ tỉ lệ, không phóng to).
+     * maxHeight <= 0 nghĩa là chỉ giới hạn chiều rộng.
+     * Giảm một nửa nhiều lần rồi mới về kích thước cuối để ảnh lớn không bị răng cưa.
+     */
+    public static BufferedImage resize(BufferedImage source, int maxWidth, int maxHeight) {
+        double scale = (double) maxWidth / source.getWidth();
+        if (maxHeight > 0) {
+            scale = Math.min(scale, (double) maxHeight / source.getHeight());
+        }
+        boolean alpha = source.getColorModel().hasAlpha();
+        if (scale >= 1.0) {
+            return copy(source, source.getWidth(), source.getHeight(), alpha);
+        }
+        int targetW = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int targetH = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        BufferedImage current = source;
+        int w = source.getWidth();
+        int h = source.getHeight();
+        while (w / 2 >= targetW && h / 2 >= targetH) {
+            w /= 2;
+            h /= 2;
+            current = copy(current, w, h, alpha);
+        }
+        return copy(current, targetW, targetH, alpha);
+    }
+
+    /**
+     * Định dạng nên dùng cho biến thể: WebP nếu ImageIO có writer (plugin ngoài),
+     * ngược lại PNG cho ảnh trong suốt và JPEG cho ảnh thường
+     */
+    public static String preferredFormat(boolean alpha) {
+        if (isWebpSupported()) return FORMAT_WEBP;
+        return alpha ? FORMAT_PNG : FORMAT_JPEG;
+    }
+
+    public static boolean isWebpSupported() {
+        return ImageIO.getImageWritersByFormatName(FORMAT_WEBP).hasNext();
+    }
+
+    public static void write(BufferedImage image, String format, OutputStream out) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            throw new IOException("No image writer for " + format);
+        }
+        ImageWriter writer = writers.next();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (FORMAT_JPEG.equals(format) && param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(JPEG_QUALITY);
+                param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    // Vẽ lại sang ảnh RGB / ARGB mới (ảnh indexed / grayscale cũng được chuyển về)
+    private static BufferedImage copy(BufferedImage src, int w, int h, boolean alpha) {
+        BufferedImage dst = new BufferedImage(w, h, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = dst.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.drawImage(src, 0, 0, w, h, null);
+        } finally {
+            g.dispose();
+        }
+        return dst;
+    }
+}
@@ -1,9 +1,13 @@
 package com.tmdt.shop_noithat_vp.util;
 
+import com.tmdt.shop_noithat_vp.model.enums.Role;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
@@ -17,14 +21,88 @@ import java.util.function.Function;
 @Component
 public class JwtUtil {
     
+    public static final String CLAIM_ROLE = "role";
+    public static final String CLAIM_TOKEN_VERSION = "ver";
+    public static final String CLAIM_SCOPE = "scope";
+    // Token ngắn hạn cho EventSource (không gửi được header Authorization), chỉ dùng cho luồng SSE dashboard
+    public static final String SCOPE_STREAM = "stream";
+    private static final long STREAM_TOKEN_TTL_MS = 60_000L;
+    
     @Value("${jwt.secret}")
     private String secret;
     
     @Value("${jwt.expiration}")
     private Long expiration;
     
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+    // SPA gửi cùng 1 token hàng trăm lần -> cache claims đã verify (0 = tắt)
+    @Value("${jwt.cache.max-entries:10000}")
+    private int cacheMaxEntries;
+    
+    // Key và parser bất biến, thread-safe -> tạo 1 lần
+    private SecretKey signingKey;
+    private JwtParser parser;
+    private VerifiedTokenCache<Claims> verifiedTokens;
+    
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        parser = Jwts.parser().verifyWith(signingKey).build();
+        verifiedTokens = cacheMaxEntries > 0 ? new VerifiedTokenCache<>(cacheMaxEntries) : null;
+    }
+    
+    /**
+     * Verify chữ ký + hạn dùng và trả về claims trong 1 lần parse.
+     * Token đã verify được cache tới đúng thời điểm hết hạn.
+     * Ném JwtException nếu token không hợp lệ hoặc đã hết hạn.
+     */
+    public Claims parseVerified(String token) {
+        if (verifiedTokens == null) {
+            return parseVerifiedUncached(token);
+        }
+        long now = System.currentTimeMillis();
+        Claims cached = verifiedTokens.get(token, now);
+        if (cached != null) {
+            return cached;
+        }
+        Claims claims = parseVerifiedUncached(token);
+        Date exp = claims.getExpiration();
+        // Token không có exp thì không cache để không sống mãi trong bộ nhớ
+        if (exp != null) {
+            verifiedTokens.put(token, claims, exp.getTime());
+        }
+        return claims;
+    }
+    
+    public Claims parseVerifiedUncached(String token) {
+        return parser.parseSignedClaims(token).getPayload();
+    }
+    
+    @Scheduled(fixedDelay = 5 * 60 * 1000L)
+    public void evictExpiredTokens() {
+        if (verifiedTokens != null) {
+            verifiedTokens.evictExpired(System.currentTimeMillis());
+        }
+    }
+    
+    public static Role roleOf(Claims claims) {
+        Object role = claims.get(CLAIM_ROLE);
+        if (role == null) return null;
+        try {
+            return Role.valueOf(role.toString());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+    
+    // Token cấp trước khi có token version được coi là version 0
+    public static int tokenVersionOf(Claims claims) {
+        Object version = claims.get(CLAIM_TOKEN_VERSION);
+        return version instanceof Number n ? n.intValue() : 0;
+    }
+    
+    public static String scopeOf(Claims claims) {
+        Object scope = claims.get(CLAIM_SCOPE);
+        return scope != null ? scope.toString() : null;
     }
     
     public String extractUsername(String token) {
@@ -36,22 +114,10 @@ public class JwtUtil {
     }
     
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
+        final Claims claims = parseVerified(token);
         return claimsResolver.apply(claims);
     }
     
-    private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
-    }
-    
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
-    }
-    
     public String generateToken(UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
         return createToken(claims, userDetails.getUsername());
@@ -63,38 +129,68 @@ public class JwtUtil {
     }
     
     private String createToken(Map<String, Object> claims, String subject) {
+        return createToken(claims, subject, expiration);
+    }
+    
+    private String createToken(Map<String, Object> claims, String subject, long ttlMillis) {
+        long now = System.currentTimeMillis();
         return Jwts.builder()
                 .claims(claims)
                 .subject(subject)
-                .issuedAt(new Date(System.currentTimeMillis()))
-                .expiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSigningKey())
+                .issuedAt(new Date(now))
+                .expiration(new Date(now + ttlMillis))
+                .signWith(signingKey)
                 .compact();
     }
     
     public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        try {
+            // parser đã từ chối token hết hạn
+            return userDetails.getUsername().equals(parseVerified(token).getSubject());
+        } catch (Exception e) {
+            return false;
+        }
     }
     
     /**
      * Generate token directly from username and role (without UserDetails)
      */
     public String generateTokenFromUsername(String username, String role) {
+        return generateTokenFromUsername(username, role, 0);
+    }
+    
+    /**
+     * Token mang theo token version của user để có thể thu hồi khi version tăng
+     */
+    public String generateTokenFromUsername(String username, String role, Integer tokenVersion) {
         Map<String, Object> claims = new HashMap<>();
-        claims.put("role", role);
+        claims.put(CLAIM_ROLE, role);
+        claims.put(CLAIM_TOKEN_VERSION, tokenVersion != null ? tokenVersion : 0);
         return createToken(claims, username);
     }
     
+    /**
+     * Token 60 giây để mở luồng SSE qua query param ?token=.
+     * Chỉ được chấp nhận ở endpoint stream, không dùng thay Bearer token được.
+     * Hạn chỉ kiểm tra lúc kết nối, kết nối đã mở vẫn giữ nguyên.
+     */
+    public String generateStreamToken(String username, Role role, int tokenVersion) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(CLAIM_ROLE, role.name());
+        claims.put(CLAIM_TOKEN_VERSION, tokenVersion);
+        claims.put(CLAIM_SCOPE, SCOPE_STREAM);
+        return createToken(claims, username, STREAM_TOKEN_TTL_MS);
+    }
+    
     /**
      * Validate token without UserDetails
      */
     public Boolean validateToken(String token) {
         try {
-            return !isTokenExpired(token);
+            parseVerified(token);
+            return true;
         } catch (Exception e) {
             return false;
         }
     }
 }
-
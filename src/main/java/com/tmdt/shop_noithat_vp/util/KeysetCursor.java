@@ -0,0 +1,34 @@
+package com.tmdt.shop_noithat_vp.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Vị trí (createdAt, id) của dòng cuối trang trước trong phân trang keyset,
+ * gửi cho client dạng base64url của "createdAt,id".
+ */
+public record KeysetCursor(LocalDateTime createdAt, Long id) {
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((createdAt + "," + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException cursor sai định dạng ở bất kỳ bước nào (controller trả 400)
+     */
+    public static KeysetCursor decode(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(",", -1);
+            if (parts.length != 2) throw new IllegalArgumentException();
+            LocalDateTime createdAt = LocalDateTime.parse(parts[0]);
+            long id = Long.parseLong(parts[1]);
+            if (id <= 0) throw new IllegalArgumentException();
+            return new KeysetCursor(createdAt, id);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.tmdt.shop_noithat_vp.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram độ trễ với các bucket cố định (ms), ghi lock-free.
+ * Percentile trả về cận trên của bucket chứa nó.
+ */
+public class LatencyHistogram {
+
+    private static final long[] BOUNDS_MS = {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000};
+
+    // bucket cuối cùng cho các giá trị > 30s
+    private final AtomicLongArray counts = new AtomicLongArray(BOUNDS_MS.length + 1);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalMillis = new LongAdder();
+    private final AtomicLong maxMillis = new AtomicLong();
+
+    public void record(long elapsedNanos) {
+        long ms = elapsedNanos / 1_000_000;
+        int idx = 0;
+        while (idx < BOUNDS_MS.length && ms > BOUNDS_MS[idx]) idx++;
+        counts.incrementAndGet(idx);
+        totalCount.increment();
+        totalMillis.add(ms);
+        maxMillis.accumulateAndGet(ms, Math::max);
+    }
+
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    public long percentileMillis(double percentile) {
+        long total = totalCount.sum();
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(percentile / 100.0 * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return i < BOUNDS_MS.length ? BOUNDS_MS[i] : maxMillis.get();
+            }
+        }
+        return maxMillis.get();
+    }
+
+    public Map<String, Object> snapshot() {
+        long total = totalCount.sum();
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("count", total);
+        map.put("meanMs", total > 0 ? totalMillis.sum() / (double) total : 0);
+        map.put("maxMs", maxMillis.get());
+        map.put("p50Ms", percentileMillis(50));
+        map.put("p95Ms", percentileMillis(95));
+        map.put("p99Ms", percentileMillis(99));
+
+        Map<String, Long> buckets = new LinkedHashMap<>();
+        for (int i = 0; i < counts.length(); i++) {
+            String label = i < BOUNDS_MS.length ? "le_" + BOUNDS_MS[i] : "gt_" + BOUNDS_MS[BOUNDS_MS.length - 1];
+            buckets.put(label, counts.get(i));
+        }
+        map.put("buckets", buckets);
+        return map;
+    }
+}
@@ -1,13 +1,10 @@
 package com.tmdt.shop_noithat_vp.util;
 
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import java.nio.charset.StandardCharsets;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
+import java.util.Map;
 import java.util.UUID;
 
 @Component
@@ -25,45 +22,75 @@ public class MoMoUtil {
     @Value("${momo.apiEndpoint}")
     private String apiEndpoint;
     
+    @Value("${momo.queryEndpoint:https://test-payment.momo.vn/v2/gateway/api/query}")
+    private String queryEndpoint;
+    
     @Value("${momo.redirectUrl}")
     private String redirectUrl;
     
     @Value("${momo.ipnUrl}")
     private String ipnUrl;
     
+    private HmacSigner signer;
+    
+    @PostConstruct
+    public void init() {
+        signer = new HmacSigner(secretKey);
+    }
+    
     public String generateRequestId() {
         return UUID.randomUUID().toString();
     }
     
     public String generateSignature(String accessKey, String partnerCode, String requestId, 
                                    String orderId, String amount, String orderInfo, 
-                                   String returnUrl, String notifyUrl, String extraData) 
-            throws NoSuchAlgorithmException, InvalidKeyException {
-        String rawHash = "accessKey=" + accessKey +
-                        "&amount=" + amount +
-                        "&extraData=" + extraData +
-                        "&ipnUrl=" + notifyUrl +
-                        "&orderId=" + orderId +
-                        "&orderInfo=" + orderInfo +
-                        "&partnerCode=" + partnerCode +
-                        "&redirectUrl=" + returnUrl +
-                        "&requestId=" + requestId +
-                        "&requestType=captureWallet";
-        
-        Mac mac = Mac.getInstance("HmacSHA256");
-        SecretKeySpec secretKeySpec = new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
-        mac.init(secretKeySpec);
-        byte[] hashBytes = mac.doFinal(rawHash.getBytes(StandardCharsets.UTF_8));
-        
-        StringBuilder hexString = new StringBuilder();
-        for (byte b : hashBytes) {
-            String hex = Integer.toHexString(0xff & b);
-            if (hex.length() == 1) {
-                hexString.append('0');
-            }
-            hexString.append(hex);
+                                   String returnUrl, String notifyUrl, String extraData) {
+        return signer.sign(
+                "accessKey", accessKey,
+                "amount", amount,
+                "extraData", extraData,
+                "ipnUrl", notifyUrl,
+                "orderId", orderId,
+                "orderInfo", orderInfo,
+                "partnerCode", partnerCode,
+                "redirectUrl", returnUrl,
+                "requestId", requestId,
+                "requestType", "captureWallet");
+    }
+    
+    /**
+     * Chữ ký cho API truy vấn trạng thái giao dịch (/v2/gateway/api/query)
+     */
+    public String generateQuerySignature(String requestId, String orderId) {
+        return signer.sign(
+                "accessKey", accessKey,
+                "orderId", orderId,
+                "partnerCode", partnerCode,
+                "requestId", requestId);
+    }
+    
+    /**
+     * Kiểm tra chữ ký IPN MoMo gửi về (các trường theo thứ tự a-z như tài liệu MoMo)
+     */
+    public boolean verifyIpnSignature(Map<String, Object> ipn) {
+        Object signature = ipn.get("signature");
+        if (signature == null) {
+            return false;
         }
-        return hexString.toString();
+        return signer.verify(String.valueOf(signature),
+                "accessKey", accessKey,
+                "amount", ipn.get("amount"),
+                "extraData", ipn.get("extraData"),
+                "message", ipn.get("message"),
+                "orderId", ipn.get("orderId"),
+                "orderInfo", ipn.get("orderInfo"),
+                "orderType", ipn.get("orderType"),
+                "partnerCode", ipn.get("partnerCode"),
+                "payType", ipn.get("payType"),
+                "requestId", ipn.get("requestId"),
+                "responseTime", ipn.get("responseTime"),
+                "resultCode", ipn.get("resultCode"),
+                "transId", ipn.get("transId"));
     }
     
     public String getPartnerCode() {
@@ -82,6 +109,10 @@ public class MoMoUtil {
         return apiEndpoint;
     }
     
+    public String getQueryEndpoint() {
+        return queryEndpoint;
+    }
+    
     public String getRedirectUrl() {
         return redirectUrl;
     }
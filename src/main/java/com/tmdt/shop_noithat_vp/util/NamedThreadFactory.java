@@ -0,0 +1,24 @@
+package com.tmdt.shop_noithat_vp.util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ThreadFactory đặt tên luồng theo prefix (dễ đọc trong thread dump / log)
+ */
+public class NamedThreadFactory implements ThreadFactory {
+
+    private final String prefix;
+    private final AtomicInteger counter = new AtomicInteger();
+
+    public NamedThreadFactory(String prefix) {
+        this.prefix = prefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, prefix + counter.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    }
+}
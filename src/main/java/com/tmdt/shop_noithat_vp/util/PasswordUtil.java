@@ -67,8 +67,10 @@ public class PasswordUtil {
             // Hash the provided password with the stored salt
             String hashedPassword = hashWithSalt(password, salt);
             
-            // Compare hashes
-            return hashedPassword.equals(storedHashedPassword);
+            // So sánh thời gian hằng để không lộ thông tin qua timing
+            return MessageDigest.isEqual(
+                    hashedPassword.getBytes(StandardCharsets.UTF_8),
+                    storedHashedPassword.getBytes(StandardCharsets.UTF_8));
         } catch (Exception e) {
             return false;
         }
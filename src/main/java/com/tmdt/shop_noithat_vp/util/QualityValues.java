@@ -0,0 +1,88 @@
+package com.tmdt.shop_noithat_vp.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Danh sách "token;q=..." của header Accept / Accept-Encoding (RFC 9110 mục 12.4.2).
+ * Không ghi q thì q = 1, q = 0 nghĩa là "không chấp nhận", q sai cú pháp coi như 0.
+ */
+public final class QualityValues {
+
+    private final Map<String, Float> values;
+
+    private QualityValues(Map<String, Float> values) {
+        this.values = values;
+    }
+
+    public static QualityValues parse(String header) {
+        Map<String, Float> values = new HashMap<>();
+        if (header == null) return new QualityValues(values);
+        for (String element : header.split(",")) {
+            String[] params = element.split(";");
+            String token = params[0].trim().toLowerCase(Locale.ROOT);
+            if (token.isEmpty()) continue;
+            float q = 1f;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.length() > 2 && (param.charAt(0) == 'q' || param.charAt(0) == 'Q') && param.charAt(1) == '=') {
+                    q = parseQ(param.substring(2).trim());
+                }
+            }
+            // Token lặp lại: giữ q cao nhất
+            values.merge(token, q, Math::max);
+        }
+        return new QualityValues(values);
+    }
+
+    /**
+     * @return q ghi rõ cho đúng token này (không tính wildcard), null nếu không có
+     */
+    public Float explicit(String token) {
+        return values.get(token.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * q của token: khớp đúng, không có thì theo wildcard (image/* rồi mọi loại media, hoặc "*" với encoding), không khớp gì thì 0
+     */
+    public float quality(String token) {
+        String key = token.toLowerCase(Locale.ROOT);
+        Float q = values.get(key);
+        if (q != null) return q;
+        int slash = key.indexOf('/');
+        if (slash > 0) {
+            q = values.get(key.substring(0, slash) + "/*");
+            if (q == null) q = values.get("*/*");
+        } else {
+            q = values.get("*");
+        }
+        return q != null ? q : 0f;
+    }
+
+    /**
+     * Các token được chấp nhận (q > 0) trong số server có, q cao trước; bằng nhau thì giữ thứ tự server ưu tiên
+     */
+    public List<String> preferred(List<String> offered) {
+        List<String> accepted = new ArrayList<>();
+        for (String token : offered) {
+            if (quality(token) > 0) accepted.add(token);
+        }
+        accepted.sort(Comparator.comparingDouble(token -> -quality(token)));
+        return accepted;
+    }
+
+    // qvalue = ( "0" [ "." 0*3DIGIT ] ) / ( "1" [ "." 0*3("0") ] )
+    private static float parseQ(String raw) {
+        if (raw.isEmpty() || raw.length() > 5) return 0f;
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (!(c >= '0' && c <= '9') && !(c == '.' && i == 1)) return 0f;
+        }
+        float q = Float.parseFloat(raw);
+        return q > 1f ? 0f : q;
+    }
+}
@@ -0,0 +1,213 @@
+package com.tmdt.shop_noithat_vp.util;
+
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ghi báo cáo dạng dòng (header + rows) ra OutputStream.
+ * Hai định dạng: XLSX (SXSSF, chỉ giữ một cửa sổ dòng trong bộ nhớ) và CSV.
+ * Bộ nhớ dùng không phụ thuộc số dòng của báo cáo.
+ */
+public abstract class ReportWriter implements Closeable {
+
+    public static final String FORMAT_XLSX = "xlsx";
+    public static final String FORMAT_CSV = "csv";
+
+    // Số dòng SXSSF giữ trong RAM trước khi flush xuống file tạm
+    private static final int ROW_WINDOW = 100;
+
+    public static ReportWriter open(String format, String sheetName, OutputStream out) {
+        if (FORMAT_CSV.equalsIgnoreCase(format)) {
+            return new CsvReportWriter(out);
+        }
+        return new XlsxReportWriter(sheetName, out);
+    }
+
+    public static String contentType(String format) {
+        return FORMAT_CSV.equalsIgnoreCase(format)
+                ? "text/csv; charset=UTF-8"
+                : "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+    }
+
+    public static String extension(String format) {
+        return FORMAT_CSV.equalsIgnoreCase(format) ? FORMAT_CSV : FORMAT_XLSX;
+    }
+
+    // Đếm số dòng dữ liệu đã ghi (báo tiến độ job); XLSX chỉ ra byte khi close() nên không đếm theo byte được
+    private AtomicLong rowCounter;
+
+    public ReportWriter countRowsInto(AtomicLong counter) {
+        this.rowCounter = counter;
+        return this;
+    }
+
+    protected void rowWritten() {
+        if (rowCounter != null) rowCounter.incrementAndGet();
+    }
+
+    // Chỉ true khi đã ghi hết dữ liệu; close() khi đang lỗi thì không ghi ra file "đầy đủ" nhưng thiếu dòng
+    private boolean finished;
+
+    /**
+     * Đánh dấu báo cáo đã ghi xong, gọi trước close() trên đường thành công
+     */
+    public void finish() {
+        this.finished = true;
+    }
+
+    protected boolean isFinished() {
+        return finished;
+    }
+
+    public abstract void header(String... titles) throws IOException;
+
+    /**
+     * Ghi một dòng. Giá trị BigDecimal được định dạng tiền tệ, Number giữ kiểu số.
+     */
+    public abstract void row(Object... values) throws IOException;
+
+    // ========== XLSX (STREAMING) ==========
+
+    private static class XlsxReportWriter extends ReportWriter {
+        private final SXSSFWorkbook workbook;
+        private final Sheet sheet;
+        private final OutputStream out;
+        private final CellStyle headerStyle;
+        private final CellStyle currencyStyle;
+        private int rowIdx = 0;
+
+        XlsxReportWriter(String sheetName, OutputStream out) {
+            this.workbook = new SXSSFWorkbook(ROW_WINDOW);
+            this.workbook.setCompressTempFiles(true);
+            this.sheet = workbook.createSheet(sheetName);
+            this.out = out;
+            this.headerStyle = createHeaderStyle(workbook);
+            this.currencyStyle = createCurrencyStyle(workbook);
+        }
+
+        @Override
+        public void header(String... titles) {
+            Row row = sheet.createRow(rowIdx++);
+            for (int i = 0; i < titles.length; i++) {
+                Cell cell = row.createCell(i);
+                cell.setCellValue(titles[i]);
+                cell.setCellStyle(headerStyle);
+                // autoSizeColumn phải quét mọi dòng -> dùng độ rộng cố định theo header
+                sheet.setColumnWidth(i, Math.max(titles[i].length() + 6, 18) * 256);
+            }
+        }
+
+        @Override
+        public void row(Object... values) {
+            Row row = sheet.createRow(rowIdx++);
+            for (int i = 0; i < values.length; i++) {
+                Object value = values[i];
+                if (value == null) continue;
+                Cell cell = row.createCell(i);
+                if (value instanceof BigDecimal decimal) {
+                    cell.setCellValue(decimal.doubleValue());
+                    cell.setCellStyle(currencyStyle);
+                } else if (value instanceof Number number) {
+                    cell.setCellValue(number.doubleValue());
+                } else {
+                    cell.setCellValue(value.toString());
+                }
+            }
+            rowWritten();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                // Lỗi giữa chừng (query / ghi dòng) -> bỏ workbook, không gửi file xlsx bị cắt
+                if (isFinished()) {
+                    workbook.write(out);
+                    out.flush();
+                }
+            } finally {
+                // Xóa các file tạm do SXSSF tạo ra
+                workbook.dispose();
+                workbook.close();
+            }
+        }
+
+        private static CellStyle createHeaderStyle(Workbook wb) {
+            CellStyle style = wb.createCellStyle();
+            Font font = wb.createFont();
+            font.setBold(true);
+            style.setFont(font);
+            style.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
+            style.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+            return style;
+        }
+
+        private static CellStyle createCurrencyStyle(Workbook wb) {
+            CellStyle style = wb.createCellStyle();
+            DataFormat format = wb.createDataFormat();
+            style.setDataFormat(format.getFormat("#,##0"));
+            return style;
+        }
+    }
+
+    // ========== CSV ==========
+
+    private static class CsvReportWriter extends ReportWriter {
+        private final Writer writer;
+
+        CsvReportWriter(OutputStream out) {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        }
+
+        @Override
+        public void header(String... titles) throws IOException {
+            // BOM để Excel đọc đúng tiếng Việt
+            writer.write('\uFEFF');
+            writeRow((Object[]) titles);
+        }
+
+        @Override
+        public void row(Object... values) throws IOException {
+            writeRow(values);
+            rowWritten();
+        }
+
+        private void writeRow(Object... values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) writer.write(',');
+                Object value = values[i];
+                if (value == null) continue;
+                String text = value instanceof BigDecimal decimal ? decimal.toPlainString() : value.toString();
+                writeEscaped(text);
+            }
+            writer.write("\r\n");
+        }
+
+        private void writeEscaped(String text) throws IOException {
+            boolean needsQuote = text.indexOf(',') >= 0 || text.indexOf('"') >= 0
+                    || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0;
+            if (!needsQuote) {
+                writer.write(text);
+                return;
+            }
+            writer.write('"');
+            writer.write(text.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Chỉ flush, không đóng stream của response
+            writer.flush();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.tmdt.shop_noithat_vp.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Tập id bất biến lưu dạng mảng long đã sắp xếp: 8 byte / phần tử, tra cứu bằng binary search.
+ * Thêm / bớt trả về bản sao mới nên đọc đồng thời không cần khóa.
+ */
+public final class SortedLongSet {
+
+    public static final SortedLongSet EMPTY = new SortedLongSet(new long[0]);
+
+    private final long[] values;
+
+    private SortedLongSet(long[] values) {
+        this.values = values;
+    }
+
+    public static SortedLongSet of(Collection<Long> ids) {
+        long[] values = ids.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+        return values.length == 0 ? EMPTY : new SortedLongSet(values);
+    }
+
+    public boolean contains(long value) {
+        return Arrays.binarySearch(values, value) >= 0;
+    }
+
+    public SortedLongSet with(long value) {
+        int idx = Arrays.binarySearch(values, value);
+        if (idx >= 0) return this;
+        int insertAt = -idx - 1;
+        long[] copy = new long[values.length + 1];
+        System.arraycopy(values, 0, copy, 0, insertAt);
+        copy[insertAt] = value;
+        System.arraycopy(values, insertAt, copy, insertAt + 1, values.length - insertAt);
+        return new SortedLongSet(copy);
+    }
+
+    public SortedLongSet without(long value) {
+        int idx = Arrays.binarySearch(values, value);
+        if (idx < 0) return this;
+        if (values.length == 1) return EMPTY;
+        long[] copy = new long[values.length - 1];
+        System.arraycopy(values, 0, copy, 0, idx);
+        System.arraycopy(values, idx + 1, copy, idx, values.length - idx - 1);
+        return new SortedLongSet(copy);
+    }
+
+    public int size() {
+        return values.length;
+    }
+}
@@ -0,0 +1,111 @@
+package com.tmdt.shop_noithat_vp.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Thuật toán Space-Saving: giữ tối đa `capacity` key có tần suất cao nhất
+ * với bộ nhớ cố định. Count là cận trên, error là phần có thể bị đếm dư.
+ */
+public class SpaceSavingTopK {
+
+    private final int capacity;
+    // key -> {count, error}
+    private final Map<Long, long[]> counters;
+
+    public SpaceSavingTopK(int capacity) {
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    public synchronized void offer(long key, long increment) {
+        long[] counter = counters.get(key);
+        if (counter != null) {
+            counter[0] += increment;
+            return;
+        }
+        if (counters.size() < capacity) {
+            counters.put(key, new long[]{increment, 0});
+            return;
+        }
+        // Đầy -> thay key có count nhỏ nhất, kế thừa count của nó làm sai số
+        Long minKey = null;
+        long minCount = Long.MAX_VALUE;
+        for (Map.Entry<Long, long[]> e : counters.entrySet()) {
+            if (e.getValue()[0] < minCount) {
+                minCount = e.getValue()[0];
+                minKey = e.getKey();
+            }
+        }
+        counters.remove(minKey);
+        counters.put(key, new long[]{minCount + increment, minCount});
+    }
+
+    /**
+     * Gộp summary khác vào (cộng count theo key, rồi chỉ giữ lại `capacity` key lớn nhất)
+     */
+    public synchronized void merge(SpaceSavingTopK other) {
+        for (Entry e : other.top(Integer.MAX_VALUE)) {
+            long[] counter = counters.get(e.key());
+            if (counter != null) {
+                counter[0] += e.count();
+                counter[1] += e.error();
+            } else {
+                counters.put(e.key(), new long[]{e.count(), e.error()});
+            }
+        }
+        if (counters.size() > capacity) {
+            List<Entry> sorted = sortedEntries();
+            counters.clear();
+            for (Entry e : sorted.subList(0, capacity)) {
+                counters.put(e.key(), new long[]{e.count(), e.error()});
+            }
+        }
+    }
+
+    public synchronized List<Entry> top(int limit) {
+        List<Entry> sorted = sortedEntries();
+        return sorted.subList(0, Math.min(limit, sorted.size()));
+    }
+
+    public synchronized boolean isEmpty() {
+        return counters.isEmpty();
+    }
+
+    // Định dạng: [capacity:int][n:int] + n * [key:long][count:long][error:long]
+    public synchronized byte[] toBytes() {
+        ByteBuffer buf = ByteBuffer.allocate(8 + counters.size() * 24);
+        buf.putInt(capacity);
+        buf.putInt(counters.size());
+        for (Map.Entry<Long, long[]> e : counters.entrySet()) {
+            buf.putLong(e.getKey());
+            buf.putLong(e.getValue()[0]);
+            buf.putLong(e.getValue()[1]);
+        }
+        return buf.array();
+    }
+
+    public static SpaceSavingTopK fromBytes(byte[] data) {
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        SpaceSavingTopK topK = new SpaceSavingTopK(buf.getInt());
+        int n = buf.getInt();
+        for (int i = 0; i < n; i++) {
+            topK.counters.put(buf.getLong(), new long[]{buf.getLong(), buf.getLong()});
+        }
+        return topK;
+    }
+
+    private List<Entry> sortedEntries() {
+        List<Entry> list = new ArrayList<>(counters.size());
+        counters.forEach((k, v) -> list.add(new Entry(k, v[0], v[1])));
+        list.sort(Comparator.comparingLong(Entry::count).reversed());
+        return list;
+    }
+
+    public record Entry(long key, long count, long error) {
+    }
+}
@@ -0,0 +1,89 @@
+package com.tmdt.shop_noithat_vp.util;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Token bucket trong bộ nhớ, chia stripe theo hash của key để các luồng ít tranh chấp lock.
+ * Mỗi bucket chỉ gồm số token còn lại và thời điểm nạp gần nhất, được nạp lười khi truy cập.
+ */
+public class TokenBucketLimiter {
+
+    private static final int STRIPES = 64;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public TokenBucketLimiter() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Lấy 1 token của bucket `key`.
+     * Trả về 0 nếu được phép, ngược lại là số nano giây cần chờ tới khi có token tiếp theo.
+     */
+    public long tryAcquire(String key, int capacity, double refillPerSecond, long nowNanos) {
+        Stripe stripe = stripes[(key.hashCode() & 0x7fffffff) % STRIPES];
+        synchronized (stripe) {
+            Bucket bucket = stripe.buckets.get(key);
+            if (bucket == null) {
+                bucket = new Bucket(capacity, nowNanos);
+                stripe.buckets.put(key, bucket);
+            } else {
+                double refill = (nowNanos - bucket.lastRefill) / 1e9 * refillPerSecond;
+                bucket.tokens = Math.min(capacity, bucket.tokens + refill);
+                bucket.lastRefill = nowNanos;
+            }
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - bucket.tokens) / refillPerSecond * 1e9);
+        }
+    }
+
+    /**
+     * Xóa bucket không được dùng trong `idleNanos` (bucket đã đầy lại thì giữ cũng vô nghĩa)
+     */
+    public int evictIdle(long idleNanos, long nowNanos) {
+        int removed = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                Iterator<Bucket> it = stripe.buckets.values().iterator();
+                while (it.hasNext()) {
+                    if (nowNanos - it.next().lastRefill > idleNanos) {
+                        it.remove();
+                        removed++;
+                    }
+                }
+            }
+        }
+        return removed;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.buckets.size();
+            }
+        }
+        return size;
+    }
+
+    private static final class Stripe {
+        final Map<String, Bucket> buckets = new HashMap<>();
+    }
+
+    private static final class Bucket {
+        double tokens;
+        long lastRefill;
+
+        Bucket(int capacity, long now) {
+            this.tokens = capacity;
+            this.lastRefill = now;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.tmdt.shop_noithat_vp.util;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache LRU có giới hạn cho token đã verify: khóa là SHA-256 của token (không giữ token gốc),
+ * giá trị hết hiệu lực đúng lúc token hết hạn.
+ * Chia thành nhiều stripe, mỗi stripe một LinkedHashMap access-order có lock riêng
+ * để các request song song ít tranh chấp.
+ */
+public class VerifiedTokenCache<V> {
+
+    private static final int STRIPES = 16;
+
+    private static final ThreadLocal<Hasher> HASHER = ThreadLocal.withInitial(Hasher::new);
+
+    private final Stripe<V>[] stripes;
+
+    @SuppressWarnings("unchecked")
+    public VerifiedTokenCache(int maxEntries) {
+        int perStripe = Math.max(1, maxEntries / STRIPES);
+        stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe<>(perStripe);
+        }
+    }
+
+    /**
+     * Trả về giá trị đã cache nếu còn hạn, ngược lại null (entry hết hạn bị xóa luôn)
+     */
+    public V get(String token, long nowMillis) {
+        TokenKey key = HASHER.get().hash(token);
+        if (key == null) return null;
+        Stripe<V> stripe = stripeOf(key);
+        synchronized (stripe) {
+            Entry<V> entry = stripe.get(key);
+            if (entry == null) return null;
+            if (entry.expiresAt() <= nowMillis) {
+                stripe.remove(key);
+                return null;
+            }
+            return entry.value();
+        }
+    }
+
+    public void put(String token, V value, long expiresAtMillis) {
+        TokenKey key = HASHER.get().hash(token);
+        if (key == null) return;
+        Stripe<V> stripe = stripeOf(key);
+        synchronized (stripe) {
+            stripe.put(key, new Entry<>(value, expiresAtMillis));
+        }
+    }
+
+    /**
+     * Xóa các entry đã hết hạn, trả về số entry bị xóa
+     */
+    public int evictExpired(long nowMillis) {
+        int removed = 0;
+        for (Stripe<V> stripe : stripes) {
+            synchronized (stripe) {
+                Iterator<Entry<V>> it = stripe.values().iterator();
+                while (it.hasNext()) {
+                    if (it.next().expiresAt() <= nowMillis) {
+                        it.remove();
+                        removed++;
+                    }
+                }
+            }
+        }
+        return removed;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe<V> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (Stripe<V> stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    private Stripe<V> stripeOf(TokenKey key) {
+        return stripes[(int) (key.h0() & (STRIPES - 1))];
+    }
+
+    private record TokenKey(long h0, long h1, long h2, long h3) {
+    }
+
+    private record Entry<V>(V value, long expiresAt) {
+    }
+
+    private static final class Stripe<V> extends LinkedHashMap<TokenKey, Entry<V>> {
+        private final int capacity;
+
+        Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TokenKey, Entry<V>> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    // MessageDigest + buffer dùng lại theo luồng
+    private static final class Hasher {
+        private final MessageDigest digest;
+        private final byte[] out = new byte[32];
+        private byte[] buf = new byte[512];
+
+        Hasher() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        // null nếu token có ký tự ngoài ASCII (không phải JWT hợp lệ) -> không dùng cache
+        TokenKey hash(String token) {
+            int len = token.length();
+            if (buf.length < len) {
+                buf = new byte[Math.max(len, buf.length * 2)];
+            }
+            // JWT chỉ gồm ký tự base64url và dấu chấm nên chép thẳng từng char thành byte
+            for (int i = 0; i < len; i++) {
+                char c = token.charAt(i);
+                if (c > 0x7f) return null;
+                buf[i] = (byte) c;
+            }
+            digest.update(buf, 0, len);
+            try {
+                digest.digest(out, 0, 32);
+            } catch (DigestException e) {
+                throw new IllegalStateException(e);
+            }
+            return new TokenKey(readLong(0), readLong(8), readLong(16), readLong(24));
+        }
+
+        private long readLong(int offset) {
+            long v = 0;
+            for (int i = offset; i < offset + 8; i++) {
+                v = (v << 8) | (out[i] & 0xff);
+            }
+            return v;
+        }
+    }
+}
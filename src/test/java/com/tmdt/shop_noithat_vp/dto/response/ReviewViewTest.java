@@ -0,0 +1,29 @@
+package com.tmdt.shop_noithat_vp.dto.response;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReviewViewTest {
+
+    @Test
+    void parsesJsonArrayOfImages() {
+        assertEquals(List.of("/uploads/a.jpg", "/uploads/b.jpg"),
+                ReviewView.parseImages("[\"/uploads/a.jpg\", \" /uploads/b.jpg \", \"\"]"));
+    }
+
+    @Test
+    void parsesCommaSeparatedImages() {
+        assertEquals(List.of("/uploads/a.jpg", "/uploads/b.jpg"),
+                ReviewView.parseImages("/uploads/a.jpg, /uploads/b.jpg,"));
+    }
+
+    @Test
+    void emptyOrMissingImagesGiveEmptyList() {
+        assertTrue(ReviewView.parseImages(null).isEmpty());
+        assertTrue(ReviewView.parseImages("  ").isEmpty());
+        assertTrue(ReviewView.parseImages("[]").isEmpty());
+    }
+}
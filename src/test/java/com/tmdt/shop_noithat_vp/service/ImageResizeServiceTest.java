@@ -0,0 +1,153 @@
+package com.tmdt.shop_noithat_vp.service;
+
+import com.tmdt.shop_noithat_vp.util.ImageResizer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageResizeServiceTest {
+
+    private Path uploadDir;
+    private ImageResizeService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        uploadDir = Files.createTempDirectory("resize-test");
+        Files.createDirectories(uploadDir.resolve("images"));
+        ImageIO.write(new BufferedImage(1600, 1200, BufferedImage.TYPE_INT_RGB), "jpg",
+                uploadDir.resolve("images/photo.jpg").toFile());
+        service = newService(Long.MAX_VALUE);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        service.shutdown();
+        try (Stream<Path> walk = Files.walk(uploadDir)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private ImageResizeService newService(long maxCacheBytes) throws Exception {
+        ImageResizeService s = new ImageResizeService();
+        set(s, "uploadDir", uploadDir.toString());
+        set(s, "sizesConfig", "160,320,480");
+        set(s, "threads", 2);
+        set(s, "timeoutMs", 30_000L);
+        set(s, "maxCacheBytes", maxCacheBytes);
+        set(s, "maxPixels", 40_000_000L);
+        s.init();
+        return s;
+    }
+
+    private static void set(Object target, String field, Object value) throws Exception {
+        Field f = ImageResizeService.class.getDeclaredField(field);
+        f.setAccessible(true);
+        f.set(target, value);
+    }
+
+    @Test
+    void onlyWhitelistedSizesAreAllowed() {
+        assertTrue(service.isAllowedSize(320, 0));
+        assertTrue(service.isAllowedSize(320, 160));
+        assertFalse(service.isAllowedSize(321, 0));
+        assertFalse(service.isAllowedSize(320, 999));
+    }
+
+    @Test
+    void resizesOnceAndServesFromCacheAfterwards() throws Exception {
+        Path first = service.getResized(320, 0, "images/photo.jpg", false);
+
+        assertNotNull(first);
+        assertTrue(first.startsWith(uploadDir.toAbsolutePath().normalize().resolve(ImageResizeService.CACHE_DIR)));
+        BufferedImage resized = ImageIO.read(first.toFile());
+        assertEquals(320, resized.getWidth());
+        assertEquals(240, resized.getHeight());
+
+        long modified = Files.getLastModifiedTime(first).toMillis();
+        Path second = service.getResized(320, 0, "images/photo.jpg", false);
+        assertEquals(first, second);
+        assertEquals(modified, Files.getLastModifiedTime(second).toMillis());
+    }
+
+    @Test
+    void concurrentRequestsForSameKeyShareOneResult() throws Exception {
+        int callers = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<CompletableFuture<Path>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        start.await();
+                        return service.getResized(160, 0, "images/photo.jpg", false);
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }, pool));
+            }
+            start.countDown();
+
+            Set<Path> paths = new HashSet<>();
+            for (CompletableFuture<Path> r : results) {
+                paths.add(r.get());
+            }
+            assertEquals(1, paths.size());
+            assertEquals(1, service.getStats().get("files"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void webpOnlyForClientsThatAcceptIt() throws Exception {
+        Path plain = service.getResized(320, 0, "images/photo.jpg", false);
+        Path negotiated = service.getResized(320, 0, "images/photo.jpg", true);
+
+        assertTrue(plain.getFileName().toString().endsWith(".jpg.jpg"));
+        if (ImageResizer.isWebpSupported()) {
+            assertTrue(negotiated.getFileName().toString().endsWith(".jpg.webp"));
+            assertTrue(Files.exists(plain));
+        } else {
+            assertEquals(plain, negotiated);
+        }
+    }
+
+    @Test
+    void rejectsMissingFilesAndPathsOutsideUploads() throws Exception {
+        assertNull(service.getResized(160, 0, "images/missing.jpg", false));
+        assertNull(service.getResized(160, 0, "../etc/passwd", false));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedWhenOverCap() throws Exception {
+        service.shutdown();
+        service = newService(1);
+
+        Path small = service.getResized(160, 0, "images/photo.jpg", false);
+        Path larger = service.getResized(480, 0, "images/photo.jpg", false);
+
+        assertFalse(Files.exists(small));
+        assertTrue(Files.exists(larger));
+        assertEquals(1, service.getStats().get("files"));
+    }
+}
@@ -0,0 +1,109 @@
+package com.tmdt.shop_noithat_vp.service;
+
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.InternetAddress;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Gửi lô email của MailQueueService tới SMTP giả lập trên localhost (không cần DB).
+ */
+class MailQueueServiceTest {
+
+    private SmtpStandInServer smtp;
+    private MailQueueService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        smtp = new SmtpStandInServer();
+        JavaMailSenderImpl sender = new JavaMailSenderImpl();
+        sender.setHost("127.0.0.1");
+        sender.setPort(smtp.port());
+
+        service = new MailQueueService();
+        set(service, "mailSender", sender);
+        set(service, "fromEmail", "shop@example.com");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        smtp.close();
+    }
+
+    private static void set(Object target, String field, Object value) throws Exception {
+        Field f = target.getClass().getDeclaredField(field);
+        f.setAccessible(true);
+        f.set(target, value);
+    }
+
+    private static MailQueueService.QueuedMail mail(long id, String to) {
+        return new MailQueueService.QueuedMail(id, to, to.substring(to.indexOf('@') + 1),
+                "Xác nhận đơn hàng", "<p>Đơn hàng #" + id + "</p>", 0);
+    }
+
+    @Test
+    void wholeBatchGoesOverOneConnection() {
+        List<MailQueueService.QueuedMail> batch = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            batch.add(mail(i, "user" + i + "@example.com"));
+        }
+
+        Map<Long, Exception> failures = service.deliver(batch);
+
+        assertTrue(failures.isEmpty());
+        assertEquals(10, smtp.getDelivered().size());
+        assertEquals(1, smtp.getConnectionCount());
+    }
+
+    @Test
+    void rejectedRecipientFailsAloneAndIsPermanent() {
+        smtp.reject("ghost@example.com");
+        List<MailQueueService.QueuedMail> batch = List.of(
+                mail(1, "a@example.com"), mail(2, "ghost@example.com"), mail(3, "b@example.com"));
+
+        Map<Long, Exception> failures = service.deliver(batch);
+
+        assertEquals(1, failures.size());
+        assertTrue(failures.containsKey(2L));
+        assertTrue(MailQueueService.isPermanent(failures.get(2L)));
+        assertEquals(List.of("a@example.com", "b@example.com"), smtp.getDelivered());
+        assertEquals(1, smtp.getConnectionCount());
+    }
+
+    @Test
+    void unreachableServerFailsWholeBatchAsTemporary() throws Exception {
+        smtp.close();
+
+        Map<Long, Exception> failures = service.deliver(List.of(mail(1, "a@example.com"), mail(2, "b@example.com")));
+
+        assertEquals(2, failures.size());
+        assertFalse(MailQueueService.isPermanent(failures.get(1L)));
+    }
+
+    @Test
+    void backoffDoublesUpToMax() {
+        assertEquals(60, MailQueueService.backoffSeconds(1, 60, 21600));
+        assertEquals(120, MailQueueService.backoffSeconds(2, 60, 21600));
+        assertEquals(480, MailQueueService.backoffSeconds(4, 60, 21600));
+        assertEquals(21600, MailQueueService.backoffSeconds(10, 60, 21600));
+        assertEquals(21600, MailQueueService.backoffSeconds(200, 60, 21600));
+    }
+
+    @Test
+    void invalidAddressIsPermanent() {
+        assertTrue(MailQueueService.isPermanent(new AddressException("bad")));
+        assertTrue(MailQueueService.isPermanent(new SendFailedException("rejected", null,
+                new InternetAddress[0], new InternetAddress[0], new InternetAddress[]{new InternetAddress()})));
+        assertFalse(MailQueueService.isPermanent(new SendFailedException("timeout")));
+    }
+}
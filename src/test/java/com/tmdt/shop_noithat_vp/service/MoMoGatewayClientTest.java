@@ -0,0 +1,184 @@
+package com.tmdt.shop_noithat_vp.service;
+
+import com.sun.net.httpserver.HttpServer;
+import com.tmdt.shop_noithat_vp.util.CircuitBreaker;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Chạy MoMoGatewayClient với một HTTP server giả lập (độ trễ, lỗi 5xx) trên localhost.
+ */
+class MoMoGatewayClientTest {
+
+    private HttpServer server;
+    private String baseUrl;
+    private final AtomicInteger hits = new AtomicInteger();
+    private volatile int delayMillis = 0;
+    private volatile int status = 200;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/create", exchange -> {
+            hits.incrementAndGet();
+            try {
+                if (delayMillis > 0) Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            String request = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            JSONObject response = new JSONObject()
+                    .put("resultCode", 0)
+                    .put("orderId", new JSONObject(request).optString("orderId"))
+                    .put("payUrl", "https://pay.example/abc");
+            byte[] body = response.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        // Charset lạ -> EntityUtils.toString ném lỗi unchecked (không phải IOException)
+        server.createContext("/bad-charset", exchange -> {
+            hits.incrementAndGet();
+            byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json; charset=@@bad@@");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.setExecutor(Executors.newFixedThreadPool(8));
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/create";
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.stop(0);
+    }
+
+    private MoMoGatewayClient client(long readTimeoutMs, int maxConcurrent, int failureThreshold, long openMs) {
+        return new MoMoGatewayClient(1000, readTimeoutMs, 10, maxConcurrent, 100, failureThreshold, openMs);
+    }
+
+    @Test
+    void returnsJsonAndRecordsLatency() {
+        MoMoGatewayClient client = client(2000, 5, 3, 1000);
+        for (int i = 0; i < 5; i++) {
+            JSONObject res = client.postJson(baseUrl, new JSONObject().put("orderId", "ORD" + i));
+            assertEquals("ORD" + i, res.getString("orderId"));
+        }
+        Map<String, Object> stats = client.getStats();
+        assertEquals(5L, stats.get("success"));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> latency = (Map<String, Object>) stats.get("latency");
+        assertEquals(5L, latency.get("count"));
+        client.close();
+    }
+
+    @Test
+    void readTimeoutFailsAndOpensBreaker() {
+        delayMillis = 500;
+        MoMoGatewayClient client = client(100, 5, 2, 60000);
+        assertThrows(RuntimeException.class, () -> client.postJson(baseUrl, new JSONObject()));
+        assertThrows(RuntimeException.class, () -> client.postJson(baseUrl, new JSONObject()));
+        assertEquals(CircuitBreaker.State.OPEN, client.getCircuitState());
+
+        // Mạch mở: từ chối ngay, không gọi tới server nữa
+        int before = hits.get();
+        long start = System.nanoTime();
+        assertThrows(RuntimeException.class, () -> client.postJson(baseUrl, new JSONObject()));
+        assertTrue((System.nanoTime() - start) / 1_000_000 < 100);
+        assertEquals(before, hits.get());
+        assertEquals(1L, client.getStats().get("rejectedByBreaker"));
+        client.close();
+    }
+
+    @Test
+    void serverErrorsOpenBreakerThenHalfOpenRecovers() throws InterruptedException {
+        status = 503;
+        MoMoGatewayClient client = client(2000, 5, 3, 200);
+        for (int i = 0; i < 3; i++) {
+            assertThrows(RuntimeException.class, () -> client.postJson(baseUrl, new JSONObject()));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, client.getCircuitState());
+
+        status = 200;
+        Thread.sleep(250);
+        client.postJson(baseUrl, new JSONObject().put("orderId", "OK"));
+        assertEquals(CircuitBreaker.State.CLOSED, client.getCircuitState());
+        client.close();
+    }
+
+    @Test
+    void uncheckedErrorDuringHalfOpenTrialDoesNotWedgeBreaker() throws InterruptedException {
+        String badUrl = baseUrl.replace("/create", "/bad-charset");
+        status = 503;
+        MoMoGatewayClient client = client(2000, 5, 3, 200);
+        for (int i = 0; i < 3; i++) {
+            assertThrows(RuntimeException.class, () -> client.postJson(baseUrl, new JSONObject()));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, client.getCircuitState());
+
+        // Lượt thử HALF_OPEN lỗi unchecked -> mạch mở lại, không kẹt ở trạng thái "đang thử"
+        Thread.sleep(250);
+        assertThrows(RuntimeException.class, () -> client.postJson(badUrl, new JSONObject()));
+        assertEquals(CircuitBreaker.State.OPEN, client.getCircuitState());
+
+        status = 200;
+        Thread.sleep(250);
+        client.postJson(baseUrl, new JSONObject().put("orderId", "OK"));
+        assertEquals(CircuitBreaker.State.CLOSED, client.getCircuitState());
+        client.close();
+    }
+
+    @Test
+    void bulkheadLimitsConcurrentCalls() throws Exception {
+        delayMillis = 400;
+        MoMoGatewayClient client = client(2000, 2, 100, 1000);
+        ExecutorService pool = Executors.newFixedThreadPool(6);
+        CountDownLatch ready = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            results.add(pool.submit(() -> {
+                ready.await();
+                try {
+                    client.postJson(baseUrl, new JSONObject());
+                    return true;
+                } catch (RuntimeException e) {
+                    return false;
+                }
+            }));
+        }
+        ready.countDown();
+        int ok = 0;
+        for (Future<Boolean> f : results) {
+            if (f.get()) ok++;
+        }
+        pool.shutdown();
+
+        // Chỉ 2 cuộc gọi được chạy, phần còn lại bị từ chối sau 100ms chờ
+        assertEquals(2, ok);
+        assertEquals(4L, client.getStats().get("rejectedByBulkhead"));
+        assertEquals(CircuitBreaker.State.CLOSED, client.getCircuitState());
+        client.close();
+    }
+}
@@ -0,0 +1,114 @@
+package com.tmdt.shop_noithat_vp.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.tmdt.shop_noithat_vp.util.HmacSigner;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MoMo giả lập chạy trên localhost cho test: API query trả về resultCode cấu hình sẵn theo orderId,
+ * kiểm tra chữ ký request, đếm số lần gọi và số request đồng thời tối đa.
+ */
+class MoMoStandInServer implements AutoCloseable {
+
+    static final String PARTNER_CODE = "MOMO";
+    static final String ACCESS_KEY = "F8BBA842ECF85";
+    static final String SECRET_KEY = "K951B6PE1waDMi640xX08PD3vg6EkVlz";
+
+    private final HttpServer server;
+    private final HmacSigner signer = new HmacSigner(SECRET_KEY);
+    // orderId -> resultCode; -1 = trả HTTP 500
+    private final Map<String, Integer> results = new ConcurrentHashMap<>();
+    private final AtomicInteger queryCount = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private volatile int delayMillis = 0;
+
+    MoMoStandInServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v2/gateway/api/query", this::handleQuery);
+        server.setExecutor(Executors.newFixedThreadPool(16));
+        server.start();
+    }
+
+    String queryUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v2/gateway/api/query";
+    }
+
+    void setResult(String orderId, int resultCode) {
+        results.put(orderId, resultCode);
+    }
+
+    void setDelayMillis(int delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    int getQueryCount() {
+        return queryCount.get();
+    }
+
+    int getMaxInFlight() {
+        return maxInFlight.get();
+    }
+
+    private void handleQuery(HttpExchange exchange) throws IOException {
+        queryCount.incrementAndGet();
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            if (delayMillis > 0) Thread.sleep(delayMillis);
+            JSONObject request = new JSONObject(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            String orderId = request.getString("orderId");
+            String requestId = request.getString("requestId");
+
+            if (!signer.verify(request.getString("signature"), "accessKey", ACCESS_KEY, "orderId", orderId,
+                    "partnerCode", PARTNER_CODE, "requestId", requestId)) {
+                respond(exchange, 200, new JSONObject().put("resultCode", 11).put("message", "Invalid signature"));
+                return;
+            }
+            int resultCode = results.getOrDefault(orderId, 42);
+            if (resultCode < 0) {
+                respond(exchange, 500, new JSONObject().put("message", "Internal error"));
+                return;
+            }
+            JSONObject response = new JSONObject()
+                    .put("partnerCode", PARTNER_CODE)
+                    .put("orderId", orderId)
+                    .put("requestId", requestId)
+                    .put("amount", 150000)
+                    .put("resultCode", resultCode)
+                    .put("message", resultCode == 0 ? "Thành công." : "Giao dịch chưa thành công")
+                    .put("responseTime", System.currentTimeMillis());
+            if (resultCode == 0) {
+                response.put("transId", 4000000000L + Math.abs(orderId.hashCode() % 1000));
+            }
+            respond(exchange, 200, response);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, JSONObject body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
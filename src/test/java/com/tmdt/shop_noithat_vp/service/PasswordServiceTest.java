@@ -0,0 +1,106 @@
+package com.tmdt.shop_noithat_vp.service;
+
+import com.tmdt.shop_noithat_vp.util.PasswordUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordServiceTest {
+
+    private PasswordService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        service = newService(new BCryptPasswordEncoder(6), 2, 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    private static PasswordService newService(BCryptPasswordEncoder encoder, int threads, int queue) throws Exception {
+        PasswordService s = new PasswordService();
+        set(s, "passwordEncoder", encoder);
+        set(s, "threads", threads);
+        set(s, "queueCapacity", queue);
+        set(s, "timeoutMillis", 10_000L);
+        s.init();
+        return s;
+    }
+
+    private static void set(Object target, String field, Object value) throws Exception {
+        Field f = PasswordService.class.getDeclaredField(field);
+        f.setAccessible(true);
+        f.set(target, value);
+    }
+
+    @Test
+    void hashesAndVerifiesWithCurrentEncoder() {
+        String hash = service.hash("secret123");
+
+        assertTrue(hash.startsWith("$2"));
+        assertTrue(service.matches("secret123", hash));
+        assertFalse(service.matches("wrong", hash));
+        assertFalse(service.needsRehash(hash));
+    }
+
+    @Test
+    void verifiesLegacySaltedSha256AndFlagsItForRehash() {
+        String legacy = PasswordUtil.hashPassword("secret123");
+
+        assertTrue(service.matches("secret123", legacy));
+        assertFalse(service.matches("wrong", legacy));
+        assertTrue(service.needsRehash(legacy));
+    }
+
+    @Test
+    void weakerBcryptCostIsFlaggedForRehash() {
+        String weak = new BCryptPasswordEncoder(4).encode("secret123");
+
+        assertTrue(service.matches("secret123", weak));
+        assertTrue(service.needsRehash(weak));
+    }
+
+    @Test
+    void rejectsWhenPoolAndQueueAreFull() throws Exception {
+        PasswordService small = newService(new BCryptPasswordEncoder(12), 1, 1);
+        ExecutorService callers = Executors.newFixedThreadPool(3);
+        try {
+            CountDownLatch started = new CountDownLatch(3);
+            List<CompletableFuture<Boolean>> calls = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                calls.add(CompletableFuture.supplyAsync(() -> {
+                    started.countDown();
+                    try {
+                        small.hash("secret123");
+                        return true;
+                    } catch (RuntimeException e) {
+                        return false;
+                    }
+                }, callers));
+            }
+            started.await();
+            long failures = calls.stream().map(CompletableFuture::join).filter(ok -> !ok).count();
+
+            assertTrue(failures >= 1, "1 luồng + hàng đợi 1 chỉ nhận được 2 yêu cầu cùng lúc");
+            Map<String, Object> stats = small.getStats();
+            assertEquals(failures, stats.get("rejected"));
+        } finally {
+            callers.shutdownNow();
+            small.shutdown();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.tmdt.shop_noithat_vp.service;
+
+import com.tmdt.shop_noithat_vp.model.Order;
+import com.tmdt.shop_noithat_vp.model.Payment;
+import com.tmdt.shop_noithat_vp.model.enums.OrderStatus;
+import com.tmdt.shop_noithat_vp.model.enums.PaymentStatus;
+import com.tmdt.shop_noithat_vp.repository.OrderRepository;
+import com.tmdt.shop_noithat_vp.repository.PaymentRepository;
+import com.tmdt.shop_noithat_vp.util.MoMoUtil;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentReconciliationServiceTest {
+
+    private MoMoStandInServer momo;
+    private PaymentReconciliationService service;
+    private MoMoGatewayClient gatewayClient;
+    private final List<Map<String, Object>> ingested = new CopyOnWriteArrayList<>();
+    // Chỉ dùng trong test đơn trùng: đưa kết quả đối soát qua handleMoMoCallback thật
+    private PaymentService paymentService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        momo = new MoMoStandInServer();
+
+        MoMoUtil moMoUtil = new MoMoUtil();
+        set(moMoUtil, "partnerCode", MoMoStandInServer.PARTNER_CODE);
+        set(moMoUtil, "accessKey", MoMoStandInServer.ACCESS_KEY);
+        set(moMoUtil, "secretKey", MoMoStandInServer.SECRET_KEY);
+        set(moMoUtil, "queryEndpoint", momo.queryUrl());
+        moMoUtil.init();
+
+        // Ghi lại thay vì lưu DB
+        PaymentCallbackService callbackService = new PaymentCallbackService() {
+            @Override
+            public boolean ingest(Map<String, Object> data) {
+                ingested.add(data);
+                if (paymentService != null) {
+                    paymentService.handleMoMoCallback(new JSONObject(data));
+                }
+                return true;
+            }
+        };
+
+        gatewayClient = new MoMoGatewayClient(1000, 2000, 10, 10, 500, 100, 1000);
+        service = new PaymentReconciliationService();
+        set(service, "paymentCallbackService", callbackService);
+        set(service, "moMoGatewayClient", gatewayClient);
+        set(service, "moMoUtil", moMoUtil);
+        set(service, "parallelism", 3);
+        set(service, "ratePerSecond", 20);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+        gatewayClient.close();
+        momo.close();
+    }
+
+    @Test
+    void appliesOnlyFinalResultsWithOriginalRequestId() {
+        momo.setResult("ORD-PAID", 0);
+        momo.setResult("ORD-WAIT", 1000);
+        momo.setResult("ORD-FAIL", 1006);
+        momo.setResult("ORD-ERR", -1);
+
+        int applied = service.reconcileBatch(List.of(
+                new Object[]{1L, "req-1", "ORD-PAID"},
+                new Object[]{2L, "req-2", "ORD-WAIT"},
+                new Object[]{3L, "req-3", "ORD-FAIL"},
+                new Object[]{4L, "req-4", "ORD-ERR"}));
+
+        assertEquals(2, applied);
+        assertEquals(4, momo.getQueryCount());
+        Map<String, Object> paid = ingested.stream().filter(m -> "ORD-PAID".equals(m.get("orderId"))).findFirst().orElseThrow();
+        assertEquals("req-1", paid.get("requestId"));
+        assertEquals(0, ((Number) paid.get("resultCode")).intValue());
+        assertNotNull(paid.get("transId"));
+        assertEquals("RECONCILE", paid.get("source"));
+        assertTrue(ingested.stream().anyMatch(m -> "ORD-FAIL".equals(m.get("orderId"))));
+    }
+
+    @Test
+    void expiredDuplicateLinkDoesNotUnpayPaidOrder() throws Exception {
+        Order order = new Order();
+        order.setOrderCode("ORD-DUP");
+        order.setTotalAmount(new BigDecimal("500000"));
+        order.setOrderStatus(OrderStatus.CONFIRMED);
+        order.setPaymentStatus(PaymentStatus.SUCCESS);
+
+        // Link thứ 2 của cùng đơn, người dùng bỏ dở -> MoMo trả "hết hạn"
+        Payment duplicate = new Payment();
+        duplicate.setOrder(order);
+        duplicate.setRequestId("req-dup");
+        duplicate.setPaymentMethod("MOMO");
+        duplicate.setPaymentStatus(PaymentStatus.PENDING);
+        momo.setResult("ORD-DUP", 1005);
+
+        paymentService = new PaymentService();
+        set(paymentService, "paymentRepository", stub(PaymentRepository.class, (method, args) -> switch (method) {
+            case "findByRequestId" -> "req-dup".equals(args[0]) ? Optional.of(duplicate) : Optional.empty();
+            case "save" -> args[0];
+            default -> throw new UnsupportedOperationException(method);
+        }));
+        set(paymentService, "orderRepository", stub(OrderRepository.class, (method, args) -> switch (method) {
+            case "save" -> args[0];
+            default -> throw new UnsupportedOperationException(method);
+        }));
+        set(paymentService, "eventPublisher", (org.springframework.context.ApplicationEventPublisher) event -> { });
+
+        int applied = service.reconcileBatch(List.<Object[]>of(new Object[]{7L, "req-dup", "ORD-DUP"}));
+
+        assertEquals(1, applied);
+        assertEquals(PaymentStatus.FAILED, duplicate.getPaymentStatus());
+        assertEquals(PaymentStatus.SUCCESS, order.getPaymentStatus());
+        assertEquals(OrderStatus.CONFIRMED, order.getOrderStatus());
+    }
+
+    @Test
+    void queriesRunInParallelButRespectRateLimitAndPoolSize() {
+        momo.setDelayMillis(100);
+        Object[][] rows = new Object[10][];
+        for (int i = 0; i < rows.length; i++) {
+            momo.setResult("ORD-" + i, 0);
+            rows[i] = new Object[]{(long) i, "req-" + i, "ORD-" + i};
+        }
+
+        long start = System.nanoTime();
+        int applied = service.reconcileBatch(List.of(rows));
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(10, applied);
+        // 20 request/giây -> 10 request cần ít nhất ~450ms
+        assertTrue(elapsedMs >= 400, "elapsed " + elapsedMs);
+        assertTrue(momo.getMaxInFlight() <= 3);
+    }
+
+    private interface Answer {
+        Object apply(String method, Object[] args);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, Answer answer) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> type.getSimpleName() + " stub";
+                };
+            }
+            return answer.apply(method.getName(), args);
+        });
+    }
+
+    private static void set(Object target, String field, Object value) throws Exception {
+        Class<?> type = target.getClass();
+        while (type != null) {
+            try {
+                Field f = type.getDeclaredField(field);
+                f.setAccessible(true);
+                f.set(target, value);
+                return;
+            } catch (NoSuchFieldException e) {
+                type = type.getSuperclass();
+            }
+        }
+        throw new NoSuchFieldException(field);
+    }
+}
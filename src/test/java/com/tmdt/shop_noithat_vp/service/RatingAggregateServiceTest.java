@@ -0,0 +1,92 @@
+package com.tmdt.shop_noithat_vp.service;
+
+import com.tmdt.shop_noithat_vp.model.Review;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RatingAggregateServiceTest {
+
+    private final List<Object[]> batches = new ArrayList<>();
+    private RatingAggregateService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        service = new RatingAggregateService();
+        JdbcTemplate capturing = new JdbcTemplate() {
+            @Override
+            public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+                batches.addAll(batchArgs);
+                return new int[batchArgs.size()];
+            }
+        };
+        Field f = RatingAggregateService.class.getDeclaredField("jdbcTemplate");
+        f.setAccessible(true);
+        f.set(service, capturing);
+    }
+
+    @Test
+    void newApprovedReviewAddsOneToCountSumAndStar() {
+        service.onReviewChanged(7L, null, 4);
+
+        assertEquals(1, batches.size());
+        // dCount, dSum, d1..d5, dCount, dSum, dCount, productId
+        assertArrayEquals(new Object[]{1L, 4L, 0L, 0L, 0L, 1L, 0L, 1L, 4L, 1L, 7L}, batches.get(0));
+    }
+
+    @Test
+    void ratingChangeMovesHistogramWithoutChangingCount() {
+        service.onReviewChanged(7L, 2, 5);
+
+        assertArrayEquals(new Object[]{0L, 3L, 0L, -1L, 0L, 0L, 1L, 0L, 3L, 0L, 7L}, batches.get(0));
+    }
+
+    @Test
+    void unchangedRatingIssuesNoUpdate() {
+        service.onReviewChanged(7L, 3, 3);
+        service.onReviewChanged(7L, null, null);
+
+        assertTrue(batches.isEmpty());
+    }
+
+    @Test
+    void deltasForSeveralProductsAreBatched() {
+        Map<Long, RatingAggregateService.RatingDelta> deltas = new HashMap<>();
+        for (long productId = 1; productId <= 3; productId++) {
+            RatingAggregateService.RatingDelta d = new RatingAggregateService.RatingDelta();
+            d.add(5);
+            d.add(1);
+            deltas.put(productId, d);
+        }
+        service.applyDeltas(deltas);
+
+        assertEquals(3, batches.size());
+        for (Object[] args : batches) {
+            assertEquals(2L, args[0]);
+            assertEquals(6L, args[1]);
+        }
+    }
+
+    @Test
+    void onlyApprovedNotDeletedReviewsAreCounted() {
+        Review review = new Review();
+        review.setRating(4);
+        review.setIsApproved(true);
+        assertEquals(4, RatingAggregateService.countedRating(review));
+
+        review.setIsApproved(false);
+        assertNull(RatingAggregateService.countedRating(review));
+
+        review.setIsApproved(true);
+        review.setIsDeleted(true);
+        assertNull(RatingAggregateService.countedRating(review));
+    }
+}
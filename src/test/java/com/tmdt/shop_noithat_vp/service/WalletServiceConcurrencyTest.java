@@ -0,0 +1,126 @@
+package com.tmdt.shop_noithat_vp.service;
+
+import com.tmdt.shop_noithat_vp.model.User;
+import com.tmdt.shop_noithat_vp.model.WalletMonthlyStatement;
+import com.tmdt.shop_noithat_vp.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Nạp và trả tiền đồng thời trên cùng 1 ví: không mất cập nhật, không bao giờ âm,
+ * sổ cái và sao kê tháng cộng lại đúng bằng số dư.
+ * Chạy với profile "test" (CSDL riêng), chỉ đụng tới ví của user do test tạo và xoá lại sau đó.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class WalletServiceConcurrencyTest {
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long userId;
+
+    @AfterEach
+    void cleanUp() {
+        if (userId == null) {
+            return;
+        }
+        jdbcTemplate.update("DELETE FROM wallet_balance_snapshots WHERE user_id = ?", userId);
+        jdbcTemplate.update("DELETE FROM wallet_monthly_statements WHERE user_id = ?", userId);
+        jdbcTemplate.update("DELETE FROM wallet_transactions WHERE user_id = ?", userId);
+        jdbcTemplate.update("DELETE FROM users WHERE id = ?", userId);
+    }
+
+    @Test
+    void concurrentDepositsAndPaymentsKeepLedgerConsistent() throws Exception {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        User user = new User();
+        user.setUsername("wallet_" + suffix);
+        user.setEmail("wallet_" + suffix + "@test.local");
+        user.setPassword("x");
+        User saved = userRepository.save(user);
+        userId = saved.getId();
+
+        int threads = 16;
+        int opsPerThread = 50;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final boolean payer = t % 2 == 1;
+            results.add(pool.submit(() -> {
+                start.await();
+                int paid = 0;
+                for (int i = 0; i < opsPerThread; i++) {
+                    // Mỗi luồng dùng bản User riêng (như các request khác nhau)
+                    User copy = userRepository.findById(saved.getId()).orElseThrow();
+                    if (payer) {
+                        try {
+                            walletService.payOrder(copy, new BigDecimal("15"), "ORD-" + suffix);
+                            paid++;
+                        } catch (RuntimeException insufficient) {
+                            // Hết tiền là hợp lệ
+                        }
+                    } else {
+                        walletService.deposit(copy, new BigDecimal("10"), "test");
+                    }
+                }
+                return paid;
+            }));
+        }
+        start.countDown();
+        int payments = 0;
+        for (Future<Integer> f : results) {
+            payments += f.get();
+        }
+        pool.shutdown();
+
+        BigDecimal expected = new BigDecimal(10L * (threads / 2) * opsPerThread)
+                .subtract(new BigDecimal(15L * payments));
+        BigDecimal balance = jdbcTemplate.queryForObject(
+                "SELECT balance FROM users WHERE id = ?", BigDecimal.class, saved.getId());
+        assertEquals(0, expected.compareTo(balance));
+
+        BigDecimal ledgerSum = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(amount), 0) FROM wallet_transactions WHERE user_id = ?", BigDecimal.class, saved.getId());
+        assertEquals(0, balance.compareTo(ledgerSum));
+
+        BigDecimal minBalance = jdbcTemplate.queryForObject(
+                "SELECT MIN(balance_after) FROM wallet_transactions WHERE user_id = ?", BigDecimal.class, saved.getId());
+        assertTrue(minBalance.signum() >= 0);
+
+        assertEquals(1, walletService.snapshotBalance(saved.getId()));
+        walletService.deposit(userRepository.findById(saved.getId()).orElseThrow(), new BigDecimal("5"), "after snapshot");
+        Map<String, Object> audit = walletService.auditBalance(saved.getId());
+        assertEquals(true, audit.get("consistent"));
+
+        // Sao kê tháng cộng dồn khớp với sổ cái
+        WalletMonthlyStatement statement = walletService.getMonthlyStatement(saved.getId(), YearMonth.now());
+        assertEquals(0, ((BigDecimal) audit.get("balance")).compareTo(statement.getClosingBalance()));
+        assertEquals(0, statement.getClosingBalance().compareTo(statement.getOpeningBalance()
+                .add(statement.getDepositTotal()).add(statement.getPaymentTotal()).add(statement.getRefundTotal())));
+    }
+}
@@ -0,0 +1,39 @@
+package com.tmdt.shop_noithat_vp.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ByteRangeTest {
+
+    @Test
+    void parsesClosedAndOpenRanges() {
+        assertEquals(new ByteRange(0, 499), ByteRange.parse("bytes=0-499", 1000));
+        assertEquals(new ByteRange(500, 999), ByteRange.parse("bytes=500-", 1000));
+        assertEquals(500, ByteRange.parse("bytes=500-", 1000).length());
+    }
+
+    @Test
+    void clampsEndAndSuffixToFileLength() {
+        assertEquals(new ByteRange(900, 999), ByteRange.parse("bytes=900-5000", 1000));
+        assertEquals(new ByteRange(800, 999), ByteRange.parse("bytes=-200", 1000));
+        assertEquals(new ByteRange(0, 999), ByteRange.parse("bytes=-5000", 1000));
+    }
+
+    @Test
+    void rangeBeyondFileIsUnsatisfiable() {
+        assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=1000-", 1000));
+        assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=-0", 1000));
+        assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=0-10", 0));
+    }
+
+    @Test
+    void ignoresMalformedAndMultipleRanges() {
+        assertNull(ByteRange.parse(null, 1000));
+        assertNull(ByteRange.parse("items=0-1", 1000));
+        assertNull(ByteRange.parse("bytes=abc-", 1000));
+        assertNull(ByteRange.parse("bytes=10-5", 1000));
+        assertNull(ByteRange.parse("bytes=0-1,5-9", 1000));
+        assertNull(ByteRange.parse("bytes=-", 1000));
+    }
+}
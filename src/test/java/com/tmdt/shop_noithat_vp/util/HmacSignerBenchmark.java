@@ -0,0 +1,110 @@
+package com.tmdt.shop_noithat_vp.util;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * Đo throughput và số byte cấp phát mỗi lần ký của HmacSigner so với cách cũ
+ * (Mac + SecretKeySpec mới mỗi lần, nối chuỗi, HexFormat), với số luồng khác nhau.
+ * Chạy tay (không phải unit test): java ... com.tmdt.shop_noithat_vp.util.HmacSignerBenchmark [giây-mỗi-case]
+ */
+public class HmacSignerBenchmark {
+
+    private static final String SECRET = "K951B6PE1waDMi640xX08PD3vg6EkVlz";
+    private static final String ACCESS_KEY = "F8BBA842ECF85";
+    private static final int[] THREAD_COUNTS = {1, 4, 8};
+    // Xoay vòng nhiều orderId để payload không lặp lại y hệt
+    private static final int DISTINCT_ORDERS = 256;
+
+    public static void main(String[] args) throws Exception {
+        long seconds = args.length > 0 ? Long.parseLong(args[0]) : 3;
+        HmacSigner signer = new HmacSigner(SECRET);
+
+        String[] orderIds = new String[DISTINCT_ORDERS];
+        String[] raws = new String[DISTINCT_ORDERS];
+        String[] signatures = new String[DISTINCT_ORDERS];
+        for (int i = 0; i < DISTINCT_ORDERS; i++) {
+            orderIds[i] = "ORD" + (1_000_000 + i);
+            raws[i] = canonical(orderIds[i]);
+            signatures[i] = signer.signRaw(raws[i]);
+        }
+
+        System.out.printf("%-10s %8s %14s %12s%n", "op", "threads", "ops/s", "bytes/op");
+        for (int threads : THREAD_COUNTS) {
+            run("reference", i -> reference(canonical(orderIds[i])), threads, seconds);
+            run("sign", i -> signer.sign("accessKey", ACCESS_KEY, "amount", 150000L, "extraData", "",
+                    "orderId", orderIds[i], "orderInfo", "Thanh toan don hang", "requestId", orderIds[i]), threads, seconds);
+            run("signRaw", i -> signer.signRaw(raws[i]), threads, seconds);
+            run("verify", i -> signer.verify(signatures[i], "accessKey", ACCESS_KEY, "amount", 150000L, "extraData", "",
+                    "orderId", orderIds[i], "orderInfo", "Thanh toan don hang", "requestId", orderIds[i]), threads, seconds);
+        }
+    }
+
+    private static String canonical(String orderId) {
+        return "accessKey=" + ACCESS_KEY + "&amount=150000&extraData=&orderId=" + orderId
+                + "&orderInfo=Thanh toan don hang&requestId=" + orderId;
+    }
+
+    // Cách ký trước khi có HmacSigner
+    private static String reference(String raw) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal(raw.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void run(String op, IntFunction<?> fn, int threads, long seconds) throws Exception {
+        // Warm-up cho JIT
+        for (int i = 0; i < 50_000; i++) {
+            sink = fn.apply(i % DISTINCT_ORDERS);
+        }
+
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        AtomicLong ops = new AtomicLong();
+        AtomicLong allocated = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t * 31;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                // Lần gọi đầu trên luồng mới tạo State (Mac, buffer), không tính vào số đo
+                sink = fn.apply(offset % DISTINCT_ORDERS);
+                long before = mx.getCurrentThreadAllocatedBytes();
+                long n = 0;
+                while (System.nanoTime() < deadline) {
+                    sink = fn.apply((int) ((n + offset) % DISTINCT_ORDERS));
+                    n++;
+                }
+                allocated.addAndGet(mx.getCurrentThreadAllocatedBytes() - before);
+                ops.addAndGet(n);
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        System.out.printf("%-10s %8d %14.0f %12d%n", op, threads,
+                ops.get() / (double) seconds, allocated.get() / Math.max(1, ops.get()));
+    }
+
+    private static volatile Object sink;
+}
@@ -0,0 +1,87 @@
+package com.tmdt.shop_noithat_vp.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HmacSignerTest {
+
+    private static final String SECRET = "K951B6PE1waDMi640xX08PD3vg6EkVlz";
+
+    // Cách ký cũ (Mac mới mỗi lần) làm chuẩn so sánh
+    private static String reference(String raw) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return HexFormat.of().formatHex(mac.doFinal(raw.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void signMatchesReferenceImplementation() throws Exception {
+        HmacSigner signer = new HmacSigner(SECRET);
+        String raw = "accessKey=F8BBA842ECF85&amount=150000&extraData=&orderId=ORD1&orderInfo=Thanh toán đơn hàng";
+        String signature = signer.sign("accessKey", "F8BBA842ECF85", "amount", 150000, "extraData", null,
+                "orderId", "ORD1", "orderInfo", "Thanh toán đơn hàng");
+        assertEquals(reference(raw), signature);
+        assertEquals(reference(raw), signer.signRaw(raw));
+    }
+
+    @Test
+    void payloadLargerThanInitialBufferIsSignedCorrectly() throws Exception {
+        HmacSigner signer = new HmacSigner(SECRET);
+        String longValue = "Bàn ghế văn phòng ".repeat(200);
+        assertEquals(reference("info=" + longValue), signer.sign("info", longValue));
+        // Buffer đã lớn lên vẫn cho kết quả đúng với payload ngắn
+        assertEquals(reference("a=1"), signer.sign("a", "1"));
+    }
+
+    @Test
+    void utf8EncodingMatchesStringGetBytes() throws Exception {
+        HmacSigner signer = new HmacSigner(SECRET);
+        // 2 byte, 3 byte, cặp surrogate (4 byte) và surrogate lẻ (-> '?')
+        for (String value : new String[]{"ñé", "Bàn ghế", "ghế 🪑 xoay", "a\uD83Db", "z\uDC00"}) {
+            assertEquals(reference("v=" + value), signer.sign("v", value), value);
+        }
+    }
+
+    @Test
+    void verifyAcceptsValidSignatureOnly() throws Exception {
+        HmacSigner signer = new HmacSigner(SECRET);
+        String valid = reference("orderId=ORD1&resultCode=0");
+        assertTrue(signer.verify(valid, "orderId", "ORD1", "resultCode", 0));
+        assertTrue(signer.verify(valid.toUpperCase(), "orderId", "ORD1", "resultCode", 0));
+        assertFalse(signer.verify(valid, "orderId", "ORD1", "resultCode", 1));
+        assertFalse(signer.verify(valid.substring(2), "orderId", "ORD1", "resultCode", 0));
+        assertFalse(signer.verify(null, "orderId", "ORD1", "resultCode", 0));
+    }
+
+    @Test
+    void concurrentSigningIsThreadSafe() throws Exception {
+        HmacSigner signer = new HmacSigner(SECRET);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final int thread = t;
+            results.add(pool.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    String value = thread + "-" + i;
+                    if (!reference("k=" + value).equals(signer.sign("k", value))) return false;
+                }
+                return true;
+            }));
+        }
+        for (Future<Boolean> f : results) {
+            assertTrue(f.get());
+        }
+        pool.shutdown();
+    }
+}
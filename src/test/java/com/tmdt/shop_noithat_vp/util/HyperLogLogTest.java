@@ -0,0 +1,68 @@
+package com.tmdt.shop_noithat_vp.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTest {
+
+    @Test
+    void smallSetsAreCountedAlmostExactly() {
+        HyperLogLog hll = new HyperLogLog();
+        assertEquals(0, hll.estimate());
+        for (int i = 0; i < 100; i++) {
+            hll.add("ip:10.0.0." + i);
+        }
+        // Lặp lại cùng visitor không làm tăng số đếm
+        for (int i = 0; i < 100; i++) {
+            hll.add("ip:10.0.0." + i);
+        }
+        long estimate = hll.estimate();
+        assertTrue(Math.abs(estimate - 100) <= 3, "estimate=" + estimate);
+    }
+
+    @Test
+    void largeSetsStayWithinExpectedError() {
+        HyperLogLog hll = new HyperLogLog();
+        int n = 100_000;
+        for (int i = 0; i < n; i++) {
+            hll.add("u:user" + i);
+        }
+        // Sai số chuẩn ~2.3%, cho phép 3 lần
+        double error = Math.abs(hll.estimate() - n) / (double) n;
+        assertTrue(error < 0.07, "error=" + error);
+    }
+
+    @Test
+    void mergeEqualsUnionAndIsIdempotent() {
+        HyperLogLog a = new HyperLogLog();
+        HyperLogLog b = new HyperLogLog();
+        HyperLogLog union = new HyperLogLog();
+        for (int i = 0; i < 5000; i++) {
+            a.add("v" + i);
+            union.add("v" + i);
+        }
+        for (int i = 2500; i < 8000; i++) {
+            b.add("v" + i);
+            union.add("v" + i);
+        }
+
+        a.merge(b);
+        assertEquals(union.estimate(), a.estimate());
+        a.merge(b);
+        assertEquals(union.estimate(), a.estimate());
+    }
+
+    @Test
+    void bytesRoundTripAndRejectWrongLength() {
+        HyperLogLog hll = new HyperLogLog();
+        for (int i = 0; i < 1000; i++) {
+            hll.add("x" + i);
+        }
+        HyperLogLog copy = HyperLogLog.fromBytes(hll.toBytes());
+        assertEquals(hll.estimate(), copy.estimate());
+
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(new byte[10]));
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(null));
+    }
+}
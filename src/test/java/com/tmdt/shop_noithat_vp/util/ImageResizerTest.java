@@ -0,0 +1,60 @@
+package com.tmdt.shop_noithat_vp.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageResizerTest {
+
+    @Test
+    void shrinksToFitBoxKeepingAspectRatio() {
+        BufferedImage source = new BufferedImage(4000, 3000, BufferedImage.TYPE_INT_RGB);
+
+        BufferedImage card = ImageResizer.resize(source, 480, 480);
+
+        assertEquals(480, card.getWidth());
+        assertEquals(360, card.getHeight());
+    }
+
+    @Test
+    void neverUpscalesSmallImages() {
+        BufferedImage source = new BufferedImage(100, 50, BufferedImage.TYPE_INT_RGB);
+
+        BufferedImage detail = ImageResizer.resize(source, 1200, 1200);
+
+        assertEquals(100, detail.getWidth());
+        assertEquals(50, detail.getHeight());
+    }
+
+    @Test
+    void keepsTransparencyAndPicksLosslessFormatWithoutWebp() {
+        BufferedImage source = new BufferedImage(800, 800, BufferedImage.TYPE_INT_ARGB);
+
+        BufferedImage thumb = ImageResizer.resize(source, 160, 160);
+
+        assertTrue(thumb.getColorModel().hasAlpha());
+        if (!ImageResizer.isWebpSupported()) {
+            assertEquals(ImageResizer.FORMAT_PNG, ImageResizer.preferredFormat(true));
+            assertEquals(ImageResizer.FORMAT_JPEG, ImageResizer.preferredFormat(false));
+        }
+    }
+
+    @Test
+    void encodedVariantDecodesBack() throws Exception {
+        BufferedImage source = new BufferedImage(1600, 900, BufferedImage.TYPE_INT_RGB);
+        source.setRGB(10, 10, 0xff0000);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageResizer.write(ImageResizer.resize(source, 160, 160), ImageResizer.FORMAT_JPEG, out);
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+
+        assertNotNull(decoded);
+        assertEquals(160, decoded.getWidth());
+        assertEquals(90, decoded.getHeight());
+    }
+}
@@ -0,0 +1,108 @@
+package com.tmdt.shop_noithat_vp.util;
+
+import io.jsonwebtoken.Claims;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Đo throughput và số byte cấp phát mỗi lần parse/validate token của JwtUtil,
+ * có cache và không cache, với số luồng khác nhau.
+ * Chạy tay (không phải unit test): java ... com.tmdt.shop_noithat_vp.util.JwtUtilBenchmark [giây-mỗi-case]
+ */
+public class JwtUtilBenchmark {
+
+    private static final int[] THREAD_COUNTS = {1, 4, 8, 16};
+    // Số token khác nhau xoay vòng, mô phỏng nhiều phiên đăng nhập song song
+    private static final int DISTINCT_TOKENS = 256;
+
+    public static void main(String[] args) throws Exception {
+        long seconds = args.length > 0 ? Long.parseLong(args[0]) : 3;
+        JwtUtil cached = newJwtUtil(10_000);
+        JwtUtil uncached = newJwtUtil(0);
+
+        String[] tokens = new String[DISTINCT_TOKENS];
+        for (int i = 0; i < DISTINCT_TOKENS; i++) {
+            tokens[i] = cached.generateTokenFromUsername("user" + i, "CUSTOMER", 0);
+        }
+
+        System.out.printf("%-10s %-9s %8s %14s %12s%n", "mode", "op", "threads", "ops/s", "bytes/op");
+        for (int threads : THREAD_COUNTS) {
+            run("uncached", "parse", uncached::parseVerified, tokens, threads, seconds);
+            run("cached", "parse", cached::parseVerified, tokens, threads, seconds);
+            run("uncached", "validate", uncached::validateToken, tokens, threads, seconds);
+            run("cached", "validate", cached::validateToken, tokens, threads, seconds);
+        }
+    }
+
+    private static JwtUtil newJwtUtil(int cacheEntries) throws Exception {
+        JwtUtil util = new JwtUtil();
+        set(util, "secret", "benchmark-secret-key-minimum-256-bits-long-0123456789");
+        set(util, "expiration", 3_600_000L);
+        set(util, "cacheMaxEntries", cacheEntries);
+        util.init();
+        return util;
+    }
+
+    private static void set(Object target, String field, Object value) throws Exception {
+        Field f = target.getClass().getDeclaredField(field);
+        f.setAccessible(true);
+        f.set(target, value);
+    }
+
+    private static void run(String mode, String op, Function<String, ?> fn, String[] tokens,
+                            int threads, long seconds) throws Exception {
+        // Warm-up cho JIT
+        for (int i = 0; i < 20_000; i++) {
+            consume(fn.apply(tokens[i % tokens.length]));
+        }
+
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        AtomicLong ops = new AtomicLong();
+        AtomicLong allocated = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t * 31;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long before = mx.getCurrentThreadAllocatedBytes();
+                long n = 0;
+                while (System.nanoTime() < deadline) {
+                    consume(fn.apply(tokens[(int) ((n + offset) % tokens.length)]));
+                    n++;
+                }
+                allocated.addAndGet(mx.getCurrentThreadAllocatedBytes() - before);
+                ops.addAndGet(n);
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        System.out.printf("%-10s %-9s %8d %14.0f %12d%n", mode, op, threads,
+                ops.get() / (double) seconds, allocated.get() / Math.max(1, ops.get()));
+    }
+
+    private static volatile Object sink;
+
+    private static void consume(Object value) {
+        if (value instanceof Claims claims) {
+            sink = claims.getSubject();
+        } else {
+            sink = value;
+        }
+    }
+}
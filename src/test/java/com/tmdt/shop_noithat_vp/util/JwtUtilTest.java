@@ -0,0 +1,49 @@
+package com.tmdt.shop_noithat_vp.util;
+
+import com.tmdt.shop_noithat_vp.model.enums.Role;
+import io.jsonwebtoken.Claims;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtUtilTest {
+
+    @Test
+    void streamTokenIsScopedAndShortLived() throws Exception {
+        JwtUtil util = newJwtUtil();
+        Claims claims = util.parseVerified(util.generateStreamToken("admin", Role.ADMIN, 3));
+
+        assertEquals("admin", claims.getSubject());
+        assertEquals(Role.ADMIN, JwtUtil.roleOf(claims));
+        assertEquals(3, JwtUtil.tokenVersionOf(claims));
+        assertEquals(JwtUtil.SCOPE_STREAM, JwtUtil.scopeOf(claims));
+        long ttl = claims.getExpiration().getTime() - claims.getIssuedAt().getTime();
+        assertTrue(ttl <= 60_000, "stream token sống quá lâu: " + ttl);
+    }
+
+    @Test
+    void loginTokenHasNoScope() throws Exception {
+        JwtUtil util = newJwtUtil();
+        Claims claims = util.parseVerified(util.generateTokenFromUsername("admin", "ADMIN", 0));
+
+        // Filter chỉ nhận token không có scope ở header Bearer
+        assertNull(JwtUtil.scopeOf(claims));
+    }
+
+    private static JwtUtil newJwtUtil() throws Exception {
+        JwtUtil util = new JwtUtil();
+        set(util, "secret", "test-secret-key-minimum-256-bits-long-0123456789abcdef");
+        set(util, "expiration", 3_600_000L);
+        set(util, "cacheMaxEntries", 0);
+        util.init();
+        return util;
+    }
+
+    private static void set(Object target, String field, Object value) throws Exception {
+        Field f = target.getClass().getDeclaredField(field);
+        f.setAccessible(true);
+        f.set(target, value);
+    }
+}
@@ -0,0 +1,40 @@
+package com.tmdt.shop_noithat_vp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeysetCursorTest {
+
+    private static String b64(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void roundTrips() {
+        KeysetCursor cursor = new KeysetCursor(LocalDateTime.of(2024, 5, 1, 10, 30, 15, 123_000_000), 42L);
+        assertEquals(cursor, KeysetCursor.decode(cursor.encode()));
+        KeysetCursor wholeMinute = new KeysetCursor(LocalDateTime.of(2024, 5, 1, 10, 30), 7L);
+        assertEquals(wholeMinute, KeysetCursor.decode(wholeMinute.encode()));
+    }
+
+    @Test
+    void rejectsBadBase64AndWrongShape() {
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode("!!!"));
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode(b64("2024-05-01T10:30")));
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode(b64("2024-05-01T10:30,1,2")));
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode(b64("2024-05-01T10:30,")));
+    }
+
+    @Test
+    void rejectsBadTimestampAndId() {
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode(b64("yesterday,1")));
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode(b64("2024-05-01T10:30,abc")));
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode(b64("2024-05-01T10:30,-5")));
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode(b64("2024-05-01T10:30,99999999999999999999")));
+    }
+}
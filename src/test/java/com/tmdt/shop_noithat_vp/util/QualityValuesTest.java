@@ -0,0 +1,42 @@
+package com.tmdt.shop_noithat_vp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QualityValuesTest {
+
+    private static final List<String> CODINGS = List.of("br", "gzip");
+
+    @Test
+    void zeroQualityMeansNotAcceptable() {
+        assertEquals(List.of("gzip"), QualityValues.parse("br;q=0, gzip").preferred(CODINGS));
+        assertEquals(List.of("gzip"), QualityValues.parse("gzip, br; q=0.000").preferred(CODINGS));
+        assertEquals(List.of(), QualityValues.parse("br;q=0, gzip;q=0").preferred(CODINGS));
+    }
+
+    @Test
+    void ordersByQualityThenServerPreference() {
+        assertEquals(List.of("br", "gzip"), QualityValues.parse("gzip, deflate, br").preferred(CODINGS));
+        assertEquals(List.of("gzip", "br"), QualityValues.parse("br;q=0.5, gzip;q=0.8").preferred(CODINGS));
+    }
+
+    @Test
+    void wildcardCoversUnlistedTokensOnly() {
+        assertEquals(List.of("gzip"), QualityValues.parse("*, br;q=0").preferred(CODINGS));
+        assertEquals(List.of(), QualityValues.parse("*;q=0").preferred(CODINGS));
+        assertEquals(0.8f, QualityValues.parse("image/*;q=0.8, */*;q=0.5").quality("image/webp"));
+        assertEquals(0.5f, QualityValues.parse("image/*;q=0.8, */*;q=0.5").quality("text/css"));
+        assertNull(QualityValues.parse("image/*, */*").explicit("image/webp"));
+        assertEquals(1f, QualityValues.parse("image/avif,IMAGE/WEBP,*/*;q=0.8").explicit("image/webp"));
+    }
+
+    @Test
+    void malformedQualityIsNotAcceptable() {
+        assertEquals(List.of(), QualityValues.parse("br;q=abc, gzip;q=2").preferred(CODINGS));
+        assertEquals(List.of(), QualityValues.parse(null).preferred(CODINGS));
+        assertEquals(List.of("br"), QualityValues.parse(" , br ;level=5").preferred(CODINGS));
+    }
+}
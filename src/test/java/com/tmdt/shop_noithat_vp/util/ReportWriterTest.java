@@ -0,0 +1,42 @@
+package com.tmdt.shop_noithat_vp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReportWriterTest {
+
+    @Test
+    void finishedXlsxIsWrittenOnClose() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AtomicLong rows = new AtomicLong();
+        try (ReportWriter writer = ReportWriter.open("xlsx", "revenue", out).countRowsInto(rows)) {
+            writer.header("Ngày", "Doanh thu");
+            writer.row("2024-05-01", new BigDecimal("1500000"));
+            writer.finish();
+        }
+        byte[] bytes = out.toByteArray();
+        assertTrue(bytes.length > 0);
+        // File xlsx là zip -> bắt đầu bằng "PK"
+        assertEquals('P', bytes[0]);
+        assertEquals('K', bytes[1]);
+        assertEquals(1, rows.get());
+    }
+
+    @Test
+    void failedXlsxWritesNothing() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThrows(IllegalStateException.class, () -> {
+            try (ReportWriter writer = ReportWriter.open("xlsx", "revenue", out)) {
+                writer.header("Ngày", "Doanh thu");
+                writer.row("2024-05-01", new BigDecimal("1500000"));
+                throw new IllegalStateException("query failed");
+            }
+        });
+        assertEquals(0, out.size());
+    }
+}
@@ -0,0 +1,47 @@
+package com.tmdt.shop_noithat_vp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SortedLongSetTest {
+
+    @Test
+    void buildsFromUnsortedIdsWithDuplicates() {
+        SortedLongSet set = SortedLongSet.of(List.of(42L, 7L, 42L, 100L));
+
+        assertEquals(3, set.size());
+        assertTrue(set.contains(7));
+        assertTrue(set.contains(42));
+        assertTrue(set.contains(100));
+        assertFalse(set.contains(8));
+    }
+
+    @Test
+    void withAndWithoutReturnNewSetsAndKeepOriginal() {
+        SortedLongSet original = SortedLongSet.of(List.of(10L, 30L));
+        SortedLongSet added = original.with(20).with(5).with(40);
+
+        assertEquals(2, original.size());
+        assertEquals(5, added.size());
+        for (long id : new long[]{5, 10, 20, 30, 40}) {
+            assertTrue(added.contains(id), "missing " + id);
+        }
+
+        SortedLongSet removed = added.without(20).without(5).without(99);
+        assertEquals(3, removed.size());
+        assertFalse(removed.contains(20));
+        assertTrue(removed.contains(40));
+    }
+
+    @Test
+    void addingExistingOrRemovingMissingIsNoOp() {
+        SortedLongSet set = SortedLongSet.of(List.of(1L));
+
+        assertSame(set, set.with(1));
+        assertSame(set, set.without(2));
+        assertSame(SortedLongSet.EMPTY, set.without(1));
+    }
+}
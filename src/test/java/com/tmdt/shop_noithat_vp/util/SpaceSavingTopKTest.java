@@ -0,0 +1,81 @@
+package com.tmdt.shop_noithat_vp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpaceSavingTopKTest {
+
+    @Test
+    void countsExactlyWhileUnderCapacity() {
+        SpaceSavingTopK topK = new SpaceSavingTopK(10);
+        assertTrue(topK.isEmpty());
+        topK.offer(1, 5);
+        topK.offer(2, 3);
+        topK.offer(1, 2);
+
+        List<SpaceSavingTopK.Entry> top = topK.top(10);
+        assertEquals(2, top.size());
+        assertEquals(new SpaceSavingTopK.Entry(1, 7, 0), top.get(0));
+        assertEquals(new SpaceSavingTopK.Entry(2, 3, 0), top.get(1));
+    }
+
+    @Test
+    void heavyHittersSurviveLongTailWhenFull() {
+        SpaceSavingTopK topK = new SpaceSavingTopK(5);
+        for (int round = 0; round < 100; round++) {
+            topK.offer(100, 10);
+            topK.offer(200, 5);
+            // Mỗi vòng một sản phẩm chỉ được xem 1 lần
+            topK.offer(1000 + round, 1);
+        }
+
+        List<SpaceSavingTopK.Entry> top = topK.top(2);
+        assertEquals(100, top.get(0).key());
+        assertEquals(200, top.get(1).key());
+        // Count là cận trên, count - error là cận dưới của số thật
+        for (SpaceSavingTopK.Entry e : topK.top(5)) {
+            assertTrue(e.count() - e.error() >= 0);
+        }
+        assertTrue(top.get(0).count() >= 1000);
+        assertTrue(top.get(0).count() - top.get(0).error() <= 1000);
+    }
+
+    @Test
+    void mergeAddsCountsAndKeepsCapacity() {
+        SpaceSavingTopK a = new SpaceSavingTopK(3);
+        a.offer(1, 10);
+        a.offer(2, 4);
+        a.offer(3, 1);
+        SpaceSavingTopK b = new SpaceSavingTopK(3);
+        b.offer(2, 8);
+        b.offer(4, 6);
+        b.offer(5, 2);
+
+        a.merge(b);
+
+        List<SpaceSavingTopK.Entry> top = a.top(10);
+        assertEquals(3, top.size());
+        assertEquals(2, top.get(0).key());
+        assertEquals(12, top.get(0).count());
+        assertEquals(1, top.get(1).key());
+        assertEquals(4, top.get(2).key());
+    }
+
+    @Test
+    void bytesRoundTrip() {
+        SpaceSavingTopK topK = new SpaceSavingTopK(4);
+        for (int i = 1; i <= 6; i++) {
+            topK.offer(i, i * 3L);
+        }
+        SpaceSavingTopK copy = SpaceSavingTopK.fromBytes(topK.toBytes());
+        assertEquals(topK.top(4), copy.top(4));
+
+        // Bản khôi phục vẫn giữ đúng capacity
+        copy.offer(99, 1000);
+        assertEquals(4, copy.top(10).size());
+        assertEquals(99, copy.top(1).get(0).key());
+    }
+}
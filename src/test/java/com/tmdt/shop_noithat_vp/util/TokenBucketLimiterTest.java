@@ -0,0 +1,47 @@
+package com.tmdt.shop_noithat_vp.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketLimiterTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void allowsBurstUpToCapacityThenRejects() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter();
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.tryAcquire("login|ip|1.2.3.4", 5, 1.0, 0));
+        }
+        long wait = limiter.tryAcquire("login|ip|1.2.3.4", 5, 1.0, 0);
+        assertTrue(wait > 0 && wait <= SECOND, "wait=" + wait);
+        // Key khác không bị ảnh hưởng
+        assertEquals(0, limiter.tryAcquire("login|ip|5.6.7.8", 5, 1.0, 0));
+    }
+
+    @Test
+    void refillsOverTimeButNotAboveCapacity() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter();
+        for (int i = 0; i < 2; i++) {
+            limiter.tryAcquire("k", 2, 0.5, 0);
+        }
+        assertTrue(limiter.tryAcquire("k", 2, 0.5, SECOND) > 0);
+        // 2 giây sau có lại 1 token
+        assertEquals(0, limiter.tryAcquire("k", 2, 0.5, 2 * SECOND));
+        // Để lâu cũng chỉ nạp tới capacity
+        assertEquals(0, limiter.tryAcquire("k", 2, 0.5, 1000 * SECOND));
+        assertEquals(0, limiter.tryAcquire("k", 2, 0.5, 1000 * SECOND));
+        assertTrue(limiter.tryAcquire("k", 2, 0.5, 1000 * SECOND) > 0);
+    }
+
+    @Test
+    void evictsIdleBuckets() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter();
+        limiter.tryAcquire("old", 5, 1.0, 0);
+        limiter.tryAcquire("recent", 5, 1.0, 50 * SECOND);
+
+        assertEquals(1, limiter.evictIdle(30 * SECOND, 60 * SECOND));
+        assertEquals(1, limiter.size());
+    }
+}